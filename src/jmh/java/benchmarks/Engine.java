@@ -0,0 +1,126 @@
+package benchmarks;
+
+import factory.ConcurrentGlobalStatePoolFactoryImpl;
+import factory.GlobalStatePoolFactoryImpl;
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPoolFactory;
+import interfaces.IPoolNetwork;
+import poolsImpl.ConnectAndAddHighPerfomancePoolImpl;
+import poolsImpl.FullGraphPoolImpl;
+import poolsImpl.InversedMasterPoolImpl;
+import poolsImpl.IterativeConnectAndAddPoolImpl;
+import poolsImpl.TypeCastWayPoolImpl;
+import utils.ConcurrentUnionFindPoolNetwork;
+import utils.MappedPoolNetwork;
+import utils.OffHeapPoolNetwork;
+import utils.UnionFindPoolNetwork;
+import wal.DurablePoolNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Имплементации бассейнов, которые сравниваются бенчмарками, имя константы передается в параметр {@code engine}
+ * <p>
+ * {@code GLOBAL_STATE} и {@code CONCURRENT_GLOBAL_STATE} получают новый оркестратор с каждой фабрикой,
+ * поэтому их состояние не растет от итерации к итерации
+ * <p>
+ * {@code MAPPED} и {@code DURABLE} открывают сеть в новом временном каталоге, который удаляется при закрытии фабрики.
+ * {@code DURABLE} замеряет операции вместе с журналом, контрольные точки бенчмарки не делают
+ */
+public enum Engine {
+
+    CONNECT_AND_ADD(() -> ConnectAndAddHighPerfomancePoolImpl::new),
+
+    ITERATIVE_CONNECT_AND_ADD(() -> IterativeConnectAndAddPoolImpl::new),
+
+    FULL_GRAPH(() -> FullGraphPoolImpl::new),
+
+    GLOBAL_STATE(GlobalStatePoolFactoryImpl::new),
+
+    CONCURRENT_GLOBAL_STATE(ConcurrentGlobalStatePoolFactoryImpl::new),
+
+    INVERSED_MASTER(() -> InversedMasterPoolImpl::new),
+
+    TYPE_CAST(() -> TypeCastWayPoolImpl::new),
+
+    UNION_FIND(() -> new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork())),
+
+    OFF_HEAP(() -> new NetworkPoolFactoryImpl<>(new OffHeapPoolNetwork())),
+
+    CONCURRENT_UNION_FIND(() -> new NetworkPoolFactoryImpl<>(new ConcurrentUnionFindPoolNetwork())),
+
+    MAPPED(() -> inTemporaryDirectory(MappedPoolNetwork::open)),
+
+    DURABLE(() -> inTemporaryDirectory(DurablePoolNetwork::open));
+
+    private final Supplier<IPoolFactory> factorySupplier;
+
+    Engine(Supplier<IPoolFactory> factorySupplier) {
+        this.factorySupplier = factorySupplier;
+    }
+
+    /**
+     * Создать новую фабрику, фабрики с собственной сетью после замера нужно закрыть через {@link #close(IPoolFactory)}
+     */
+    public IPoolFactory createFactory() {
+        return factorySupplier.get();
+    }
+
+    /**
+     * Освободить ресурсы фабрики, если она их держит
+     */
+    public static void close(IPoolFactory factory) throws Exception {
+        if (factory instanceof AutoCloseable) ((AutoCloseable) factory).close();
+    }
+
+    /**
+     * Создать фабрику для сети, открытой в новом временном каталоге, каталог удаляется при закрытии фабрики
+     */
+    private static <N extends IPoolNetwork> IPoolFactory inTemporaryDirectory(NetworkOpener<N> opener) {
+        try {
+            final Path directory = Files.createTempDirectory("pools-benchmark");
+            final N network;
+            try {
+                network = opener.open(directory);
+            } catch (IOException | RuntimeException exception) {
+                deleteDirectory(directory);
+                throw exception;
+            }
+
+            return new NetworkPoolFactoryImpl<N>(network) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deleteDirectory(directory);
+                    }
+                }
+            };
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Открытие сети в каталоге
+     */
+    private interface NetworkOpener<N extends IPoolNetwork> {
+
+        N open(Path directory) throws IOException;
+    }
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер отдельных операций {@code IPool} для каждой имплементации
+ * <p>
+ * Бассейны разбиваются на цепочки длины {@code chainLength}, {@code connect} замеряет построение всех цепочек,
+ * {@code add} и {@code measure} выполняются по одному разу для каждого бассейна уже построенных цепочек.
+ * Так как {@code connect} меняет состояние, каждый замер это одно выполнение на свежих бассейнах
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class EngineBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param
+    public Engine engine;
+
+    @Param({"100000", "1000000"})
+    public int poolCount;
+
+    @Param({"10", "1000"})
+    public int chainLength;
+
+    private IPoolFactory factory;
+
+    private IPool[] pools;
+
+    private long[] water;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        factory = engine.createFactory();
+        pools = new IPool[poolCount];
+        for (int i = 0; i < poolCount; i++) {
+            pools[i] = factory.create();
+        }
+
+        final Random random = new Random(SEED);
+        water = new long[poolCount];
+        for (int i = 0; i < poolCount; i++) {
+            water[i] = 10 + random.nextInt(990);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        pools = null;
+        Engine.close(factory);
+        factory = null;
+    }
+
+    @Benchmark
+    public IPool[] connect() {
+        connectChains();
+        return pools;
+    }
+
+    @Benchmark
+    public IPool[] add(ConnectedState connected) {
+        for (int i = 0; i < pools.length; i++) {
+            pools[i].add(water[i]);
+        }
+        return pools;
+    }
+
+    @Benchmark
+    public long measure(ConnectedState connected) {
+        long sum = 0;
+        for (IPool pool : pools) {
+            sum += pool.measure();
+        }
+        return sum;
+    }
+
+    private void connectChains() {
+        for (int i = 0; i < pools.length; i++) {
+            if ((i + 1) % chainLength != 0 && i + 1 < pools.length) {
+                pools[i].connect(pools[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Состояние с уже построенными цепочками для замеров {@code add} и {@code measure},
+     * вода добавляется заранее, чтобы {@code measure} не читал пустые сети
+     */
+    @State(Scope.Benchmark)
+    public static class ConnectedState {
+
+        @Setup(Level.Iteration)
+        public void setUp(EngineBenchmark benchmark) {
+            for (int i = 0; i < benchmark.pools.length; i++) {
+                benchmark.pools[i].add(benchmark.water[i]);
+            }
+            benchmark.connectChains();
+        }
+    }
+}
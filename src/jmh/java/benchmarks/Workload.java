@@ -0,0 +1,128 @@
+package benchmarks;
+
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+
+import java.util.Random;
+
+/**
+ * Сценарии из {@code Main}: case1/case2/case3 соединяют случайные пары бассейнов,
+ * caseB1/caseB2 строят длинные каналы из случайных бассейнов
+ * <p>
+ * В отличие от {@code Main} сценарий не печатает прогресс, использует переданный генератор случайных чисел
+ * и возвращает сумму измерений, чтобы jit не выбросил вызовы {@code measure}
+ */
+public enum Workload {
+
+    //many connections
+    CASE1(10_000_000, 10_000_000 / 2, 0, 50_000_000, 2, 3),
+
+    //many adds
+    CASE2(10_000_000, 10_000_000 / 10, 0, 100_000_000, 2, 3),
+
+    //small connections
+    CASE3(10_000_000, 10_000_000 / 1000, 0, 200_000_000, 2, 3),
+
+    CASE_B1(1_000_000, 1_000_000 / 1000, 5000, 5_000_000, 2, 3),
+
+    CASE_B2(10_000_000, 10_000_000 / 1000, 5000, 50_000_000, 2, 3);
+
+    private static final int MIN_WATER = 10;
+
+    private static final int MAX_WATER = 1000;
+
+    private final int poolCount;
+
+    private final int channelCount;
+
+    /**
+     * Длина канала, 0 для сценариев из случайных пар
+     */
+    private final int channelLength;
+
+    private final int addCount;
+
+    /**
+     * Колличество измерений всех бассейнов до и после добавлений воды
+     */
+    private final int firstMeasureCount;
+
+    private final int secondMeasureCount;
+
+    Workload(int poolCount, int channelCount, int channelLength, int addCount, int firstMeasureCount, int secondMeasureCount) {
+        this.poolCount = poolCount;
+        this.channelCount = channelCount;
+        this.channelLength = channelLength;
+        this.addCount = addCount;
+        this.firstMeasureCount = firstMeasureCount;
+        this.secondMeasureCount = secondMeasureCount;
+    }
+
+    /**
+     * Создать бассейны сценария
+     *
+     * @param scale во сколько раз уменьшить колличества бассейнов, каналов и добавлений воды
+     */
+    public IPool[] createPools(IPoolFactory factory, int scale) {
+        final IPool[] pools = new IPool[Math.max(poolCount / scale, 2)];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = factory.create();
+        }
+        return pools;
+    }
+
+    /**
+     * Выполнить сценарий над бассейнами из {@link #createPools(IPoolFactory, int)}
+     *
+     * @return сумма всех измерений
+     */
+    public long run(IPool[] pools, int scale, Random random) {
+        final int n = pools.length;
+        long checksum = 0;
+
+        //operation 2: add water
+        for (IPool pool : pools) {
+            pool.add(getRnd(random, MIN_WATER, MAX_WATER));
+        }
+
+        //operation 3: connect pools
+        for (int i = 0; i < channelCount / scale; ++i) {
+            if (channelLength == 0) {
+                pools[getRnd(random, 0, n - 1)].connect(pools[getRnd(random, 0, n - 1)]);
+                continue;
+            }
+
+            final int chanelLen = getRnd(random, channelLength / 2, channelLength);
+            int pool = getRnd(random, 0, n - 1);
+            for (int k = 0; k < chanelLen; ++k) {
+                final int nextPool = getRnd(random, 0, n - 1);
+                pools[pool].connect(pools[nextPool]);
+                pool = nextPool;
+            }
+        }
+
+        checksum += measureAll(pools, firstMeasureCount);
+
+        //operation 4: add water
+        for (int i = 0; i < addCount / scale; ++i) {
+            pools[getRnd(random, 0, n - 1)].add(getRnd(random, MIN_WATER, MAX_WATER));
+        }
+
+        checksum += measureAll(pools, secondMeasureCount);
+        return checksum;
+    }
+
+    private static long measureAll(IPool[] pools, int times) {
+        long sum = 0;
+        for (int i = 0; i < times; ++i) {
+            for (IPool pool : pools) {
+                sum += pool.measure();
+            }
+        }
+        return sum;
+    }
+
+    private static int getRnd(Random random, int from, int to) {
+        return from + random.nextInt(to - from);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер полных сценариев из {@code Main} для каждой имплементации
+ * <p>
+ * По умолчанию сценарии выполняются в полном размере, для быстрой проверки их можно уменьшить параметром {@code scale},
+ * например {@code -p scale=100}. Создание бассейнов не входит в замер
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class WorkloadBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param
+    public Workload workload;
+
+    @Param
+    public Engine engine;
+
+    @Param({"1"})
+    public int scale;
+
+    private IPoolFactory factory;
+
+    private IPool[] pools;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        factory = engine.createFactory();
+        pools = workload.createPools(factory, scale);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        pools = null;
+        Engine.close(factory);
+        factory = null;
+    }
+
+    @Benchmark
+    public long run() {
+        return workload.run(pools, scale, new Random(SEED));
+    }
+}
@@ -1,6 +1,8 @@
+import cases.CaseClass;
+import factory.GlobalStatePoolFactoryImpl;
 import interfaces.IPool;
 import interfaces.IPoolFactory;
-import poolsImpl.GlobalStatePoolImpl;
+import utils.UnionFindPoolNetwork;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,10 +12,13 @@ public class Main {
     public static void main(String[] args) {
         //PoolFactory factory = PoolSimple::new;
 //        IPoolFactory factory = InversedMasterPoolImpl::new;
-        IPoolFactory factory = GlobalStatePoolImpl::new;
+        IPoolFactory factory = new GlobalStatePoolFactoryImpl();
 //        IPoolFactory factory = TypeCastWayPoolImpl::new;
 //        IPoolFactory factory = ConnectAndAddHighPerfomancePoolImpl::new;
         //PoolFactory factory = FullGraphPoolImpl::new;
+//        IPoolFactory factory = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork(10_000_000));
+//        IPoolFactory factory = new NetworkPoolFactoryImpl<>(new OffHeapPoolNetwork());
+//        IPoolFactory factory = new NetworkPoolFactoryImpl<>(new ConcurrentUnionFindPoolNetwork());
 
         System.out.println("Heap size: "+Runtime.getRuntime().maxMemory());
 
@@ -61,6 +66,16 @@ public class Main {
 
             System.out.println("Total time: " + (endTime - startTime) / 1000000 + " ms.");
         }
+
+        //case1 без объектов бассейнов
+        {
+            long startTime = System.nanoTime();
+            new CaseClass().caseImpl(new UnionFindPoolNetwork(10_000_000), 10_000_000, 5_000_000, 50_000_000, 2, 3);
+
+            long endTime = System.nanoTime();
+
+            System.out.println("Total time: " + (endTime - startTime) / 1000000 + " ms.");
+        }
     }
 
     //many connections
@@ -2,6 +2,7 @@ package cases;
 
 import interfaces.IPool;
 import interfaces.IPoolFactory;
+import interfaces.IPoolNetwork;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -98,6 +99,71 @@ public final class CaseClass {
         System.out.println("End");
     }
 
+    /**
+     * Метод базовой проверки без объектов бассейнов, бассейны адресуются индексами сети
+     * @param network пустая сеть бассейнов
+     * @param N колличество бассейнов для создания
+     * @param K колличество каналов
+     * @param L колличество добавлений воды
+     * @param M1 колличетво измерений первой итерации
+     * @param M2 колличество измерений второй итерации
+     */
+    public void caseImpl(IPoolNetwork network,
+                  int N, int K, int L, int M1, int M2) {
+        int a = 10;
+        int b = 1000;
+
+        System.out.println("Start");
+
+        //operation 1: create pools
+        final int first = network.create(N);
+
+        System.out.println("Pools are created");
+
+        //operation 2: add water
+        for (int pool = first; pool < first + N; pool++) {
+            int water = getRnd(a, b);
+            network.add(pool, water);
+        }
+
+        System.out.println("Water is added");
+
+        //operation 3: connect pools
+        for (int i=0;i<K;++i) {
+            int pool1 = getRnd(0, N - 1);
+            int pool2 = getRnd(0, N - 1);
+            network.connect(first + pool1, first + pool2);
+        }
+
+        System.out.println("Pools are connected");
+
+        for(int i=0;i<M1;++i) {
+            for (int pool = first; pool < first + N; pool++) {
+                network.measure(pool);
+            }
+        }
+
+        System.out.println("Pools are measured");
+
+        //operation 4: add water
+        for (int i=0;i<L;++i) {
+            int pool = getRnd(0, N - 1);
+            int water = getRnd(a, b);
+
+            network.add(first + pool, water);
+        }
+
+        System.out.println("Water is added again");
+
+        for(int i=0;i<M2;++i) {
+            for (int pool = first; pool < first + N; pool++) {
+                network.measure(pool);
+            }
+        }
+
+        System.out.println("End");
+    }
+
     public void harcodeDebug(IPoolFactory factory) {
         List<IPool> pools = new ArrayList<>();
 
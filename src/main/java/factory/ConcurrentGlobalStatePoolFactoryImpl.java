@@ -0,0 +1,62 @@
+package factory;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import interfaces.IPoolFactory;
+import poolsImpl.ConcurrentGlobalStatePoolImpl;
+import utils.ConcurrentPoolsOrchestrator;
+
+/**
+ * Имплементация {@code IPoolFactory} для {@code ConcurrentGlobalStatePoolImpl}
+ * <p>
+ * Фабрика владеет собственным оркестратором, поэтому бассейны разных фабрик образуют независимые сети
+ * и не соединяются между собой. Закрытие фабрики отпускает все ее бассейны из оркестратора
+ *
+ * @inheritDoc
+ */
+public class ConcurrentGlobalStatePoolFactoryImpl implements IPoolFactory, AutoCloseable {
+
+    /**
+     * Оркестратор, в котором создаются бассейны
+     */
+    private final ConcurrentPoolsOrchestrator orchestrator;
+
+    public ConcurrentGlobalStatePoolFactoryImpl() {
+        this(new ConcurrentPoolsOrchestrator());
+    }
+
+    public ConcurrentGlobalStatePoolFactoryImpl(ConcurrentPoolsOrchestrator orchestrator) {
+        this.orchestrator = orchestrator;
+    }
+
+    /**
+     * Геттер для {@code orchestrator}
+     */
+    public ConcurrentPoolsOrchestrator getOrchestrator() {
+        return orchestrator;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPool create() {
+        return new ConcurrentGlobalStatePoolImpl(orchestrator);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPoolBatch createBatch(int size) {
+        return ConcurrentGlobalStatePoolImpl.createBatch(orchestrator, size);
+    }
+
+    /**
+     * Отпустить все бассейны фабрики
+     */
+    @Override
+    public void close() {
+        orchestrator.close();
+    }
+}
@@ -0,0 +1,70 @@
+package factory;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import interfaces.IPoolFactory;
+import poolsImpl.GlobalStatePoolImpl;
+import utils.PoolsOrchestrator;
+
+/**
+ * Имплементация {@code IPoolFactory} для {@code GlobalStatePoolImpl}
+ * <p>
+ * Фабрика владеет собственным оркестратором, поэтому бассейны разных фабрик образуют независимые сети
+ * и не соединяются между собой. Реестр оркестратора растет с каждым созданным бассейном и не уменьшается,
+ * сброс фабрики отбрасывает все ее бассейны, а закрытие освобождает реестр
+ *
+ * @inheritDoc
+ */
+public class GlobalStatePoolFactoryImpl implements IPoolFactory, AutoCloseable {
+
+    /**
+     * Оркестратор, в котором создаются бассейны
+     */
+    private final PoolsOrchestrator orchestrator;
+
+    public GlobalStatePoolFactoryImpl() {
+        this(new PoolsOrchestrator());
+    }
+
+    public GlobalStatePoolFactoryImpl(PoolsOrchestrator orchestrator) {
+        this.orchestrator = orchestrator;
+    }
+
+    /**
+     * Геттер для {@code orchestrator}
+     */
+    public PoolsOrchestrator getOrchestrator() {
+        return orchestrator;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPool create() {
+        return new GlobalStatePoolImpl(orchestrator);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPoolBatch createBatch(int size) {
+        return GlobalStatePoolImpl.createBatch(orchestrator, size);
+    }
+
+    /**
+     * Отбросить все бассейны фабрики, созданные до сброса бассейны бросают {@code IllegalStateException}
+     */
+    public void reset() {
+        orchestrator.reset();
+    }
+
+    /**
+     * Освободить реестр оркестратора
+     */
+    @Override
+    public void close() {
+        orchestrator.close();
+    }
+}
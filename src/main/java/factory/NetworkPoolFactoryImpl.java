@@ -0,0 +1,75 @@
+package factory;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import interfaces.IPoolFactory;
+import interfaces.IPoolNetwork;
+import poolsImpl.NetworkPoolImpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Имплементация {@code IPoolFactory} для {@code NetworkPoolImpl}
+ * <p>
+ * Фабрика отдает сеть {@code IPoolNetwork} пользователям {@code IPool}, это единственная фабрика для всех сетей
+ * с целочисленными индексами: {@code UnionFindPoolNetwork}, {@code ConcurrentUnionFindPoolNetwork},
+ * {@code OffHeapPoolNetwork}, {@code MappedPoolNetwork} и {@code DurablePoolNetwork}.
+ * Сеть при этом можно использовать и напрямую по индексам через {@link #getNetwork()},
+ * бассейн с индексом {@code i}, например созданный прошлым запуском, доступен через {@link #getPool(int)}
+ * <p>
+ * Фабрика владеет сетью, закрытие фабрики закрывает сеть, если та {@code Closeable}
+ *
+ * @param <N> тип сети
+ * @inheritDoc
+ */
+public class NetworkPoolFactoryImpl<N extends IPoolNetwork> implements IPoolFactory, AutoCloseable {
+
+    /**
+     * Сеть, в которой создаются бассейны
+     */
+    private final N network;
+
+    public NetworkPoolFactoryImpl(N network) {
+        this.network = network;
+    }
+
+    /**
+     * Геттер для {@code network}
+     */
+    public N getNetwork() {
+        return network;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPool create() {
+        return new NetworkPoolImpl(network, network.create());
+    }
+
+    /**
+     * @inheritDoc Бассейны пакета занимают последовательные индексы сети
+     */
+    @Override
+    public IPoolBatch createBatch(int size) {
+        return NetworkPoolImpl.createBatch(network, size);
+    }
+
+    /**
+     * Получить бассейн сети по индексу
+     */
+    public IPool getPool(int index) {
+        return new NetworkPoolImpl(network, Objects.checkIndex(index, network.getPoolCount()));
+    }
+
+    /**
+     * Закрыть сеть, если она {@code Closeable}, остальным сетям закрытие не нужно
+     */
+    @Override
+    public void close() throws IOException {
+        if (network instanceof Closeable) ((Closeable) network).close();
+    }
+}
@@ -1,6 +1,7 @@
 package factory;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
 import interfaces.IPoolFactory;
 import poolsImpl.ConnectAndAddHighPerfomancePoolImpl;
 
@@ -17,4 +18,12 @@ public class PoolFactoryImpl implements IPoolFactory {
     public IPool create() {
         return new ConnectAndAddHighPerfomancePoolImpl();
     }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPoolBatch createBatch(int size) {
+        return ConnectAndAddHighPerfomancePoolImpl.createBatch(size);
+    }
 }
@@ -0,0 +1,85 @@
+package interfaces;
+
+/**
+ * Интерфейс пакета бассейнов, созданных одним вызовом {@link IPoolFactory#createBatch(int)}
+ * <p>
+ * Пакет позволяет выполнить операцию над многими бассейнами одним вызовом, бассейны адресуются индексами
+ * внутри пакета. Базовые имплементации операций обращаются к бассейнам через {@link #get(int)},
+ * имплементации пакетов переопределяют те операции, которые могут выполнить специализированным циклом
+ */
+public interface IPoolBatch {
+
+    /**
+     * @return колличество бассейнов в пакете
+     */
+    int size();
+
+    /**
+     * Получить бассейн пакета
+     *
+     * @param index индекс бассейна в пакете
+     * @return бассейн с индексом {@code index}
+     */
+    IPool get(int index);
+
+    /**
+     * Измерить колличество воды во всех бассейнах пакета
+     *
+     * @param result массив размером не меньше {@code size()}, в {@code result[i]} записывается колличество воды в {@code i}-ом бассейне
+     */
+    default void measureAll(long[] result) {
+        final int size = size();
+        if (result.length < size) {
+            throw new IllegalArgumentException("Размер массива меньше размера пакета: " + result.length + " < " + size);
+        }
+
+        for (int i = 0; i < size; i++) {
+            result[i] = get(i).measure();
+        }
+    }
+
+    /**
+     * Добавить воду в бассейны пакета, эквивалентно последовательным вызовам {@code get(indices[i]).add(water[i])}
+     *
+     * @param indices индексы бассейнов
+     * @param water   колличество воды для добавления, параллельный {@code indices} массив
+     */
+    default void addAll(int[] indices, long[] water) {
+        if (indices.length != water.length) {
+            throw new IllegalArgumentException("Размеры массивов не совпадают: " + indices.length + " != " + water.length);
+        }
+
+        for (int i = 0; i < indices.length; i++) {
+            get(indices[i]).add(water[i]);
+        }
+    }
+
+    /**
+     * Соединить пары бассейнов пакета, эквивалентно последовательным вызовам {@code get(first[i]).connect(get(second[i]))}
+     *
+     * @param first  индексы первых бассейнов пар
+     * @param second индексы вторых бассейнов пар, параллельный {@code first} массив
+     */
+    default void connectAll(int[] first, int[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Размеры массивов не совпадают: " + first.length + " != " + second.length);
+        }
+
+        for (int i = 0; i < first.length; i++) {
+            get(first[i]).connect(get(second[i]));
+        }
+    }
+
+    /**
+     * Соединить пары бассейнов пакета, используя несколько ядер
+     * <p>
+     * Результат совпадает с {@code connectAll} с точностью до порядка слияния сетей, то есть до округления
+     * при пересчете воды, базовая имплементация просто вызывает {@code connectAll}
+     *
+     * @param first  индексы первых бассейнов пар
+     * @param second индексы вторых бассейнов пар, параллельный {@code first} массив
+     */
+    default void connectAllParallel(int[] first, int[] second) {
+        connectAll(first, second);
+    }
+}
@@ -10,4 +10,31 @@ public interface IPoolFactory {
      * @return новый объект типа {@code IPool}
      */
     IPool create();
+
+    /**
+     * Создает пакет из {@code size} новых бассейнов
+     * <p>
+     * Базовая имплементация создает бассейны через {@code create()} и обращается к ним через интерфейс {@code IPool},
+     * фабрики конкретных имплементаций переопределяют метод, чтобы вернуть специализированный пакет
+     *
+     * @param size колличество бассейнов в пакете
+     * @return новый пакет бассейнов
+     */
+    default IPoolBatch createBatch(int size) {
+        final IPool[] pools = new IPool[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = create();
+        }
+        return new IPoolBatch() {
+            @Override
+            public int size() {
+                return pools.length;
+            }
+
+            @Override
+            public IPool get(int index) {
+                return pools[index];
+            }
+        };
+    }
 }
@@ -0,0 +1,72 @@
+package interfaces;
+
+/**
+ * Интерфейс сети бассейнов без объектов-бассейнов, бассейн адресуется целочисленным индексом
+ * <p>
+ * Индексы выдаются подряд начиная с 0, поэтому вместо списка {@code IPool} достаточно помнить колличество
+ * созданных бассейнов. Тем, кому нужен {@code IPool}, сеть отдается через {@code NetworkPoolFactoryImpl}
+ */
+public interface IPoolNetwork {
+
+    /**
+     * Создать новый бассейн
+     *
+     * @return индекс созданного бассейна
+     */
+    int create();
+
+    /**
+     * Создать {@code count} новых бассейнов с последовательными индексами
+     *
+     * @return индекс первого созданного бассейна
+     */
+    int create(int count);
+
+    /**
+     * @return колличество созданных бассейнов
+     */
+    int getPoolCount();
+
+    /**
+     * Получить колличество воды в бассейне
+     *
+     * @param pool индекс бассейна
+     * @return колличество воды в бассейне в данный момент
+     */
+    long measure(int pool);
+
+    /**
+     * Добавить воду в бассейн, вода распределяется по всей сети бассейна
+     *
+     * @param pool   индекс бассейна
+     * @param amount колличество воды для добавления
+     */
+    void add(int pool, long amount);
+
+    /**
+     * Соеденить сети двух бассейнов каналом
+     */
+    void connect(int first, int second);
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    boolean isConnected(int first, int second);
+
+    /**
+     * Соеденить пары бассейнов {@code first[i]} и {@code second[i]}, по умолчанию каналы соединяются последовательно
+     * через {@link #connect(int, int)}, сети умеющие соединять пакет параллельно переопределяют метод
+     *
+     * @param first  индексы первых бассейнов каналов
+     * @param second индексы вторых бассейнов каналов, параллельный {@code first} массив
+     */
+    default void connectAllParallel(int[] first, int[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Длины массивов не совпадают: " + first.length + " и " + second.length);
+        }
+
+        for (int i = 0; i < first.length; i++) {
+            connect(first[i], second[i]);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package metrics;
+
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+
+/**
+ * Декоратор {@code IPoolFactory}, замеряющий каждую операцию над созданными бассейнами в {@link PoolMetrics}
+ * <p>
+ * Замеряются только вызовы пользователя, внутренние вызовы между бассейнами имплементации идут мимо декоратора.
+ * Если фабрика не обернута, то декоратор ничего не стоит
+ */
+public final class InstrumentedPoolFactory implements IPoolFactory {
+
+    private final IPoolFactory factory;
+
+    private final PoolMetrics metrics;
+
+    public InstrumentedPoolFactory(IPoolFactory factory) {
+        this(factory, PoolMetrics.GLOBAL);
+    }
+
+    public InstrumentedPoolFactory(IPoolFactory factory, PoolMetrics metrics) {
+        this.factory = factory;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Геттер для {@code metrics}
+     */
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPool create() {
+        return new InstrumentedPool(factory.create(), metrics);
+    }
+
+    /**
+     * Бассейн, замеряющий свои операции
+     */
+    private static final class InstrumentedPool implements IPool {
+
+        private final IPool pool;
+
+        private final PoolMetrics metrics;
+
+        private InstrumentedPool(IPool pool, PoolMetrics metrics) {
+            this.pool = pool;
+            this.metrics = metrics;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long measure() {
+            final long startTime = System.nanoTime();
+            final long water = pool.measure();
+            metrics.recordOperation(Operation.MEASURE, System.nanoTime() - startTime);
+            return water;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void connect(IPool pool) {
+            final IPool other = pool instanceof InstrumentedPool ? ((InstrumentedPool) pool).pool : pool;
+
+            final long startTime = System.nanoTime();
+            this.pool.connect(other);
+            metrics.recordOperation(Operation.CONNECT, System.nanoTime() - startTime);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void add(long water) {
+            final long startTime = System.nanoTime();
+            pool.add(water);
+            metrics.recordOperation(Operation.ADD, System.nanoTime() - startTime);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Boolean isConnected(IPool pool) {
+            final IPool other = pool instanceof InstrumentedPool ? ((InstrumentedPool) pool).pool : pool;
+
+            final long startTime = System.nanoTime();
+            final Boolean isConnected = this.pool.isConnected(other);
+            metrics.recordOperation(Operation.IS_CONNECTED, System.nanoTime() - startTime);
+            return isConnected;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package metrics;
+
+/**
+ * Операции {@code IPool}, для которых собираются метрики
+ */
+public enum Operation {
+
+    CONNECT,
+
+    ADD,
+
+    MEASURE,
+
+    IS_CONNECTED
+}
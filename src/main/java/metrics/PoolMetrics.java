@@ -0,0 +1,179 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Метрики операций над бассейнами: колличество вызовов, гистограммы задержек по операциям,
+ * размеры компонент при слиянии, глубина рекурсии и медленные операции
+ * <p>
+ * Задержки и пользовательские вызовы записывает {@link InstrumentedPoolFactory}, которая оборачивает любую фабрику.
+ * Вызовы методов имплементаций, включая вложенные вызовы между бассейнами, размеры слияний и глубину
+ * рекурсии записывают сами имплементации из {@code poolsImpl} в {@link #GLOBAL}, причем только если включен
+ * {@link #ENABLED}: флаг это {@code static final}, поэтому при выключенных метриках jit полностью вырезает проверки
+ * <p>
+ * Метрики включаются системным свойством {@value #ENABLED_PROPERTY}, порог медленной операции задается свойством
+ * {@value #SLOW_THRESHOLD_PROPERTY} в наносекундах и может быть изменен во время работы
+ */
+public final class PoolMetrics {
+
+    public static final String ENABLED_PROPERTY = "pools.metrics.enabled";
+
+    public static final String SLOW_THRESHOLD_PROPERTY = "pools.metrics.slowThresholdNanos";
+
+    /**
+     * Включены ли хуки метрик внутри имплементаций бассейнов
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    /**
+     * По умолчанию медленной считается операция дольше 1 мс
+     */
+    private static final long DEFAULT_SLOW_THRESHOLD_NANOS = 1_000_000;
+
+    /**
+     * Метрики, в которые пишут хуки имплементаций бассейнов
+     */
+    public static final PoolMetrics GLOBAL = new PoolMetrics();
+
+    private static final Logger LOGGER = Logger.getLogger(PoolMetrics.class.getName());
+
+    private final LongAdder[] calls = new LongAdder[Operation.values().length];
+
+    /**
+     * Все вызовы методов имплементаций, отношение к {@code calls} показывает веерность рекурсии
+     */
+    private final LongAdder[] engineCalls = new LongAdder[Operation.values().length];
+
+    private final Log2Histogram[] latencies = new Log2Histogram[Operation.values().length];
+
+    private final Log2Histogram mergeSizes = new Log2Histogram();
+
+    private final Log2Histogram recursionDepths = new Log2Histogram();
+
+    private final LongAdder slowOperations = new LongAdder();
+
+    /**
+     * Текущая глубина рекурсии в каждом потоке
+     */
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    private volatile long slowThresholdNanos = Long.getLong(SLOW_THRESHOLD_PROPERTY, DEFAULT_SLOW_THRESHOLD_NANOS);
+
+    public PoolMetrics() {
+        for (Operation operation : Operation.values()) {
+            calls[operation.ordinal()] = new LongAdder();
+            engineCalls[operation.ordinal()] = new LongAdder();
+            latencies[operation.ordinal()] = new Log2Histogram();
+        }
+    }
+
+    /**
+     * Записать выполненную операцию, если она дольше порога, то она логируется
+     *
+     * @param operation    операция
+     * @param latencyNanos время выполнения в наносекундах
+     */
+    public void recordOperation(Operation operation, long latencyNanos) {
+        calls[operation.ordinal()].increment();
+        latencies[operation.ordinal()].record(latencyNanos);
+
+        if (latencyNanos >= slowThresholdNanos) {
+            slowOperations.increment();
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.warning("Медленная операция " + operation + ": " + latencyNanos + " нс");
+            }
+        }
+    }
+
+    /**
+     * Записать вызов метода имплементации бассейна, в том числе вложенный
+     */
+    public void recordEngineCall(Operation operation) {
+        engineCalls[operation.ordinal()].increment();
+    }
+
+    /**
+     * Записать размер компоненты, получившейся при слиянии двух сетей
+     */
+    public void recordMerge(long mergedSize) {
+        mergeSizes.record(mergedSize);
+    }
+
+    /**
+     * Вход в рекурсивный метод, каждому {@code enterRecursion} должен соответствовать {@link #exitRecursion()}
+     */
+    public void enterRecursion() {
+        recursionDepths.record(++depth.get()[0]);
+    }
+
+    public void exitRecursion() {
+        depth.get()[0]--;
+    }
+
+    public long getCallCount(Operation operation) {
+        return calls[operation.ordinal()].sum();
+    }
+
+    public long getEngineCallCount(Operation operation) {
+        return engineCalls[operation.ordinal()].sum();
+    }
+
+    public Log2Histogram getLatencies(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public Log2Histogram getMergeSizes() {
+        return mergeSizes;
+    }
+
+    /**
+     * Гистограмма глубины рекурсии, в нее пишется глубина каждого рекурсивного вызова
+     */
+    public Log2Histogram getRecursionDepths() {
+        return recursionDepths;
+    }
+
+    public long getSlowOperationCount() {
+        return slowOperations.sum();
+    }
+
+    public long getSlowThresholdNanos() {
+        return slowThresholdNanos;
+    }
+
+    public void setSlowThresholdNanos(long slowThresholdNanos) {
+        this.slowThresholdNanos = slowThresholdNanos;
+    }
+
+    /**
+     * Обнулить все метрики
+     */
+    public void reset() {
+        for (Operation operation : Operation.values()) {
+            calls[operation.ordinal()].reset();
+            engineCalls[operation.ordinal()].reset();
+            latencies[operation.ordinal()].reset();
+        }
+        mergeSizes.reset();
+        recursionDepths.reset();
+        slowOperations.reset();
+    }
+
+    /**
+     * @return текстовый отчет по всем метрикам
+     */
+    public String report() {
+        final StringBuilder builder = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            builder.append(operation).append(": calls=").append(getCallCount(operation))
+                    .append(" engine calls=").append(getEngineCallCount(operation))
+                    .append(" latency(ns) ").append(getLatencies(operation)).append('\n');
+        }
+        builder.append("merge sizes: ").append(mergeSizes).append('\n');
+        builder.append("recursion depth: ").append(recursionDepths).append('\n');
+        builder.append("slow operations (>= ").append(slowThresholdNanos).append(" ns): ").append(getSlowOperationCount());
+        return builder.toString();
+    }
+}
@@ -0,0 +1,364 @@
+package pipeline;
+
+import interfaces.IPool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Конвейер команд к бассейнам: много потоков-производителей, один поток-писатель
+ * <p>
+ * Производители публикуют команды {@code connect}, {@code add} и {@code measure} в кольцевой буфер заранее созданных ячеек,
+ * а единственный поток-писатель применяет их по порядку публикации. Поэтому через конвейер можно нагружать
+ * из многих потоков любую однопоточную имплементацию {@code IPool}, пока к ее бассейнам больше никто не обращается
+ * <p>
+ * Публикация не берет блокировок и не выделяет память, кроме {@code CompletableFuture} для {@code measure}:
+ * производитель захватывает номер через CAS на общем курсоре, заполняет ячейку и отмечает ее опубликованной.
+ * Писатель забирает за раз все подряд опубликованные команды и освобождает их ячейки одной записью,
+ * а когда буфер заполнен, производители ждут писателя
+ * <p>
+ * Результаты {@code measure} приходят через {@code CompletableFuture}, завершаемые в потоке писателя,
+ * поэтому тяжелые продолжения стоит вешать через {@code *Async} методы. Ошибки {@code connect} и {@code add}
+ * получает ближайший {@link #flush()}
+ * <p>
+ * Если бассейн бросил {@code Error}, его состояние неизвестно, поэтому писатель останавливается: все ожидающие future
+ * завершаются этой ошибкой, а новые команды бросают {@code IllegalStateException}
+ */
+public final class PoolCommandPipeline implements AutoCloseable {
+
+    /**
+     * По умолчанию в буфере 2^16 ячеек
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final byte CONNECT = 1;
+
+    private static final byte ADD = 2;
+
+    private static final byte MEASURE = 3;
+
+    private static final byte FLUSH = 4;
+
+    /**
+     * Бит курсора, означающий что конвейер закрыт для новых команд
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    /**
+     * Сколько раз поток проверяет буфер перед тем, как уступить процессор или уснуть,
+     * на одном ядре ожидание в цикле только отнимает время у потока, которого ждут
+     */
+    private static final int SPIN_COUNT = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 1;
+
+    /**
+     * Максимальный сон писателя, страхует от пропущенного пробуждения
+     */
+    private static final long PARK_NANOS = 1_000_000;
+
+    private final Command[] ring;
+
+    private final int mask;
+
+    private final int shift;
+
+    /**
+     * Круг, на котором ячейка была опубликована последний раз, {@code -1} если ни разу
+     */
+    private final AtomicIntegerArray published;
+
+    /**
+     * Следующий свободный номер команды, старший бит {@link #CLOSED} выставляется при закрытии
+     */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * Номер следующей команды, которую применит писатель, все ячейки с меньшими номерами свободны
+     */
+    private volatile long consumed = 0;
+
+    private volatile boolean isWriterParked = false;
+
+    private final Thread writerThread;
+
+    /**
+     * Первая ошибка {@code connect} или {@code add} после предыдущего {@link #flush()}, меняется только писателем
+     */
+    private Throwable failure;
+
+    /**
+     * Ошибка, остановившая писателя, {@code null} пока писатель работает
+     */
+    private volatile Throwable writerError = null;
+
+    public PoolCommandPipeline() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity колличество ячеек буфера, степень двойки
+     */
+    public PoolCommandPipeline(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Размер буфера должен быть степенью двойки: " + capacity);
+        }
+
+        ring = new Command[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Command();
+        }
+        mask = capacity - 1;
+        shift = Integer.numberOfTrailingZeros(capacity);
+        published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+
+        writerThread = new Thread(this::writeLoop, "pool-command-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Соеденить бассейны, команда выполняется асинхронно
+     *
+     * @throws IllegalStateException если конвейер закрыт или писатель остановлен ошибкой
+     */
+    public void connect(IPool first, IPool second) {
+        final long sequence = claim();
+        final Command command = ring[(int) sequence & mask];
+        command.type = CONNECT;
+        command.first = first;
+        command.second = second;
+        publish(sequence);
+    }
+
+    /**
+     * Добавить воды в бассейн, команда выполняется асинхронно
+     *
+     * @throws IllegalStateException если конвейер закрыт или писатель остановлен ошибкой
+     */
+    public void add(IPool pool, long water) {
+        final long sequence = claim();
+        final Command command = ring[(int) sequence & mask];
+        command.type = ADD;
+        command.first = pool;
+        command.water = water;
+        publish(sequence);
+    }
+
+    /**
+     * Измерить воду в бассейне после всех команд, опубликованных этим потоком до вызова
+     *
+     * @return результат {@code pool.measure()}
+     * @throws IllegalStateException если конвейер закрыт или писатель остановлен ошибкой
+     */
+    public CompletableFuture<Long> measure(IPool pool) {
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        final long sequence = claim();
+        final Command command = ring[(int) sequence & mask];
+        command.type = MEASURE;
+        command.first = pool;
+        command.result = result;
+        publish(sequence);
+        //писатель мог остановиться и не увидеть эту команду
+        final Throwable error = writerError;
+        if (error != null) result.completeExceptionally(error);
+        return result;
+    }
+
+    /**
+     * Дождаться применения всех команд, опубликованных этим потоком до вызова
+     *
+     * @return future, которое завершается с ошибкой, если какой-то {@code connect} или {@code add}
+     * с прошлого {@code flush} бросил исключение
+     * @throws IllegalStateException если конвейер закрыт или писатель остановлен ошибкой
+     */
+    public CompletableFuture<Void> flush() {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final long sequence = claim();
+        final Command command = ring[(int) sequence & mask];
+        command.type = FLUSH;
+        command.result = result;
+        publish(sequence);
+        //писатель мог остановиться и не увидеть эту команду
+        final Throwable error = writerError;
+        if (error != null) result.completeExceptionally(error);
+        return result;
+    }
+
+    /**
+     * Закрыть конвейер для новых команд и дождаться применения уже опубликованных
+     *
+     * @throws IllegalStateException если вызван из потока писателя, например из продолжения {@code measure}
+     */
+    @Override
+    public void close() {
+        if (Thread.currentThread() == writerThread) throw new IllegalStateException("Конвейер нельзя закрыть из потока писателя");
+
+        long current;
+        do {
+            current = cursor.get();
+            if ((current & CLOSED) != 0) break;
+        } while (!cursor.compareAndSet(current, current | CLOSED));
+
+        LockSupport.unpark(writerThread);
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                writerThread.join();
+                break;
+            } catch (InterruptedException exception) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Захватить номер команды и дождаться, пока ее ячейка освободится
+     */
+    private long claim() {
+        long sequence;
+        do {
+            sequence = cursor.get();
+            if ((sequence & CLOSED) != 0) throw new IllegalStateException("Конвейер закрыт");
+            ensureWriterAlive();
+        } while (!cursor.compareAndSet(sequence, sequence + 1));
+
+        final long wrapPoint = sequence - ring.length;
+        int spins = 0;
+        while (wrapPoint >= consumed) {
+            //буфер полон, ждем писателя
+            ensureWriterAlive();
+            if (++spins < SPIN_COUNT) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return sequence;
+    }
+
+    private void ensureWriterAlive() {
+        final Throwable error = writerError;
+        if (error != null) throw new IllegalStateException("Писатель конвейера остановлен ошибкой", error);
+    }
+
+    private void publish(long sequence) {
+        //полный барьер, чтобы не разминуться с засыпающим писателем
+        published.set((int) sequence & mask, (int) (sequence >>> shift));
+        if (isWriterParked) LockSupport.unpark(writerThread);
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> shift);
+    }
+
+    /**
+     * Цикл писателя: применяет подряд опубликованные команды пачками
+     */
+    private void writeLoop() {
+        try {
+            long next = 0;
+            int spins = 0;
+            while (true) {
+                if (!isPublished(next)) {
+                    final long end = cursor.get();
+                    if ((end & CLOSED) != 0 && next == (end & ~CLOSED)) return;
+
+                    if (++spins < SPIN_COUNT) {
+                        Thread.onSpinWait();
+                    } else {
+                        isWriterParked = true;
+                        if (!isPublished(next)) LockSupport.parkNanos(this, PARK_NANOS);
+                        isWriterParked = false;
+                        spins = 0;
+                    }
+                    continue;
+                }
+                spins = 0;
+
+                do {
+                    apply(ring[(int) next & mask]);
+                    next++;
+                } while (isPublished(next));
+
+                consumed = next;
+            }
+        } catch (Throwable error) {
+            stopWriter(error);
+        }
+    }
+
+    /**
+     * Остановить конвейер после ошибки писателя и завершить ей future уже опубликованных команд,
+     * команды после {@link #consumed} уже примененные писателем завершены, повторное завершение их не меняет
+     */
+    private void stopWriter(Throwable error) {
+        writerError = error;
+
+        final long end = cursor.get() & ~CLOSED;
+        for (long sequence = consumed; sequence < end; sequence++) {
+            if (!isPublished(sequence)) continue;
+
+            final CompletableFuture<?> result = ring[(int) sequence & mask].result;
+            if (result != null) result.completeExceptionally(error);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Command command) {
+        try {
+            switch (command.type) {
+                case CONNECT:
+                    command.first.connect(command.second);
+                    break;
+                case ADD:
+                    command.first.add(command.water);
+                    break;
+                case MEASURE:
+                    ((CompletableFuture<Long>) command.result).complete(command.first.measure());
+                    break;
+                case FLUSH:
+                    if (failure == null) {
+                        command.result.complete(null);
+                    } else {
+                        command.result.completeExceptionally(failure);
+                        failure = null;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестная команда: " + command.type);
+            }
+        } catch (Throwable exception) {
+            if (command.result != null) {
+                command.result.completeExceptionally(exception);
+            } else if (failure == null) {
+                failure = exception;
+            }
+            if (exception instanceof Error) throw (Error) exception;
+        } finally {
+            command.first = null;
+            command.second = null;
+            command.result = null;
+        }
+    }
+
+    /**
+     * Ячейка буфера, переиспользуется по кругу
+     */
+    private static final class Command {
+
+        private byte type;
+
+        private IPool first;
+
+        private IPool second;
+
+        private long water;
+
+        private CompletableFuture<?> result;
+    }
+}
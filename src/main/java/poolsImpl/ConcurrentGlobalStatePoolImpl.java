@@ -0,0 +1,126 @@
+package poolsImpl;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.ConcurrentPoolsOrchestrator;
+import utils.PoolArrayBatch;
+
+/**
+ * Потокобезопасный вариант {@code GlobalStatePoolImpl}
+ * <p>
+ * Бассейн не хранит никакого состояния, все операции делегируются в {@code ConcurrentPoolsOrchestrator},
+ * который синхронизирует доступ блокировками на уровне отдельных сетей бассейнов,
+ * поэтому бассейны можно использовать из нескольких потоков одновременно
+ * <p>
+ * Бассейны создаются через {@code ConcurrentGlobalStatePoolFactoryImpl}, у каждой фабрики свой оркестратор,
+ * бассейны других оркестраторов не присоединяются
+ */
+public class ConcurrentGlobalStatePoolImpl implements IPool {
+    /**
+     * Оркестратор сети, которой принадлежит бассейн
+     */
+    private final ConcurrentPoolsOrchestrator orchestrator;
+
+    /**
+     * @param orchestrator оркестратор сети, в которой создается бассейн
+     */
+    public ConcurrentGlobalStatePoolImpl(ConcurrentPoolsOrchestrator orchestrator) {
+        orchestrator.ensureOpen();
+        this.orchestrator = orchestrator;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long measure() {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
+        return orchestrator.measurePool(this);
+    }
+
+    /**
+     * @inheritDoc Бассейны других имплементаций и других оркестраторов не присоединяются
+     */
+    @Override
+    public void connect(IPool pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
+
+        if (!(pool instanceof ConcurrentGlobalStatePoolImpl)) return;
+        if (((ConcurrentGlobalStatePoolImpl) pool).orchestrator != orchestrator) return;
+
+        orchestrator.mergePools(this, pool);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
+
+        if (water == 0) return;
+
+        orchestrator.addWaterToPool(this, water);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Boolean isConnected(IPool pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+
+        return (pool != this) && orchestrator.arePoolConnected(this, pool);
+    }
+
+    /**
+     * Создает пакет из {@code size} новых бассейнов в оркестраторе {@code orchestrator}
+     */
+    public static IPoolBatch createBatch(ConcurrentPoolsOrchestrator orchestrator, int size) {
+        final ConcurrentGlobalStatePoolImpl[] pools = new ConcurrentGlobalStatePoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new ConcurrentGlobalStatePoolImpl(orchestrator);
+        }
+        return new Batch(orchestrator, pools);
+    }
+
+    /**
+     * Пакет бассейнов, операции обращаются к оркестратору напрямую
+     */
+    private static final class Batch extends PoolArrayBatch<ConcurrentGlobalStatePoolImpl> {
+
+        private final ConcurrentPoolsOrchestrator orchestrator;
+
+        private Batch(ConcurrentPoolsOrchestrator orchestrator, ConcurrentGlobalStatePoolImpl[] pools) {
+            super(pools);
+            this.orchestrator = orchestrator;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            checkResultLength(result, pools.length);
+
+            for (int i = 0; i < pools.length; i++) {
+                result[i] = orchestrator.measurePool(pools[i]);
+            }
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void addAll(int[] indices, long[] water) {
+            checkSameLength(indices.length, water.length);
+
+            for (int i = 0; i < indices.length; i++) {
+                if (water[i] != 0) orchestrator.addWaterToPool(pools[indices[i]], water[i]);
+            }
+        }
+    }
+}
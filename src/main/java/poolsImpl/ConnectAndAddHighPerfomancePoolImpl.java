@@ -1,10 +1,13 @@
 package poolsImpl;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.IdentityPoolSet;
+import utils.PoolArrayBatch;
+import utils.WaterArithmetic;
 
-import java.math.BigInteger;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Производительная имплементация {@code IPool}
@@ -26,8 +29,8 @@ import java.util.Set;
  */
 public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
 
-    /** Сеть объедененных каналми бассейнов */
-    private final Set<IPool> connectedPools = new HashSet<>();
+    /** Сеть объедененных каналми бассейнов, {@code null} пока бассейн ни с чем не соединен */
+    private IdentityPoolSet<IPool> connectedPools = null;
 
     /** Ссылка на центральный бассейн с точки зрения топологии, если {@code null} то данный бассейн является центральным */
     private IPool masterPool = null;
@@ -43,7 +46,16 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
      */
     @Override
     public long measure() {
-        return masterPool == null ? amountOfWater : masterPool.measure();
+        if (PoolMetrics.ENABLED) {
+            PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+            PoolMetrics.GLOBAL.enterRecursion();
+        }
+
+        try {
+            return masterPool == null ? amountOfWater : masterPool.measure();
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
+        }
     }
 
     /**
@@ -51,17 +63,25 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
      */
     @Override
     public void connect(IPool pool) {
-
-        if (pool == this) return;
-        if(pool == masterPool)return;
-        if (connectedPools.contains(pool)) return;
-        // Если пользователь  добавляет новый бассейн не к master бассейну то переадресуем добавление
-        if (masterPool != null && !pool.isConnected(masterPool)){
-            pool.connect(masterPool);
-            return;
+        if (PoolMetrics.ENABLED) {
+            PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
+            PoolMetrics.GLOBAL.enterRecursion();
         }
 
-        realConnect(pool);
+        try {
+            if (pool == this) return;
+            if(pool == masterPool)return;
+            if (IdentityPoolSet.containsIn(connectedPools, pool)) return;
+            // Если пользователь  добавляет новый бассейн не к master бассейну то переадресуем добавление
+            if (masterPool != null && !pool.isConnected(masterPool)){
+                pool.connect(masterPool);
+                return;
+            }
+
+            realConnect(pool);
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
+        }
     }
 
     /**
@@ -76,7 +96,7 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
                 pool.isConnected(this) ||
                         (masterPool != null &&
                         //если пользователь вызвал соединение не с master бассейном то это true
-                        connectedPools.stream().anyMatch(pool::isConnected)
+                        connectedPools != null && connectedPools.anyMatch(pool::isConnected)
                 );
 
         if(masterPool == null && !isConnected && !isInDomination) {
@@ -107,12 +127,12 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
 
         isInDomination = true;
         final long newMeshMeasure = pool.measure();
-        final long oldSize = connectedPools.size();
+        final long oldSize = IdentityPoolSet.sizeOf(connectedPools);
 
-        connectedPools.add(pool);
+        connectedPools = IdentityPoolSet.addTo(connectedPools, pool);
         pool.connect(this);
 
-        final long sizeDif = connectedPools.size() - oldSize;
+        final long sizeDif = IdentityPoolSet.sizeOf(connectedPools) - oldSize;
 
         amountOfWater = calculateNewAmount(sizeDif,oldSize,newMeshMeasure);
 
@@ -129,9 +149,9 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
 
         masterPool = pool;
 
-        connectedPools.forEach(pool::connect);
+        if (connectedPools != null) connectedPools.forEach(pool::connect);
 
-        connectedPools.clear();
+        connectedPools = null;
         amountOfWater = 0;
     }
 
@@ -142,7 +162,7 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
      */
     private void listToNewMasterPool(IPool pool) {
 
-        connectedPools.add(pool);
+        connectedPools = IdentityPoolSet.addTo(connectedPools, pool);
         pool.connect(this);
     }
 
@@ -156,33 +176,8 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
      * @return возвращает новый объем воды для сети
      */
     private long calculateNewAmount(long sizeDiff,long oldSize, long newMeasure) {
-
-        final long meshSize = connectedPools.size()+1;
-
-        try {
-
-            return Math.addExact(Math.multiplyExact(amountOfWater,oldSize+1),  Math.multiplyExact(newMeasure,sizeDiff))/meshSize;
-
-        } catch (ArithmeticException exception) {
-
-            //если лонги перепонились то только BigInt
-            BigInteger amountOfWaterBI = new BigInteger(String.valueOf(amountOfWater));
-            BigInteger newMeasureBI = new BigInteger(String.valueOf(newMeasure));
-            BigInteger oldSizeBI = new BigInteger(String.valueOf(oldSize+1));
-            BigInteger sizeDiffBI = new BigInteger(String.valueOf(sizeDiff));
-            BigInteger meshSizeBI = new BigInteger(String.valueOf(meshSize));
-
-            return (
-                    (amountOfWaterBI
-                            .multiply(oldSizeBI)
-                            .divide(meshSizeBI)
-                    ).add(
-                            newMeasureBI
-                                    .multiply(sizeDiffBI)
-                                    .divide(meshSizeBI)
-                    )
-            ).longValue();
-        }
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(oldSize + 1 + sizeDiff);
+        return WaterArithmetic.DEFAULT.weightedAverage(amountOfWater, oldSize + 1, newMeasure, sizeDiff);
     }
 
     /**
@@ -190,17 +185,21 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
      */
     @Override
     public void add(long water) {
+        if (PoolMetrics.ENABLED) {
+            PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
+            PoolMetrics.GLOBAL.enterRecursion();
+        }
 
-        if (water == 0) return;
+        try {
+            if (water == 0) return;
 
-        if (masterPool != null) {
-            masterPool.add(water);
-        } else {
-            try {
-                amountOfWater = Math.addExact(amountOfWater, water / (connectedPools.size() + 1));
-            } catch (ArithmeticException exception){
-                amountOfWater = Long.MAX_VALUE;
+            if (masterPool != null) {
+                masterPool.add(water);
+            } else {
+                amountOfWater = WaterArithmetic.DEFAULT.addToLevel(amountOfWater, water, IdentityPoolSet.sizeOf(connectedPools) + 1);
             }
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
         }
     }
 
@@ -209,8 +208,50 @@ public class ConnectAndAddHighPerfomancePoolImpl implements IPool {
      */
     @Override
     public Boolean isConnected(IPool pool) {
-        //++isConnectCount;
-        return pool == masterPool || ((masterPool == null ) ? connectedPools.contains(pool) : masterPool.isConnected(pool)) ;
+        if (PoolMetrics.ENABLED) {
+            PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+            PoolMetrics.GLOBAL.enterRecursion();
+        }
+
+        try {
+            return pool == masterPool || ((masterPool == null ) ? IdentityPoolSet.containsIn(connectedPools, pool) : masterPool.isConnected(pool)) ;
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
+        }
     }
-}
 
+    /**
+     * Создает пакет из {@code size} новых бассейнов
+     */
+    public static IPoolBatch createBatch(int size) {
+        final ConnectAndAddHighPerfomancePoolImpl[] pools = new ConnectAndAddHighPerfomancePoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new ConnectAndAddHighPerfomancePoolImpl();
+        }
+        return new Batch(pools);
+    }
+
+    /**
+     * Пакет бассейнов, измерение читает воду напрямую из полей бассейна и его master бассейна
+     */
+    private static final class Batch extends PoolArrayBatch<ConnectAndAddHighPerfomancePoolImpl> {
+
+        private Batch(ConnectAndAddHighPerfomancePoolImpl[] pools) {
+            super(pools);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            checkResultLength(result, pools.length);
+
+            for (int i = 0; i < pools.length; i++) {
+                final ConnectAndAddHighPerfomancePoolImpl pool = pools[i];
+                final IPool master = pool.masterPool;
+                result[i] = master == null ? pool.amountOfWater : master.measure();
+            }
+        }
+    }
+}
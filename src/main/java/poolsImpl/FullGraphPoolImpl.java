@@ -1,29 +1,33 @@
 package poolsImpl;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.PoolArrayBatch;
+import utils.WaterArithmetic;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * Базовая имплементация {@code IPool}, производительность данного подхода ниже, чем {@code ConnectAndAddHighPerfomancePoolImpl},
  * но данный подход принципиально проще с точки зрения поддержки
  *
- *  Фактически вся задача сводится к разрыву рекурсии при балансировке сети бассейнов,
- *  применяется подход, при котором балансировкой воды фактически занимается 1 master бассейн
- *  master бассейном считается тот, в который доливают воды или тот, на котором конечный пользователь вызывает conect
+ *  Добавление воды и балансировка не рассылаются по всем бассейнам сети: уровень воды сети хранится
+ *  в общем аккумуляторе {@code Mesh}, и {@code measure()} читает его напрямую, так как после балансировки
+ *  во всех бассейнах сети воды поровну
  *
- *  для реализации такого подхода к балансировке необходимо, чтобы master бассейн знал о всех бассейнах в сети
- *  так как любой бассейн в разные периоды времени может выполнять функции master бассейна, то
- *  фактически с точки зрения внутренего представления, сеть бассейнов рассматривается как полный граф,
- *  где {@code connectedSet} есть множество вершин графа
+ *  поэтому {@code add(...)} и проверка баланса выполняются за константное время, а при соединении сетей
+ *  пересчитывается только аккумулятор и переназначаются бассейны меньшей сети, так что суммарная работа
+ *  на соединение n бассейнов O(n log n) вместо O(n^2) для полного графа. Аккумулятор создается при первом соединении,
+ *  одиночный бассейн хранит воду в собственном поле
  */
 public final class FullGraphPoolImpl implements IPool {
 
-    /** Сеть объедененных каналми бассейнов */
-    private final Set<IPool> connectedPools = new HashSet<>();
+    /** Сеть, в которой находится бассейн, {@code null} пока бассейн ни с чем не соединен */
+    private Mesh mesh = null;
 
-    /** Колличество воды в бассейне в данный момент */
+    /** Колличество воды в бассейне, пока он ни с чем не соединен */
     private long amountOfWater = 0;
 
     /**
@@ -31,40 +35,29 @@ public final class FullGraphPoolImpl implements IPool {
      */
     @Override
     public long measure() {
-        return amountOfWater;
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
+        final Mesh currentMesh = mesh;
+        return currentMesh == null ? amountOfWater : currentMesh.amountOfWater;
     }
 
     /**
-     * @inheritDoc В силу того, что сложности различить ситуации добавления нового бассейна в сеть и процесс мерджа двух сетей бассейнов
-     * первый {@code measure()} будет расчитывать колличество воды в бассейнах
+     * @inheritDoc Бассейны других имплементаций игнорируются
      */
     @Override
     public void connect(IPool pool) {
-        if (pool == this) return;
-        if (connectedPools.contains(pool)) return;
-
-        boolean isFirstConnection = connectedPools.stream().noneMatch((IPool itPool) -> itPool.isConnected(pool));
-
-        connectedPools.add(pool);
-
-        if (isFirstConnection && !pool.isConnected(this)) {
-
-            //данная секция вызывается при вызове connect конечным пользователем для новой пары бассейнов
-
-            pool.connect(this);
-
-            connectedPools.forEach((IPool firstIter)->firstIter.connect(this) );
-            connectedPools.forEach((IPool firstIter) -> connectedPools.forEach(firstIter::connect));
-
-            balanceWater();
-        } else if (isFirstConnection) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
 
-            //данная секция вызывается, когда происходит внутренее соединение двух сетей
-            //фактически это значит, что на уровень выше по стеку вызовов можно обноружить вызов вида {@code pool.connect(this)}
-            //из пользовательского кода
+        if (pool == this || !(pool instanceof FullGraphPoolImpl)) return;
 
-            connectedPools.forEach(pool::connect);
+        final Mesh firstMesh = joinMesh();
+        final Mesh secondMesh = ((FullGraphPoolImpl) pool).joinMesh();
+        if (firstMesh == secondMesh) return;
 
+        if (firstMesh.size < secondMesh.size) {
+            secondMesh.merge(firstMesh);
+        } else {
+            firstMesh.merge(secondMesh);
         }
     }
 
@@ -73,17 +66,14 @@ public final class FullGraphPoolImpl implements IPool {
      */
     @Override
     public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
+
         if (water == 0) return;
 
-        //если вода сбалансированна то тогда распределяем по всем бассейнам одинаковое колличество воды
-        if (isWaterBalanced()) {
-            //считаем что вода может равномерно распределиться по басейнам
-            final long diff = water / poolMeshSize();
-            amountOfWater += diff;
-            connectedPools.forEach((IPool pool) -> pool.add(diff));
+        if (mesh == null) {
+            amountOfWater = WaterArithmetic.DEFAULT.add(amountOfWater, water);
         } else {
-            //если бассейны не сбалансированны то значит мы получили объем для балансировки
-            amountOfWater += water;
+            mesh.addWater(water);
         }
     }
 
@@ -92,43 +82,106 @@ public final class FullGraphPoolImpl implements IPool {
      */
     @Override
     public Boolean isConnected(IPool pool) {
-        return connectedPools.contains(pool);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+
+        return pool != this && pool instanceof FullGraphPoolImpl && ((FullGraphPoolImpl) pool).mesh == mesh && mesh != null;
     }
 
+    /**
+     * Сеть бассейна, для одиночного бассейна создается сеть из него одного
+     */
+    private Mesh joinMesh() {
+        if (mesh == null) {
+            mesh = new Mesh(this, amountOfWater);
+            amountOfWater = 0;
+        }
+        return mesh;
+    }
 
     /**
-     * Метод балансировки воды в сети бассейнов, если в сети бассейнов разное колличество воды,
-     * то данный метод сбалансирует объемы
+     * Общий аккумулятор воды сети бассейнов
      */
-    private void balanceWater() {
-        if (isWaterBalanced()) return;
-        final long meshSize = poolMeshSize();
-        long expectedAmountOfWater = amountOfWater/meshSize + connectedPools
-                        .stream()
-                        .map((IPool pool) -> pool.measure() / meshSize)
-                        .reduce(0L, Long::sum);
-
-        amountOfWater += expectedAmountOfWater - amountOfWater;
-        connectedPools.forEach((IPool pool) -> pool.add(expectedAmountOfWater - pool.measure()));
+    private static final class Mesh {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        /** Бассейны сети */
+        private FullGraphPoolImpl[] pools;
+
+        /** Колличество бассейнов в сети */
+        private int size = 1;
+
+        /** Колличество воды в каждом бассейне сети */
+        private long amountOfWater = 0;
+
+        private Mesh(FullGraphPoolImpl pool, long amountOfWater) {
+            this.pools = new FullGraphPoolImpl[]{pool};
+            this.amountOfWater = amountOfWater;
+        }
+
+        /**
+         * Равномерно распределить воду по бассейнам сети
+         */
+        private void addWater(long water) {
+            amountOfWater = WaterArithmetic.DEFAULT.addToLevel(amountOfWater, water, size);
+        }
+
+        /**
+         * Присоединить меньшую сеть к данной, бассейны меньшей сети переназначаются на данную
+         *
+         * @param other присоединяемая сеть
+         */
+        private void merge(Mesh other) {
+            final int newSize = size + other.size;
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(newSize);
+
+            amountOfWater = WaterArithmetic.DEFAULT.weightedAverage(amountOfWater, size, other.amountOfWater, other.size);
+
+            if (pools.length < newSize) {
+                pools = Arrays.copyOf(pools, Math.max(newSize, Math.max(INITIAL_CAPACITY, pools.length + (pools.length >> 1))));
+            }
+            for (int i = 0; i < other.size; i++) {
+                final FullGraphPoolImpl pool = other.pools[i];
+                pool.mesh = this;
+                pools[size + i] = pool;
+            }
+            size = newSize;
+
+            other.pools = null;
+        }
     }
 
     /**
-     * Метод проверки налисия изменений баланса воды в соедененных бассейнах, если метод вернул true
-     * это означает что вода сбалансированна в соедененных бассейнах, если false то происходит процесс балансировки
-     *
-     * @return возвращает true, если объем воды во всех бассейнах одинаковый, иначе возвращает false
+     * Создает пакет из {@code size} новых бассейнов
      */
-    private boolean isWaterBalanced() {
-        return connectedPools.stream().noneMatch((IPool pool) -> pool.measure() != amountOfWater);
+    public static IPoolBatch createBatch(int size) {
+        final FullGraphPoolImpl[] pools = new FullGraphPoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new FullGraphPoolImpl();
+        }
+        return new Batch(pools);
     }
 
     /**
-     * Колличество бассейнов в сети
-     *
-     * @return колличество бассейнов соеденных каналами,
-     * по факту это есть размер коллекции сети с учетом данного бассейна
+     * Пакет бассейнов, измерение читает воду напрямую из аккумуляторов сетей
      */
-    private int poolMeshSize() {
-        return connectedPools.size() + 1;
+    private static final class Batch extends PoolArrayBatch<FullGraphPoolImpl> {
+
+        private Batch(FullGraphPoolImpl[] pools) {
+            super(pools);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            checkResultLength(result, pools.length);
+
+            for (int i = 0; i < pools.length; i++) {
+                final Mesh mesh = pools[i].mesh;
+                result[i] = mesh == null ? pools[i].amountOfWater : mesh.amountOfWater;
+            }
+        }
     }
 }
@@ -1,19 +1,39 @@
 package poolsImpl;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.PoolArrayBatch;
 import utils.PoolsOrchestrator;
+import utils.WaterArithmetic;
 
 /**
  * Имплементация {@code  IPool} эксплуатирующуая идею глобального агрегатора бассейнов
  * <p>
  * Идея в том что интерфейс достаточно скуден и для избавления от typecast все необходимые данные можно хранить
  * в глобальном оркестраторе {@code aggregator} который и будет оркестрировать все действия с есть бассейнов
+ * <p>
+ * Бассейн знает только свой оркестратор и слот в нем, бассейны других имплементаций и других оркестраторов не присоединяются.
+ * Бассейны создаются через {@code GlobalStatePoolFactoryImpl}, у каждой фабрики свой оркестратор,
+ * поэтому сети разных фабрик независимы и освобождаются вместе с фабрикой
  */
 public class GlobalStatePoolImpl implements IPool {
+
+    /**
+     * Оркестратор сети, которой принадлежит бассейн
+     */
+    private final PoolsOrchestrator orchestrator;
+
     /**
-     * В принципе он не обязан быть статическим, можно и в конструктор отдавть на уровне фабрики
+     * Поколение оркестратора на момент регистрации бассейна
      */
-    private final static PoolsOrchestrator orchestrator = new PoolsOrchestrator();
+    private final int generation;
+
+    /**
+     * Слот бассейна в оркестраторе
+     */
+    private final int slot;
 
     /**
      * Флаг оптимизации работы с орекстратором, используется для оптимизации создания новго бассейна
@@ -25,13 +45,25 @@ public class GlobalStatePoolImpl implements IPool {
      */
     private long derivedAmountOfWater = 0;
 
+    /**
+     * @param orchestrator оркестратор сети, в которой создается бассейн
+     */
+    public GlobalStatePoolImpl(PoolsOrchestrator orchestrator) {
+        this.orchestrator = orchestrator;
+        this.generation = orchestrator.getGeneration();
+        this.slot = orchestrator.registerPool();
+    }
+
     /**
      * @inheritDoc
      */
     @Override
     public long measure() {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
+        orchestrator.ensureGeneration(generation);
         if (isPoolAddedToOrchestrator) {
-            return orchestrator.measurePool(this);
+            return orchestrator.measurePool(slot);
         } else {
             return derivedAmountOfWater;
         }
@@ -42,8 +74,18 @@ public class GlobalStatePoolImpl implements IPool {
      */
     @Override
     public void connect(IPool pool) {
-        orchestrator.mergePools(this, pool);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
+
+        orchestrator.ensureGeneration(generation);
+        if (!(pool instanceof GlobalStatePoolImpl) || pool == this) return;
+
+        final GlobalStatePoolImpl other = (GlobalStatePoolImpl) pool;
+        if (other.orchestrator != orchestrator) return;
+
+        other.orchestrator.ensureGeneration(other.generation);
+        orchestrator.mergePools(slot, derivedAmountOfWater, other.slot, other.derivedAmountOfWater);
         isPoolAddedToOrchestrator = true;
+        other.isPoolAddedToOrchestrator = true;
     }
 
     /**
@@ -51,14 +93,13 @@ public class GlobalStatePoolImpl implements IPool {
      */
     @Override
     public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
+
+        orchestrator.ensureGeneration(generation);
         if (isPoolAddedToOrchestrator) {
-            orchestrator.addWaterToPool(this, water);
+            orchestrator.addWaterToPool(slot, water);
         } else {
-            try {
-                derivedAmountOfWater = Math.addExact(derivedAmountOfWater, water);
-            } catch (ArithmeticException exception) {
-                derivedAmountOfWater = Long.MAX_VALUE;
-            }
+            derivedAmountOfWater = WaterArithmetic.DEFAULT.add(derivedAmountOfWater, water);
         }
     }
 
@@ -67,10 +108,53 @@ public class GlobalStatePoolImpl implements IPool {
      */
     @Override
     public Boolean isConnected(IPool pool) {
-        if (isPoolAddedToOrchestrator) {
-            return (pool != this) && orchestrator.arePoolConnected(this, pool);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+
+        orchestrator.ensureGeneration(generation);
+        if (isPoolAddedToOrchestrator && pool instanceof GlobalStatePoolImpl) {
+            final GlobalStatePoolImpl other = (GlobalStatePoolImpl) pool;
+            return (pool != this) && other.orchestrator == orchestrator && other.generation == generation
+                    && orchestrator.arePoolConnected(slot, other.slot);
         } else {
             return false;
         }
     }
+
+    /**
+     * Создает пакет из {@code size} новых бассейнов в оркестраторе {@code orchestrator}
+     */
+    public static IPoolBatch createBatch(PoolsOrchestrator orchestrator, int size) {
+        final GlobalStatePoolImpl[] pools = new GlobalStatePoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new GlobalStatePoolImpl(orchestrator);
+        }
+        return new Batch(orchestrator, pools);
+    }
+
+    /**
+     * Пакет бассейнов, измерение обращается к оркестратору напрямую
+     */
+    private static final class Batch extends PoolArrayBatch<GlobalStatePoolImpl> {
+
+        private final PoolsOrchestrator orchestrator;
+
+        private Batch(PoolsOrchestrator orchestrator, GlobalStatePoolImpl[] pools) {
+            super(pools);
+            this.orchestrator = orchestrator;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            checkResultLength(result, pools.length);
+
+            for (int i = 0; i < pools.length; i++) {
+                final GlobalStatePoolImpl pool = pools[i];
+                orchestrator.ensureGeneration(pool.generation);
+                result[i] = pool.isPoolAddedToOrchestrator ? orchestrator.measurePool(pool.slot) : pool.derivedAmountOfWater;
+            }
+        }
+    }
 }
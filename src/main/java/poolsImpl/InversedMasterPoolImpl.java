@@ -1,39 +1,40 @@
 package poolsImpl;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.PoolArrayBatch;
+import utils.WaterArithmetic;
 
 
-import java.math.BigInteger;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Алгоримт в этой имплементации такой
- * бассейн на котором вызвали connect передает все свои дочерние элементы в присоеденяемыйй бассейн
+ * бассейн на котором вызвали connect передает свою сеть присоеденяемому бассейну:
+ * master бассейн сети {@code this} становится дочерним для master бассейна сети {@code pool}
+ * <p>
+ * После нескольких переназначений master бассейна листья оказываются в длинной цепочке ссылок {@code masterPool},
+ * поэтому все операции ищут master бассейн итеративно и по дороге делят путь пополам (path halving):
+ * каждый пройденный бассейн перевешивается на бассейн через один. Цепочки сокращаются при каждом обращении,
+ * и поиск master бассейна амортизированно почти константный, а стек не растет с длиной цепочки
+ * <p>
+ * Колличество воды и размер сети хранятся только в master бассейне, бассейны других имплементаций не присоединяются
  */
 public class InversedMasterPoolImpl implements IPool {
 
     /**
-     * Сеть объедененных каналми бассейнов
+     * Ссылка на следующий бассейн в цепочке к центральному бассейну, если {@code null} то данный бассейн является центральным
      */
-    private final Set<IPool> connectedPools = new HashSet<>();
+    private InversedMasterPoolImpl masterPool = null;
 
     /**
-     * Ссылка на центральный бассейн с точки зрения топологии, если {@code null} то данный бассейн является центральным
+     * Колличество бассейнов в сети, актуально только для master бассейна
      */
-    private IPool masterPool = null;
+    private long meshSize = 1;
 
     /**
-     * Флаг для разрыва рекурсии при соединении двух сетей
-     */
-    private long oldSize = 0;
-
-    private IPool oldMasterPool = null;
-
-    private IPool transitionMasterPool = null;
-
-    /**
-     * Колличество воды в бассейне в данный момент
+     * Колличество воды в каждом бассейне сети, актуально только для master бассейна
      */
     private long amountOfWater = 0;
 
@@ -42,7 +43,9 @@ public class InversedMasterPoolImpl implements IPool {
      */
     @Override
     public long measure() {
-        return masterPool == null ? amountOfWater : masterPool.measure();
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
+        return findMasterPool().amountOfWater;
     }
 
     /**
@@ -50,119 +53,24 @@ public class InversedMasterPoolImpl implements IPool {
      */
     @Override
     public void connect(IPool pool) {
-        if (pool == null || pool == this || pool == masterPool) return;
-        if (masterPool == null && connectedPools.contains(pool)) return;
-
-        if (masterPool == null) {
-            masterConnect(pool);
-        } else {
-            slaveConnect(pool);
-        }
-    }
-
-    private void slaveConnect(IPool pool) {
-        final Boolean isMasterPoolConnected = masterPool.isConnected(pool);
-
-        //Возврат null в методе isConnect на мастер бассейне означает, что сеть в процессе слияния
-        if (isMasterPoolConnected == null) {
-            masterPool = pool;
-        } else if (isMasterPoolConnected.equals(Boolean.FALSE)) {
-            masterPool.connect(pool);
-        }
-    }
-
-    private void masterConnect(IPool pool) {
-
-        if (transitionMasterPool != null) {
-            masterPool = pool;
-        } else if (oldMasterPool != null && pool != oldMasterPool) {
-            connectedPools.add(pool);
-            pool.connect(this);
-        } else if (oldMasterPool == pool) {
-            stopStarTransition(pool);
-        } else if (pool.isConnected(this) == null) {
-            oldSize = connectedPools.size();
-            oldMasterPool = pool;
-        } else {
-            newMasterPoolConnect(pool);
-        }
-    }
-
-    /**
-     * Метод вызываемый для присоединения старой сети бассейнов к новой, вызывается только на новом master бассейне
-     *
-     * @param pool бассейн для присоедениениея
-     */
-    private void newMasterPoolConnect(IPool pool) {
-        transitionMasterPool = pool;
-
-        pool.connect(this);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
 
+        if (!(pool instanceof InversedMasterPoolImpl)) return;
 
-        connectedPools.forEach((IPool p)->pool.connect(p));
+        final InversedMasterPoolImpl oldMaster = findMasterPool();
+        final InversedMasterPoolImpl newMaster = ((InversedMasterPoolImpl) pool).findMasterPool();
+        if (oldMaster == newMaster) return;
 
-        connectedPools.clear();
+        final long newSize = oldMaster.meshSize + newMaster.meshSize;
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(newSize);
 
-        pool.connect(this);
+        newMaster.amountOfWater = WaterArithmetic.DEFAULT.weightedAverage(
+                newMaster.amountOfWater, newMaster.meshSize, oldMaster.amountOfWater, oldMaster.meshSize
+        );
+        newMaster.meshSize = newSize;
 
-        transitionMasterPool = null;
-        amountOfWater = 0L;
-    }
-
-    /**
-     * Метод вызываемый для переприсоединения старых вершин звезды к новому master бассейну
-     * {@code this} всегда старый master бассейн
-     *
-     * @param pool бассейн для присоедениениея, новый master бассейн
-     */
-    private void stopStarTransition(IPool pool) {
-        pool.connect(this);
-        oldMasterPool = null;
-
-        connectedPools.add(pool);
-
-        final long newMeshMeasure = pool.measure();
-        final long sizeDif = connectedPools.size() - oldSize;
-
-        amountOfWater = calculateNewAmount(sizeDif, oldSize, newMeshMeasure);
-    }
-
-    /**
-     * Расчитывает новое значени объема воды с учетом возможных переполнений лонга в процессе
-     *
-     * @param sizeDiff   размер добавленной сети
-     * @param oldSize    размер сети до добавления нового бассейна
-     * @param newMeasure объем воды в старой сети
-     * @return возвращает новый объем воды для сети
-     */
-    private long calculateNewAmount(long sizeDiff, long oldSize, long newMeasure) {
-
-        final long meshSize = connectedPools.size() + 1;
-
-        try {
-
-            return Math.addExact(Math.multiplyExact(amountOfWater, oldSize + 1), Math.multiplyExact(newMeasure, sizeDiff)) / meshSize;
-
-        } catch (ArithmeticException exception) {
-
-            //если лонги перепонились то только BigInt
-            BigInteger amountOfWaterBI = new BigInteger(String.valueOf(amountOfWater));
-            BigInteger newMeasureBI = new BigInteger(String.valueOf(newMeasure));
-            BigInteger oldSizeBI = new BigInteger(String.valueOf(oldSize + 1));
-            BigInteger sizeDiffBI = new BigInteger(String.valueOf(sizeDiff));
-            BigInteger meshSizeBI = new BigInteger(String.valueOf(meshSize));
-
-            return (
-                    (amountOfWaterBI
-                            .multiply(oldSizeBI)
-                            .divide(meshSizeBI)
-                    ).add(
-                            newMeasureBI
-                                    .multiply(sizeDiffBI)
-                                    .divide(meshSizeBI)
-                    )
-            ).longValue();
-        }
+        oldMaster.masterPool = newMaster;
+        oldMaster.amountOfWater = 0L;
     }
 
     /**
@@ -170,18 +78,12 @@ public class InversedMasterPoolImpl implements IPool {
      */
     @Override
     public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
 
         if (water == 0) return;
 
-        if (masterPool != null) {
-            masterPool.add(water);
-        } else {
-            try {
-                amountOfWater = Math.addExact(amountOfWater, water / (connectedPools.size() + 1));
-            } catch (ArithmeticException exception) {
-                amountOfWater = Long.MAX_VALUE;
-            }
-        }
+        final InversedMasterPoolImpl master = findMasterPool();
+        master.amountOfWater = WaterArithmetic.DEFAULT.addToLevel(master.amountOfWater, water, master.meshSize);
     }
 
     /**
@@ -189,22 +91,33 @@ public class InversedMasterPoolImpl implements IPool {
      */
     @Override
     public Boolean isConnected(IPool pool) {
-        if (pool == null) return Boolean.FALSE;
-        if (transitionMasterPool != null) {
-            return null;
-        } else if (pool == masterPool) {
-            return Boolean.TRUE;
-        } else {
-            return internalIsConnect(pool);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+
+        return pool != this && pool instanceof InversedMasterPoolImpl
+                && findMasterPool() == ((InversedMasterPoolImpl) pool).findMasterPool();
+    }
+
+    /**
+     * Найти master бассейн сети, по дороге каждый пройденный бассейн перевешивается на бассейн через один
+     */
+    private InversedMasterPoolImpl findMasterPool() {
+        InversedMasterPoolImpl pool = this;
+        while (pool.masterPool != null) {
+            final InversedMasterPoolImpl next = pool.masterPool;
+            if (next.masterPool != null) pool.masterPool = next.masterPool;
+            pool = pool.masterPool;
         }
+        return pool;
     }
 
-    private Boolean internalIsConnect(IPool pool) {
-        if (masterPool != null) {
-            return masterPool.isConnected(pool);
-        } else {
-            return connectedPools.contains(pool);
+    /**
+     * Создает пакет из {@code size} новых бассейнов
+     */
+    public static IPoolBatch createBatch(int size) {
+        final InversedMasterPoolImpl[] pools = new InversedMasterPoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new InversedMasterPoolImpl();
         }
+        return new PoolArrayBatch<>(pools);
     }
 }
-
@@ -0,0 +1,167 @@
+package poolsImpl;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.PoolArrayBatch;
+import utils.WaterArithmetic;
+
+import java.util.Arrays;
+
+/**
+ * Итеративная версия {@code ConnectAndAddHighPerfomancePoolImpl}
+ * <p>
+ * Сеть бассейнов так же имеет топологию типа звезда с master бассейном в центре, но звезда всегда плоская:
+ * каждый бассейн хранит ссылку прямо на master бассейн своей сети, а сам master бассейн ссылается на себя.
+ * Поэтому {@code measure()}, {@code add(...)} и {@code isConnected(...)} это одно обращение к master бассейну
+ * без рекурсии и без поиска в хеш-таблице
+ * <p>
+ * При соединении двух сетей master бассейном объедененной сети становится master бассейн большей сети,
+ * а бассейны меньшей сети в цикле переназначаются на него. Каждый бассейн при переназначении попадает в сеть
+ * как минимум вдвое большую, поэтому суммарно на n бассейнов приходится O(n log n) переназначений,
+ * а глубина стека не зависит от размера сети
+ */
+public class IterativeConnectAndAddPoolImpl implements IPool {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** Ссылка на центральный бассейн сети, для центрального бассейна ссылается на него самого */
+    private IterativeConnectAndAddPoolImpl masterPool = this;
+
+    /** Бассейны сети кроме самого master бассейна, заполнено только у master бассейна */
+    private IterativeConnectAndAddPoolImpl[] connectedPools = null;
+
+    /** Колличество бассейнов в сети, актуально только у master бассейна */
+    private int meshSize = 1;
+
+    /** Колличество воды в каждом бассейне сети, актуально только у master бассейна */
+    private long amountOfWater = 0;
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long measure() {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
+        return masterPool.amountOfWater;
+    }
+
+    /**
+     * @inheritDoc Бассейны других имплементаций игнорируются
+     */
+    @Override
+    public void connect(IPool pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
+
+        if (!(pool instanceof IterativeConnectAndAddPoolImpl)) return;
+
+        final IterativeConnectAndAddPoolImpl firstMaster = masterPool;
+        final IterativeConnectAndAddPoolImpl secondMaster = ((IterativeConnectAndAddPoolImpl) pool).masterPool;
+        if (firstMaster == secondMaster) return;
+
+        if (firstMaster.meshSize < secondMaster.meshSize) {
+            secondMaster.absorb(firstMaster);
+        } else {
+            firstMaster.absorb(secondMaster);
+        }
+    }
+
+    /**
+     * Присоединить меньшую сеть к сети {@code this}, вызывается только на master бассейне
+     *
+     * @param master master бассейн меньшей сети
+     */
+    private void absorb(IterativeConnectAndAddPoolImpl master) {
+        final int newMeshSize = meshSize + master.meshSize;
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(newMeshSize);
+
+        amountOfWater = WaterArithmetic.DEFAULT.weightedAverage(amountOfWater, meshSize, master.amountOfWater, master.meshSize);
+
+        ensureCapacity(newMeshSize - 1);
+        int size = meshSize - 1;
+
+        connectedPools[size++] = master;
+        master.masterPool = this;
+        for (int i = 0; i < master.meshSize - 1; i++) {
+            final IterativeConnectAndAddPoolImpl pool = master.connectedPools[i];
+            pool.masterPool = this;
+            connectedPools[size++] = pool;
+        }
+
+        meshSize = newMeshSize;
+        master.connectedPools = null;
+        master.meshSize = 1;
+        master.amountOfWater = 0;
+    }
+
+    /**
+     * Увеличить массив бассейнов сети так, чтобы в него помещалось {@code capacity} бассейнов
+     */
+    private void ensureCapacity(int capacity) {
+        if (connectedPools == null) {
+            connectedPools = new IterativeConnectAndAddPoolImpl[Math.max(INITIAL_CAPACITY, capacity)];
+        } else if (connectedPools.length < capacity) {
+            connectedPools = Arrays.copyOf(connectedPools, Math.max(capacity, connectedPools.length + (connectedPools.length >> 1)));
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
+
+        if (water == 0) return;
+
+        final IterativeConnectAndAddPoolImpl master = masterPool;
+        master.amountOfWater = WaterArithmetic.DEFAULT.addToLevel(master.amountOfWater, water, master.meshSize);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Boolean isConnected(IPool pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+
+        return pool != this
+                && pool instanceof IterativeConnectAndAddPoolImpl
+                && ((IterativeConnectAndAddPoolImpl) pool).masterPool == masterPool;
+    }
+
+    /**
+     * Создает пакет из {@code size} новых бассейнов
+     */
+    public static IPoolBatch createBatch(int size) {
+        final IterativeConnectAndAddPoolImpl[] pools = new IterativeConnectAndAddPoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new IterativeConnectAndAddPoolImpl();
+        }
+        return new Batch(pools);
+    }
+
+    /**
+     * Пакет бассейнов, измерение читает воду напрямую из master бассейна
+     */
+    private static final class Batch extends PoolArrayBatch<IterativeConnectAndAddPoolImpl> {
+
+        private Batch(IterativeConnectAndAddPoolImpl[] pools) {
+            super(pools);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            checkResultLength(result, pools.length);
+
+            for (int i = 0; i < pools.length; i++) {
+                result[i] = pools[i].masterPool.amountOfWater;
+            }
+        }
+    }
+}
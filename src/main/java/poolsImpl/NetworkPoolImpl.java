@@ -0,0 +1,186 @@
+package poolsImpl;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import interfaces.IPoolNetwork;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.PoolArrayBatch;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Имплементация {@code IPool} в виде тонкой обертки над индексом в {@link IPoolNetwork}
+ * <p>
+ * Адаптер для тех, кто работает через {@code IPool}, поверх любой сети с целочисленными индексами.
+ * Объект бассейна содержит только ссылку на сеть и свой индекс в ней, поэтому его можно создавать по требованию
+ * и не хранить, создаются такие бассейны через {@code NetworkPoolFactoryImpl}
+ */
+public final class NetworkPoolImpl implements IPool {
+
+    /**
+     * Сеть, которой принадлежит бассейн
+     */
+    private final IPoolNetwork network;
+
+    /**
+     * Индекс бассейна в сети
+     */
+    private final int index;
+
+    public NetworkPoolImpl(IPoolNetwork network, int index) {
+        this.network = network;
+        this.index = index;
+    }
+
+    /**
+     * @return индекс бассейна в сети
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long measure() {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
+        return network.measure(index);
+    }
+
+    /**
+     * @inheritDoc Бассейны других имплементаций и других сетей не присоединяются
+     */
+    @Override
+    public void connect(IPool pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
+
+        if (!(pool instanceof NetworkPoolImpl)) return;
+
+        final NetworkPoolImpl other = (NetworkPoolImpl) pool;
+        if (other.network != network || other.index == index) return;
+
+        network.connect(index, other.index);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
+
+        network.add(index, water);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Boolean isConnected(IPool pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+
+        if (!(pool instanceof NetworkPoolImpl)) return false;
+
+        final NetworkPoolImpl other = (NetworkPoolImpl) pool;
+        return other.network == network && other.index != index && network.isConnected(index, other.index);
+    }
+
+    /**
+     * Создает пакет из {@code size} новых бассейнов с последовательными индексами в сети {@code network}
+     */
+    public static IPoolBatch createBatch(IPoolNetwork network, int size) {
+        return new Batch(network, network.create(size), size);
+    }
+
+    /**
+     * Пакет бассейнов, операции выполняются напрямую над индексами сети без создания объектов бассейнов
+     */
+    private static final class Batch implements IPoolBatch {
+
+        private final IPoolNetwork network;
+
+        /**
+         * Индекс первого бассейна пакета в сети
+         */
+        private final int first;
+
+        private final int size;
+
+        private Batch(IPoolNetwork network, int first, int size) {
+            this.network = network;
+            this.first = first;
+            this.size = size;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public IPool get(int index) {
+            return new NetworkPoolImpl(network, first + Objects.checkIndex(index, size));
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            PoolArrayBatch.checkResultLength(result, size);
+
+            for (int i = 0; i < size; i++) {
+                result[i] = network.measure(first + i);
+            }
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void addAll(int[] indices, long[] water) {
+            PoolArrayBatch.checkSameLength(indices.length, water.length);
+
+            for (int i = 0; i < indices.length; i++) {
+                network.add(first + Objects.checkIndex(indices[i], size), water[i]);
+            }
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void connectAll(int[] firstPools, int[] secondPools) {
+            PoolArrayBatch.checkSameLength(firstPools.length, secondPools.length);
+
+            for (int i = 0; i < firstPools.length; i++) {
+                network.connect(first + Objects.checkIndex(firstPools[i], size), first + Objects.checkIndex(secondPools[i], size));
+            }
+        }
+
+        /**
+         * @inheritDoc Каналы соединяются через {@code IPoolNetwork.connectAllParallel}
+         */
+        @Override
+        public void connectAllParallel(int[] firstPools, int[] secondPools) {
+            PoolArrayBatch.checkSameLength(firstPools.length, secondPools.length);
+
+            final int[] firstIndices = new int[firstPools.length];
+            final int[] secondIndices = new int[secondPools.length];
+            Arrays.parallelSetAll(firstIndices, i -> first + Objects.checkIndex(firstPools[i], size));
+            Arrays.parallelSetAll(secondIndices, i -> first + Objects.checkIndex(secondPools[i], size));
+
+            network.connectAllParallel(firstIndices, secondIndices);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package poolsImpl;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
+import metrics.Operation;
+import metrics.PoolMetrics;
+import utils.IdentityPoolSet;
+import utils.PoolArrayBatch;
+import utils.WaterArithmetic;
 
-import java.math.BigInteger;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Имплементация на основе typecast {@code IPool} под капотом до TypeCastWayPoolImpl
@@ -12,9 +15,9 @@ import java.util.Set;
 public class TypeCastWayPoolImpl implements IPool {
 
     /**
-     * Сеть объедененных каналми бассейнов
+     * Сеть объедененных каналми бассейнов, {@code null} пока бассейн ни с чем не соединен
      */
-    private final Set<TypeCastWayPoolImpl> connectedPools = new HashSet<>();
+    private IdentityPoolSet<TypeCastWayPoolImpl> connectedPools = null;
 
     /**
      * Ссылка на центральный бассейн с точки зрения топологии, если {@code null} то данный бассейн является центральным
@@ -31,6 +34,8 @@ public class TypeCastWayPoolImpl implements IPool {
      */
     @Override
     public long measure() {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.MEASURE);
+
         return masterPool == null ? amountOfWater : masterPool.amountOfWater;
     }
 
@@ -39,9 +44,18 @@ public class TypeCastWayPoolImpl implements IPool {
      */
     @Override
     public void connect(IPool pool) {
-        if (pool == this || pool == masterPool || !(pool instanceof TypeCastWayPoolImpl)) return;
+        if (PoolMetrics.ENABLED) {
+            PoolMetrics.GLOBAL.recordEngineCall(Operation.CONNECT);
+            PoolMetrics.GLOBAL.enterRecursion();
+        }
+
+        try {
+            if (pool == this || pool == masterPool || !(pool instanceof TypeCastWayPoolImpl)) return;
 
-        realConnect((TypeCastWayPoolImpl) pool);
+            realConnect((TypeCastWayPoolImpl) pool);
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
+        }
     }
 
     /**
@@ -50,29 +64,54 @@ public class TypeCastWayPoolImpl implements IPool {
      * @param pool бассейн
      */
     private void realConnect(TypeCastWayPoolImpl pool) {
-        if (masterPool == null && connectedPools.contains(pool)) return;
+        if (masterPool == null && IdentityPoolSet.containsIn(connectedPools, pool)) return;
 
         if (masterPool == null) {
             if (pool.masterPool == null) {
-                masterConnect(pool);
+                //бассейны переназначаются из меньшей сети в большую
+                if (IdentityPoolSet.sizeOf(pool.connectedPools) > IdentityPoolSet.sizeOf(connectedPools)) {
+                    pool.masterConnect(this);
+                } else {
+                    masterConnect(pool);
+                }
             } else {
-                realConnect(pool.masterPool);
+                realConnectNested(pool.masterPool);
             }
         } else {
-            masterPool.realConnect(pool);
+            masterPool.realConnectNested(pool);
+        }
+    }
+
+    /**
+     * Вложенный вызов {@link #realConnect(TypeCastWayPoolImpl)}, учитывается в глубине рекурсии
+     */
+    private void realConnectNested(TypeCastWayPoolImpl pool) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.enterRecursion();
+        try {
+            realConnect(pool);
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
         }
     }
 
+    /**
+     * Присоединение сети с master бассейном {@code pool} к сети {@code this}, вызывается только на master бассейне,
+     * все бассейны присоединяемой сети переназначаются на {@code this}, поэтому присоединяемая сеть должна быть не больше
+     *
+     * @param pool master бассейн присоединяемой сети
+     */
     private void masterConnect(TypeCastWayPoolImpl pool) {
-        final long oldSize = connectedPools.size();
-        pool.connectedPools.forEach((TypeCastWayPoolImpl p) -> {
-            p.masterPool = this;
-            connectedPools.add(p);
-        });
-        connectedPools.add(pool);
+        final long oldSize = IdentityPoolSet.sizeOf(connectedPools);
+        if (pool.connectedPools != null) {
+            pool.connectedPools.forEach((TypeCastWayPoolImpl p) -> {
+                p.masterPool = this;
+                connectedPools = IdentityPoolSet.addTo(connectedPools, p);
+            });
+        }
+        connectedPools = IdentityPoolSet.addTo(connectedPools, pool);
         pool.masterPool = this;
-        amountOfWater = calculateNewAmount(pool.connectedPools.size() + 1, oldSize, pool.amountOfWater);
-        pool.connectedPools.clear();
+        amountOfWater = calculateNewAmount(IdentityPoolSet.sizeOf(pool.connectedPools) + 1, oldSize, pool.amountOfWater);
+        pool.connectedPools = null;
     }
 
     /**
@@ -84,33 +123,8 @@ public class TypeCastWayPoolImpl implements IPool {
      * @return возвращает новый объем воды для сети
      */
     private long calculateNewAmount(long sizeDiff, long oldSize, long newMeasure) {
-
-        final long meshSize = connectedPools.size() + 1;
-
-        try {
-
-            return Math.addExact(Math.multiplyExact(amountOfWater, oldSize + 1), Math.multiplyExact(newMeasure, sizeDiff)) / meshSize;
-
-        } catch (ArithmeticException exception) {
-
-            //если лонги перепонились то только BigInt
-            BigInteger amountOfWaterBI = new BigInteger(String.valueOf(amountOfWater));
-            BigInteger newMeasureBI = new BigInteger(String.valueOf(newMeasure));
-            BigInteger oldSizeBI = new BigInteger(String.valueOf(oldSize + 1));
-            BigInteger sizeDiffBI = new BigInteger(String.valueOf(sizeDiff));
-            BigInteger meshSizeBI = new BigInteger(String.valueOf(meshSize));
-
-            return (
-                    (amountOfWaterBI
-                            .multiply(oldSizeBI)
-                            .divide(meshSizeBI)
-                    ).add(
-                            newMeasureBI
-                                    .multiply(sizeDiffBI)
-                                    .divide(meshSizeBI)
-                    )
-            ).longValue();
-        }
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(oldSize + 1 + sizeDiff);
+        return WaterArithmetic.DEFAULT.weightedAverage(amountOfWater, oldSize + 1, newMeasure, sizeDiff);
     }
 
     /**
@@ -118,6 +132,7 @@ public class TypeCastWayPoolImpl implements IPool {
      */
     @Override
     public void add(long water) {
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordEngineCall(Operation.ADD);
 
         if (water == 0) return;
 
@@ -129,11 +144,7 @@ public class TypeCastWayPoolImpl implements IPool {
     }
 
     private void realAdd(long water) {
-        try {
-            amountOfWater = Math.addExact(amountOfWater, water / (connectedPools.size() + 1));
-        } catch (ArithmeticException exception) {
-            amountOfWater = Long.MAX_VALUE;
-        }
+        amountOfWater = WaterArithmetic.DEFAULT.addToLevel(amountOfWater, water, IdentityPoolSet.sizeOf(connectedPools) + 1);
     }
 
     /**
@@ -141,9 +152,66 @@ public class TypeCastWayPoolImpl implements IPool {
      */
     @Override
     public Boolean isConnected(IPool pool) {
-        if (pool instanceof TypeCastWayPoolImpl)
-            return pool == masterPool || (masterPool == null ? connectedPools.contains(pool) : masterPool.isConnected(pool));
-        return false;
+        if (PoolMetrics.ENABLED) {
+            PoolMetrics.GLOBAL.recordEngineCall(Operation.IS_CONNECTED);
+            PoolMetrics.GLOBAL.enterRecursion();
+        }
+
+        try {
+            if (pool instanceof TypeCastWayPoolImpl)
+                return pool == masterPool || (masterPool == null ? IdentityPoolSet.containsIn(connectedPools, pool) : masterPool.isConnected(pool));
+            return false;
+        } finally {
+            if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.exitRecursion();
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Создает пакет из {@code size} новых бассейнов
+     */
+    public static IPoolBatch createBatch(int size) {
+        final TypeCastWayPoolImpl[] pools = new TypeCastWayPoolImpl[size];
+        for (int i = 0; i < size; i++) {
+            pools[i] = new TypeCastWayPoolImpl();
+        }
+        return new Batch(pools);
+    }
+
+    /**
+     * Пакет бассейнов, измерение и добавление воды обращаются к master бассейну напрямую
+     */
+    private static final class Batch extends PoolArrayBatch<TypeCastWayPoolImpl> {
+
+        private Batch(TypeCastWayPoolImpl[] pools) {
+            super(pools);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void measureAll(long[] result) {
+            checkResultLength(result, pools.length);
+
+            for (int i = 0; i < pools.length; i++) {
+                final TypeCastWayPoolImpl pool = pools[i];
+                result[i] = pool.masterPool == null ? pool.amountOfWater : pool.masterPool.amountOfWater;
+            }
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void addAll(int[] indices, long[] water) {
+            checkSameLength(indices.length, water.length);
+
+            for (int i = 0; i < indices.length; i++) {
+                if (water[i] == 0) continue;
+
+                final TypeCastWayPoolImpl pool = pools[indices[i]];
+                (pool.masterPool == null ? pool : pool.masterPool).realAdd(water[i]);
+            }
+        }
+    }
+}
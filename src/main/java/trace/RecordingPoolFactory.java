@@ -0,0 +1,472 @@
+package trace;
+
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Декоратор {@code IPoolFactory}, записывающий все операции над созданными бассейнами в трассу {@link TraceFormat}
+ * <p>
+ * Каждый бассейн получает стабильный идентификатор в порядке создания. Операции пишутся в буфер текущего потока,
+ * заполненный буфер передается фоновому потоку, который сбрасывает его в файл одним вызовом и возвращает в пул буферов,
+ * так что запись операции это обращение к {@code ThreadLocal}, один неконкурентный CAS и несколько записей в память
+ * без аллокаций и блокировок
+ * <p>
+ * Очередь заполненных буферов и пул свободных буферов ограничены {@code maxQueuedChunks}: если фоновый поток
+ * не успевает писать, потоки ждут освобождения места в очереди, а лишние свободные буферы отбрасываются.
+ * Раз в {@code flushInterval} поток сброса передает на запись непустые буферы всех потоков, поэтому записи
+ * простаивающего потока не задерживаются до закрытия, и забывает буферы завершившихся потоков
+ * <p>
+ * Порядок операций сохраняется в пределах потока. Записи о создании бассейнов попадают в файл раньше любого буфера,
+ * заполненного после создания, поэтому трасса всегда проигрывается, но порядок операций разных потоков
+ * над общими бассейнами сохраняется только с точностью до буфера
+ * <p>
+ * После первой ошибки записи запись трассы прекращается, операции над бассейнами продолжают выполняться без записи,
+ * ошибка доступна через {@link #getWriteError()} и бросается из {@link #close()}
+ * <p>
+ * {@link #close()} нужно вызывать после того, как все потоки закончили работу с бассейнами,
+ * фабрика-делегат при этом не закрывается
+ */
+public final class RecordingPoolFactory implements IPoolFactory, AutoCloseable {
+
+    /**
+     * По умолчанию буфер потока 64 Кб
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * По умолчанию в очереди на запись не больше 64 буферов
+     */
+    public static final int DEFAULT_MAX_QUEUED_CHUNKS = 64;
+
+    /**
+     * По умолчанию буферы потоков передаются на запись не реже раза в секунду
+     */
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Сигнал фоновому потоку о завершении записи
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final IPoolFactory factory;
+
+    private final TraceWriter writer;
+
+    private final int chunkSize;
+
+    private final long flushIntervalMillis;
+
+    /**
+     * Заполненные буферы в порядке передачи фоновому потоку
+     */
+    private final BlockingQueue<ByteBuffer> filledChunks;
+
+    /**
+     * Записанные и очищенные буферы для повторного использования
+     */
+    private final BlockingQueue<ByteBuffer> freeChunks;
+
+    private final ThreadLocal<ChunkHolder> chunks = ThreadLocal.withInitial(this::registerChunkHolder);
+
+    /**
+     * Защищает {@code createChunk}, {@code nextId}, {@code holders} и порядок передачи буферов
+     */
+    private final Object lock = new Object();
+
+    private final List<ChunkHolder> holders = new ArrayList<>();
+
+    /**
+     * Буфер записей о создании бассейнов, общий для всех потоков
+     */
+    private ByteBuffer createChunk;
+
+    private int nextId = 0;
+
+    private final Thread writerThread;
+
+    private final Thread flushThread;
+
+    private volatile boolean isClosed = false;
+
+    private volatile IOException writeError;
+
+    public RecordingPoolFactory(IPoolFactory factory, Path path) throws IOException {
+        this(factory, path, DEFAULT_CHUNK_SIZE);
+    }
+
+    public RecordingPoolFactory(IPoolFactory factory, Path path, int chunkSize) throws IOException {
+        this(factory, path, chunkSize, DEFAULT_MAX_QUEUED_CHUNKS, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param factory         фабрика бассейнов, операции над которыми записываются
+     * @param path            файл трассы, существующий файл перезаписывается
+     * @param chunkSize       размер буфера одного потока в байтах
+     * @param maxQueuedChunks максимальное колличество буферов в очереди на запись и в пуле свободных буферов
+     * @param flushInterval   период передачи на запись неполных буферов потоков
+     */
+    public RecordingPoolFactory(IPoolFactory factory, Path path, int chunkSize, int maxQueuedChunks, Duration flushInterval) throws IOException {
+        if (chunkSize < TraceFormat.MAX_RECORD_SIZE) throw new IllegalArgumentException("Слишком маленький буфер: " + chunkSize);
+        if (maxQueuedChunks < 1) throw new IllegalArgumentException("Слишком маленькая очередь: " + maxQueuedChunks);
+        if (flushInterval.toMillis() < 1) throw new IllegalArgumentException("Слишком маленький период сброса: " + flushInterval);
+
+        this.factory = factory;
+        this.chunkSize = chunkSize;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        //END должен попасть в очередь даже если она заполнена буферами
+        this.filledChunks = new ArrayBlockingQueue<>(maxQueuedChunks + 1);
+        this.freeChunks = new ArrayBlockingQueue<>(maxQueuedChunks);
+        this.writer = new TraceWriter(path);
+        this.createChunk = takeFreeChunk();
+
+        writerThread = new Thread(this::writeChunks, "pool-trace-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        flushThread = new Thread(this::flushPeriodically, "pool-trace-flusher");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * @inheritDoc Бассейн записывается в трассу с очередным идентификатором
+     */
+    @Override
+    public IPool create() {
+        final int id;
+        synchronized (lock) {
+            id = nextId++;
+            if (isRecording()) {
+                if (createChunk.remaining() < TraceFormat.recordSize(TraceFormat.CREATE)) {
+                    submit(createChunk.flip());
+                    createChunk = takeFreeChunk();
+                }
+                createChunk.put(TraceFormat.CREATE).putInt(id);
+            }
+        }
+
+        return new RecordingPool(this, factory.create(), id);
+    }
+
+    /**
+     * @return первая ошибка записи трассы или {@code null}, после ошибки операции больше не записываются
+     */
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    /**
+     * Дописать все накопленные записи и закрыть трассу
+     *
+     * @throws IOException если фоновый поток не смог записать трассу
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (isClosed) return;
+            isClosed = true;
+            lock.notifyAll();
+        }
+
+        try {
+            flushThread.join();
+
+            synchronized (lock) {
+                submitCreateChunk();
+                for (ChunkHolder holder : holders) {
+                    //владельцы буферов уже закончили работу, поэтому буфер забирается без ожидания
+                    if (holder.chunk.position() != 0) submit(holder.chunk.flip());
+                    holder.chunk = ByteBuffer.allocate(chunkSize);
+                }
+                holders.clear();
+                submit(END);
+            }
+
+            writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запись трассы прервана", exception);
+        } finally {
+            writer.close();
+        }
+
+        if (writeError != null) throw writeError;
+    }
+
+    private void recordConnect(int first, int second) {
+        final ChunkHolder holder = acquireChunk(TraceFormat.recordSize(TraceFormat.CONNECT));
+        if (holder == null) return;
+        holder.chunk.put(TraceFormat.CONNECT).putInt(first).putInt(second);
+        holder.release();
+    }
+
+    private void recordAdd(int pool, long water) {
+        final ChunkHolder holder = acquireChunk(TraceFormat.recordSize(TraceFormat.ADD));
+        if (holder == null) return;
+        holder.chunk.put(TraceFormat.ADD).putInt(pool).putLong(water);
+        holder.release();
+    }
+
+    private void recordMeasure(int pool) {
+        final ChunkHolder holder = acquireChunk(TraceFormat.recordSize(TraceFormat.MEASURE));
+        if (holder == null) return;
+        holder.chunk.put(TraceFormat.MEASURE).putInt(pool);
+        holder.release();
+    }
+
+    private boolean isRecording() {
+        return !isClosed && writeError == null;
+    }
+
+    /**
+     * Захватить буфер текущего потока, в котором есть место под запись размера {@code recordSize},
+     * после записи буфер нужно отпустить через {@link ChunkHolder#release()}
+     *
+     * @return буфер потока или {@code null}, если запись трассы прекращена
+     */
+    private ChunkHolder acquireChunk(int recordSize) {
+        if (!isRecording()) return null;
+
+        final ChunkHolder holder = chunks.get();
+        holder.acquire();
+        if (holder.chunk.remaining() < recordSize) {
+            synchronized (lock) {
+                if (!isRecording()) {
+                    holder.chunk.clear();
+                    holder.release();
+                    return null;
+                }
+                submitCreateChunk();
+                submit(holder.chunk.flip());
+                holder.chunk = takeFreeChunk();
+            }
+        }
+        return holder;
+    }
+
+    /**
+     * Передать фоновому потоку накопленные записи о создании, вызывается под {@code lock}
+     * перед передачей любого другого буфера, чтобы создание бассейна всегда предшествовало его использованию
+     */
+    private void submitCreateChunk() {
+        if (createChunk.position() == 0) return;
+
+        submit(createChunk.flip());
+        createChunk = takeFreeChunk();
+    }
+
+    /**
+     * Поставить буфер в очередь на запись, вызывается под {@code lock}. Если очередь заполнена, поток ждет фоновый поток,
+     * который разбирает очередь без блокировки, поэтому ожидание конечно и не прерывается
+     */
+    private void submit(ByteBuffer chunk) {
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                filledChunks.put(chunk);
+                break;
+            } catch (InterruptedException exception) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) Thread.currentThread().interrupt();
+    }
+
+    private ByteBuffer takeFreeChunk() {
+        final ByteBuffer chunk = freeChunks.poll();
+        return chunk != null ? chunk : ByteBuffer.allocateDirect(chunkSize).order(TraceFormat.BYTE_ORDER);
+    }
+
+    private ChunkHolder registerChunkHolder() {
+        synchronized (lock) {
+            final ChunkHolder holder = new ChunkHolder(Thread.currentThread(), isClosed ? ByteBuffer.allocate(chunkSize) : takeFreeChunk());
+            if (!isClosed) holders.add(holder);
+            return holder;
+        }
+    }
+
+    /**
+     * Цикл потока сброса: раз в {@code flushInterval} передать на запись непустые буферы и забыть завершившиеся потоки
+     */
+    private void flushPeriodically() {
+        synchronized (lock) {
+            while (!isClosed) {
+                try {
+                    lock.wait(flushIntervalMillis);
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                if (isRecording()) flushChunks();
+            }
+        }
+    }
+
+    /**
+     * Передать на запись непустые буферы потоков, вызывается под {@code lock}. Буфер, в который владелец
+     * прямо сейчас пишет, пропускается до следующего раза
+     */
+    private void flushChunks() {
+        submitCreateChunk();
+
+        final Iterator<ChunkHolder> iterator = holders.iterator();
+        while (iterator.hasNext()) {
+            final ChunkHolder holder = iterator.next();
+            //завершение потока видно через isAlive, после него буфер потока больше никто не меняет
+            final boolean isDead = !holder.owner.isAlive();
+            if (!holder.tryAcquire()) continue;
+
+            final ByteBuffer chunk = holder.chunk;
+            if (isDead) {
+                iterator.remove();
+            } else if (chunk.position() != 0) {
+                holder.chunk = takeFreeChunk();
+            }
+            //владелец может продолжать писать в новый буфер, а свой следующий буфер передаст только под lock
+            holder.release();
+
+            if (chunk.position() != 0) {
+                submit(chunk.flip());
+            } else if (isDead) {
+                freeChunks.offer(chunk);
+            }
+        }
+    }
+
+    /**
+     * Цикл фонового потока, после ошибки записи буферы только возвращаются в пул
+     */
+    private void writeChunks() {
+        while (true) {
+            final ByteBuffer chunk;
+            try {
+                chunk = filledChunks.take();
+            } catch (InterruptedException exception) {
+                return;
+            }
+            if (chunk == END) return;
+
+            if (writeError == null) {
+                try {
+                    writer.write(chunk);
+                } catch (IOException exception) {
+                    writeError = exception;
+                }
+            }
+
+            //лишние буферы сверх пула отбрасываются
+            chunk.clear();
+            freeChunks.offer(chunk);
+        }
+    }
+
+    /**
+     * Текущий буфер потока. Владелец захватывает его на время одной записи, поток сброса забирает буфер только
+     * если смог захватить его сам, поэтому буфер никогда не меняется двумя потоками одновременно
+     */
+    private static final class ChunkHolder {
+
+        private static final int FREE = 0;
+
+        private static final int BUSY = 1;
+
+        private final Thread owner;
+
+        private final AtomicInteger state = new AtomicInteger(FREE);
+
+        private ByteBuffer chunk;
+
+        private ChunkHolder(Thread owner, ByteBuffer chunk) {
+            this.owner = owner;
+            this.chunk = chunk;
+        }
+
+        /**
+         * Захватить буфер, вызывается только владельцем, ждет пока поток сброса не отпустит буфер
+         */
+        private void acquire() {
+            while (!state.compareAndSet(FREE, BUSY)) {
+                Thread.yield();
+            }
+        }
+
+        private boolean tryAcquire() {
+            return state.compareAndSet(FREE, BUSY);
+        }
+
+        private void release() {
+            state.set(FREE);
+        }
+    }
+
+    /**
+     * Бассейн, записывающий свои операции в трассу
+     */
+    private static final class RecordingPool implements IPool {
+
+        private final RecordingPoolFactory recorder;
+
+        private final IPool pool;
+
+        private final int id;
+
+        private RecordingPool(RecordingPoolFactory recorder, IPool pool, int id) {
+            this.recorder = recorder;
+            this.pool = pool;
+            this.id = id;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long measure() {
+            recorder.recordMeasure(id);
+            return pool.measure();
+        }
+
+        /**
+         * @inheritDoc Соединение с бассейном, созданным не этой фабрикой, передается делегату без записи
+         */
+        @Override
+        public void connect(IPool pool) {
+            if (pool instanceof RecordingPool && ((RecordingPool) pool).recorder == recorder) {
+                final RecordingPool other = (RecordingPool) pool;
+                recorder.recordConnect(id, other.id);
+                this.pool.connect(other.pool);
+            } else {
+                this.pool.connect(pool);
+            }
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void add(long water) {
+            recorder.recordAdd(id, water);
+            pool.add(water);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Boolean isConnected(IPool pool) {
+            if (pool instanceof RecordingPool && ((RecordingPool) pool).recorder == recorder) {
+                return this.pool.isConnected(((RecordingPool) pool).pool);
+            }
+            return this.pool.isConnected(pool);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package trace;
+
+import java.nio.ByteOrder;
+
+/**
+ * Бинарный формат трассы операций над бассейнами
+ * <p>
+ * Файл начинается с заголовка из {@link #MAGIC} и {@link #VERSION}, за которым подряд идут записи.
+ * Запись это байт кода операции и ее аргументы, бассейны адресуются целочисленными идентификаторами:
+ * <ul>
+ *     <li>{@link #CREATE} id (int) - создать бассейн с идентификатором id</li>
+ *     <li>{@link #CONNECT} first (int), second (int) - соединить бассейны</li>
+ *     <li>{@link #ADD} id (int), water (long) - добавить воды в бассейн</li>
+ *     <li>{@link #MEASURE} id (int) - измерить воду в бассейне</li>
+ * </ul>
+ * Все числа записываются в порядке little-endian
+ */
+public final class TraceFormat {
+
+    /**
+     * "POOL" в ascii
+     */
+    public static final int MAGIC = 0x504F4F4C;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final byte CREATE = 1;
+
+    public static final byte CONNECT = 2;
+
+    public static final byte ADD = 3;
+
+    public static final byte MEASURE = 4;
+
+    /**
+     * Максимальный размер одной записи в байтах, у {@code ADD}
+     */
+    public static final int MAX_RECORD_SIZE = 1 + Integer.BYTES + Long.BYTES;
+
+    private TraceFormat() {
+    }
+
+    /**
+     * @return размер записи с кодом {@code operation} в байтах, -1 для неизвестного кода
+     */
+    public static int recordSize(byte operation) {
+        switch (operation) {
+            case CREATE:
+            case MEASURE:
+                return 1 + Integer.BYTES;
+            case CONNECT:
+                return 1 + Integer.BYTES + Integer.BYTES;
+            case ADD:
+                return 1 + Integer.BYTES + Long.BYTES;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package trace;
+
+/**
+ * Результат проигрывания трассы: колличество операций, время и контрольная сумма измерений
+ * <p>
+ * Контрольная сумма зависит от порядка измерений, поэтому две имплементации бассейнов дают одинаковую сумму
+ * только если все измерения совпали
+ */
+public final class TraceReplayReport {
+
+    private final long createCount;
+
+    private final long connectCount;
+
+    private final long addCount;
+
+    private final long measureCount;
+
+    private final long elapsedNanos;
+
+    private final long checksum;
+
+    public TraceReplayReport(long createCount, long connectCount, long addCount, long measureCount, long elapsedNanos, long checksum) {
+        this.createCount = createCount;
+        this.connectCount = connectCount;
+        this.addCount = addCount;
+        this.measureCount = measureCount;
+        this.elapsedNanos = elapsedNanos;
+        this.checksum = checksum;
+    }
+
+    public long getCreateCount() {
+        return createCount;
+    }
+
+    public long getConnectCount() {
+        return connectCount;
+    }
+
+    public long getAddCount() {
+        return addCount;
+    }
+
+    public long getMeasureCount() {
+        return measureCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return колличество всех записей трассы
+     */
+    public long getRecordCount() {
+        return createCount + connectCount + addCount + measureCount;
+    }
+
+    /**
+     * @return колличество операций в секунду
+     */
+    public double getOperationsPerSecond() {
+        return elapsedNanos == 0 ? 0 : getRecordCount() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "records: %d (create %d, connect %d, add %d, measure %d), time: %d ms, throughput: %.0f ops/s, checksum: %d",
+                getRecordCount(), createCount, connectCount, addCount, measureCount,
+                elapsedNanos / 1_000_000, getOperationsPerSecond(), checksum
+        );
+    }
+}
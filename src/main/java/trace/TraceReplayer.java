@@ -0,0 +1,121 @@
+package trace;
+
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Проигрывание трассы в формате {@link TraceFormat} на бассейнах произвольной {@code IPoolFactory}
+ * <p>
+ * Файл отображается в память окнами до {@link #MAX_WINDOW_SIZE} байт, записи читаются прямо из отображения,
+ * а бассейны хранятся в массиве по идентификатору, поэтому кроме самих бассейнов на запись ничего не выделяется
+ */
+public final class TraceReplayer {
+
+    /**
+     * Размер окна отображения файла, файлы больше окна отображаются по частям
+     */
+    private static final long MAX_WINDOW_SIZE = 1L << 30;
+
+    private final IPoolFactory factory;
+
+    public TraceReplayer(IPoolFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Проиграть трассу
+     *
+     * @param path файл трассы
+     * @return отчет о проигрывании
+     * @throws IOException если файл не читается или не соответствует формату
+     */
+    public TraceReplayReport replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < TraceFormat.HEADER_SIZE) throw new IOException("Файл трассы слишком короткий: " + path);
+
+            long windowStart = 0;
+            MappedByteBuffer window = map(channel, windowStart, fileSize);
+            if (window.getInt() != TraceFormat.MAGIC) throw new IOException("Файл не является трассой: " + path);
+
+            final int version = window.getInt();
+            if (version != TraceFormat.VERSION) throw new IOException("Неподдерживаемая версия трассы: " + version);
+
+            IPool[] pools = new IPool[1024];
+            long createCount = 0;
+            long connectCount = 0;
+            long addCount = 0;
+            long measureCount = 0;
+            long checksum = 0;
+
+            final long startTime = System.nanoTime();
+            try {
+                while (true) {
+                    //запись могла попасть на границу окна, тогда сдвигаем окно на ее начало
+                    if (window.remaining() < TraceFormat.MAX_RECORD_SIZE && windowStart + window.limit() < fileSize) {
+                        windowStart += window.position();
+                        window = map(channel, windowStart, fileSize);
+                    }
+                    if (!window.hasRemaining()) break;
+
+                    final byte operation = window.get();
+                    switch (operation) {
+                        case TraceFormat.CREATE: {
+                            final int id = window.getInt();
+                            if (id < 0) throw new IOException("Отрицательный идентификатор бассейна: " + id);
+                            if (id >= pools.length) pools = Arrays.copyOf(pools, Math.max(id + 1, pools.length * 2));
+                            if (pools[id] != null) throw new IOException("Бассейн создан повторно: " + id);
+
+                            pools[id] = factory.create();
+                            createCount++;
+                            break;
+                        }
+                        case TraceFormat.CONNECT: {
+                            final IPool first = pool(pools, window.getInt());
+                            final IPool second = pool(pools, window.getInt());
+                            first.connect(second);
+                            connectCount++;
+                            break;
+                        }
+                        case TraceFormat.ADD: {
+                            final IPool pool = pool(pools, window.getInt());
+                            pool.add(window.getLong());
+                            addCount++;
+                            break;
+                        }
+                        case TraceFormat.MEASURE: {
+                            checksum = 31 * checksum + pool(pools, window.getInt()).measure();
+                            measureCount++;
+                            break;
+                        }
+                        default:
+                            throw new IOException("Неизвестный код операции " + operation + " на позиции " + (windowStart + window.position() - 1));
+                    }
+                }
+            } catch (BufferUnderflowException exception) {
+                throw new IOException("Трасса обрывается посреди записи: " + path, exception);
+            }
+
+            return new TraceReplayReport(createCount, connectCount, addCount, measureCount, System.nanoTime() - startTime, checksum);
+        }
+    }
+
+    private static IPool pool(IPool[] pools, int id) throws IOException {
+        if (id < 0 || id >= pools.length || pools[id] == null) throw new IOException("Бассейн не создан: " + id);
+        return pools[id];
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long fileSize) throws IOException {
+        final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_SIZE, fileSize - position));
+        window.order(TraceFormat.BYTE_ORDER);
+        return window;
+    }
+}
@@ -0,0 +1,98 @@
+package trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись трассы в формате {@link TraceFormat}
+ * <p>
+ * Записи накапливаются в direct буфере и сбрасываются в файл целиком при его заполнении,
+ * так что одна операция это несколько записей в память без аллокаций. Писатель не потокобезопасен
+ */
+public final class TraceWriter implements AutoCloseable {
+
+    /**
+     * По умолчанию буфер 1 Мб
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Создает файл трассы, существующий файл перезаписывается
+     */
+    public TraceWriter(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    public TraceWriter(Path path, int bufferSize) throws IOException {
+        if (bufferSize < TraceFormat.HEADER_SIZE + TraceFormat.MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Слишком маленький буфер: " + bufferSize);
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(bufferSize).order(TraceFormat.BYTE_ORDER);
+        buffer.putInt(TraceFormat.MAGIC).putInt(TraceFormat.VERSION);
+    }
+
+    public void create(int pool) throws IOException {
+        ensureCapacity(TraceFormat.recordSize(TraceFormat.CREATE));
+        buffer.put(TraceFormat.CREATE).putInt(pool);
+    }
+
+    public void connect(int first, int second) throws IOException {
+        ensureCapacity(TraceFormat.recordSize(TraceFormat.CONNECT));
+        buffer.put(TraceFormat.CONNECT).putInt(first).putInt(second);
+    }
+
+    public void add(int pool, long water) throws IOException {
+        ensureCapacity(TraceFormat.recordSize(TraceFormat.ADD));
+        buffer.put(TraceFormat.ADD).putInt(pool).putLong(water);
+    }
+
+    public void measure(int pool) throws IOException {
+        ensureCapacity(TraceFormat.recordSize(TraceFormat.MEASURE));
+        buffer.put(TraceFormat.MEASURE).putInt(pool);
+    }
+
+    /**
+     * Дописать в трассу готовый блок записей, например накопленный другим потоком
+     *
+     * @param records буфер с целыми записями от {@code position} до {@code limit}
+     */
+    public void write(ByteBuffer records) throws IOException {
+        flush();
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+    }
+
+    /**
+     * Сбросить накопленные записи в файл
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureCapacity(int recordSize) throws IOException {
+        if (buffer.remaining() < recordSize) flush();
+    }
+}
@@ -0,0 +1,219 @@
+package utils;
+
+import interfaces.IPool;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Потокобезопасный оркестратор сетей бассейнов, аналог {@link PoolsOrchestrator}
+ * <p>
+ * Вместо одной глобальной блокировки у каждого бакета своя {@code StampedLock}:
+ * {@code addWaterToPool} блокирует только бакет своей сети, {@code mergePools} блокирует два бакета
+ * всегда в порядке их порядковых номеров, поэтому взаимоблокировки невозможны,
+ * {@code measurePool} читает бакет оптимистично и берет блокировку на чтение, только если чтение пересеклось с записью
+ * <p>
+ * После слияния меньший бакет помечается как выбывший, поток, заблокировавший выбывший бакет,
+ * перечитывает бакет бассейна и повторяет операцию
+ * <p>
+ * В отличие от {@code PoolsOrchestrator} вся вода хранится в оркестраторе, в том числе для несоедененных бассейнов,
+ * бакет создается при первом обращении к бассейну
+ * <p>
+ * Мапа держит бассейны сильными ссылками, поэтому оркестратор принадлежит одной фабрике
+ * {@code ConcurrentGlobalStatePoolFactoryImpl}, и {@link #close()} отпускает все бассейны разом
+ */
+public final class ConcurrentPoolsOrchestrator implements AutoCloseable {
+
+    /**
+     * Мапа бассейнов к бакетам с водой
+     */
+    private final ConcurrentHashMap<IPool, LockedBucket> poolMap = new ConcurrentHashMap<>();
+
+    /**
+     * Счетчик порядковых номеров бакетов, задает порядок взятия блокировок
+     */
+    private final AtomicLong bucketCounter = new AtomicLong();
+
+    /**
+     * Флаг закрытия оркестратора
+     */
+    private volatile boolean isClosed = false;
+
+    /**
+     * Соеденить две сети бассейнов
+     */
+    public void mergePools(IPool poolFirst, IPool poolSecond) {
+        ensureOpen();
+
+        if (poolFirst == poolSecond) {
+            bucketOf(poolFirst);
+            return;
+        }
+
+        while (true) {
+            final LockedBucket firstBucket = bucketOf(poolFirst);
+            final LockedBucket secondBucket = bucketOf(poolSecond);
+
+            if (firstBucket == secondBucket) return;
+
+            final LockedBucket lowerBucket = firstBucket.order < secondBucket.order ? firstBucket : secondBucket;
+            final LockedBucket upperBucket = lowerBucket == firstBucket ? secondBucket : firstBucket;
+
+            final long lowerStamp = lowerBucket.lock.writeLock();
+            final long upperStamp = upperBucket.lock.writeLock();
+            try {
+                if (lowerBucket.isRetired || upperBucket.isRetired) continue;
+
+                if (firstBucket.members.size() < secondBucket.members.size()) {
+                    optimizedMergePool(firstBucket, secondBucket);
+                } else {
+                    optimizedMergePool(secondBucket, firstBucket);
+                }
+                return;
+            } finally {
+                upperBucket.lock.unlockWrite(upperStamp);
+                lowerBucket.lock.unlockWrite(lowerStamp);
+            }
+        }
+    }
+
+    /**
+     * Присоеденить меньший бакет к большему, вызывается под блокировкой обоих бакетов
+     */
+    private void optimizedMergePool(LockedBucket smallerBucket, LockedBucket biggerBucket) {
+        biggerBucket.bucket.mergeBuckets(smallerBucket.bucket);
+
+        for (IPool pool : smallerBucket.members) {
+            poolMap.put(pool, biggerBucket);
+        }
+
+        biggerBucket.members.addAll(smallerBucket.members);
+        smallerBucket.members.clear();
+        smallerBucket.isRetired = true;
+    }
+
+    /**
+     * Получить колличество воды в бассейне
+     */
+    public long measurePool(IPool pool) {
+        ensureOpen();
+
+        while (true) {
+            final LockedBucket lockedBucket = poolMap.get(pool);
+            if (lockedBucket == null) return 0;
+
+            final long optimisticStamp = lockedBucket.lock.tryOptimisticRead();
+            if (optimisticStamp != 0) {
+                final boolean isRetired = lockedBucket.isRetired;
+                final long water = lockedBucket.bucket.measureAmountOfWater();
+
+                if (lockedBucket.lock.validate(optimisticStamp)) {
+                    if (isRetired) continue;
+                    return water;
+                }
+            }
+
+            final long stamp = lockedBucket.lock.readLock();
+            try {
+                if (lockedBucket.isRetired) continue;
+                return lockedBucket.bucket.measureAmountOfWater();
+            } finally {
+                lockedBucket.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    public Boolean arePoolConnected(IPool poolFirst, IPool poolSecond) {
+        ensureOpen();
+
+        while (true) {
+            final LockedBucket firstBucket = poolMap.get(poolFirst);
+            final LockedBucket secondBucket = poolMap.get(poolSecond);
+
+            if (firstBucket == null || secondBucket == null) return false;
+            if (firstBucket == secondBucket) return true;
+            //пока ни один из бакетов не выбыл, бассейны принадлежат разным сетям
+            if (!firstBucket.isRetired && !secondBucket.isRetired) return false;
+        }
+    }
+
+    /**
+     * Добавить воды в бассейн
+     */
+    public void addWaterToPool(IPool pool, long water) {
+        ensureOpen();
+
+        while (true) {
+            final LockedBucket lockedBucket = bucketOf(pool);
+
+            final long stamp = lockedBucket.lock.writeLock();
+            try {
+                if (lockedBucket.isRetired) continue;
+                lockedBucket.bucket.addWater(water);
+                return;
+            } finally {
+                lockedBucket.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Отпустить все бассейны оркестратора, после закрытия их использовать нельзя, повторный вызов ничего не делает
+     * <p>
+     * Закрывать оркестратор можно только когда его бассейны больше не используются другими потоками
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        poolMap.clear();
+    }
+
+    /**
+     * @throws IllegalStateException если оркестратор закрыт
+     */
+    public void ensureOpen() {
+        if (isClosed) throw new IllegalStateException("Оркестратор закрыт");
+    }
+
+    /**
+     * Получить бакет бассейна, при первом обращении создается бакет из одного пустого бассейна
+     */
+    private LockedBucket bucketOf(IPool pool) {
+        final LockedBucket lockedBucket = poolMap.get(pool);
+        if (lockedBucket != null) return lockedBucket;
+
+        return poolMap.computeIfAbsent(pool, (IPool newPool) -> new LockedBucket(bucketCounter.getAndIncrement(), newPool));
+    }
+
+    /**
+     * {@code PoolBucket} вместе с блокировкой и списком бассейнов сети
+     */
+    private static final class LockedBucket {
+
+        private final long order;
+
+        private final StampedLock lock = new StampedLock();
+
+        private final PoolBucket bucket = new PoolBucket(0);
+
+        /**
+         * Бассейны сети, изменяется только под блокировкой на запись
+         */
+        private final ArrayList<IPool> members = new ArrayList<>(1);
+
+        /**
+         * Флаг выбывания бакета после слияния, изменяется только под блокировкой на запись
+         */
+        private volatile boolean isRetired = false;
+
+        private LockedBucket(long order, IPool pool) {
+            this.order = order;
+            members.add(pool);
+        }
+    }
+}
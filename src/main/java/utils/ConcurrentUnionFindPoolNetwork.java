@@ -0,0 +1,376 @@
+package utils;
+
+import interfaces.IPoolNetwork;
+import metrics.PoolMetrics;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Потокобезопасная сеть бассейнов на основе union-find без блокировок
+ * <p>
+ * Ссылки на родителя хранятся в {@code AtomicIntegerArray} и меняются только через CAS:
+ * поиск корня выполняется с делением пути пополам (path halving) и не ждет других потоков,
+ * соединение двух компонент выполняется без блокировок
+ * <p>
+ * Состояние компоненты (размер и уровень воды) хранится в корне как неизменяемый {@link Component},
+ * поэтому {@code add} это один CAS на корне. Соединение двух корней выполняется в два шага через
+ * дескриптор {@link Merge}: сначала дескриптор устанавливается в корень с меньшим индексом, затем
+ * захватывается корень с большим индексом, после чего он подвешивается и в корень записывается объедененное состояние.
+ * Любой поток, встретивший дескриптор, помогает довести слияние до конца или откатывает его,
+ * так что остановка одного потока не блокирует остальные. Судьбу слияния решает один CAS над его статусом,
+ * поэтому помощник с устаревшим чтением не может подвесить корень после отката
+ * <p>
+ * Память выделяется сегментами, поэтому {@code create} также потокобезопасен и не требует блокировок.
+ * {@code create} сначала резервирует индексы, а потом заполняет их, поэтому бассейн, уже учтенный в {@link #getPoolCount()},
+ * но еще не заполненный, заполняет тот поток, который первым к нему обратился
+ */
+public final class ConcurrentUnionFindPoolNetwork implements IPoolNetwork {
+
+    private static final int SEGMENT_SHIFT = 16;
+
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * Колличество сегментов, достаточное для адресации всех неотрицательных int
+     */
+    private static final int MAX_SEGMENTS = 1 << (Integer.SIZE - 1 - SEGMENT_SHIFT);
+
+    private final AtomicReferenceArray<Segment> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+
+    /**
+     * Колличество созданных бассейнов
+     */
+    private final AtomicInteger poolCount = new AtomicInteger();
+
+    /**
+     * Создать новый бассейн
+     *
+     * @return индекс созданного бассейна
+     */
+    @Override
+    public int create() {
+        return create(1);
+    }
+
+    /**
+     * Создать {@code count} новых бассейнов с последовательными индексами,
+     * индексы резервируются атомарно, поэтому пакеты разных потоков не пересекаются
+     *
+     * @return индекс первого созданного бассейна
+     */
+    @Override
+    public int create(int count) {
+        if (count < 0) throw new IllegalArgumentException("Отрицательное колличество бассейнов: " + count);
+
+        int first;
+        do {
+            first = poolCount.get();
+            if (first + count < 0) {
+                //счетчик не трогаем, уже созданные бассейны остаются доступны
+                throw new IllegalStateException("Достигнуто максимальное колличество бассейнов в сети: " + Integer.MAX_VALUE);
+            }
+        } while (!poolCount.compareAndSet(first, first + count));
+
+        for (int pool = first; pool < first + count; pool++) {
+            parent(pool);
+        }
+        return first;
+    }
+
+    /**
+     * @return колличество созданных бассейнов
+     */
+    @Override
+    public int getPoolCount() {
+        return poolCount.get();
+    }
+
+    /**
+     * Получить колличество воды в бассейне
+     */
+    @Override
+    public long measure(int pool) {
+        Objects.checkIndex(pool, poolCount.get());
+
+        while (true) {
+            final int root = find(pool);
+            final Object state = state(root);
+
+            if (state instanceof Merge) {
+                help((Merge) state);
+            } else {
+                return levelOf(state);
+            }
+        }
+    }
+
+    /**
+     * Добавить воды в бассейн, вода равномерно распределяется по всей компоненте
+     */
+    @Override
+    public void add(int pool, long amount) {
+        Objects.checkIndex(pool, poolCount.get());
+        if (amount == 0) return;
+
+        while (true) {
+            final int root = find(pool);
+            final Object state = state(root);
+
+            if (state instanceof Merge) {
+                help((Merge) state);
+                continue;
+            }
+
+            final int size = sizeOf(state);
+            final long diff = amount / size;
+            if (diff == 0) return;
+
+            final long level = WaterArithmetic.DEFAULT.add(levelOf(state), diff);
+
+            if (casState(root, state, new Component(size, level))) return;
+        }
+    }
+
+    /**
+     * Соеденить две сети бассейнов, корень с большим индексом подвешивается к корню с меньшим
+     */
+    @Override
+    public void connect(int first, int second) {
+        checkPools(first, second);
+
+        while (true) {
+            final int firstRoot = find(first);
+            final int secondRoot = find(second);
+
+            if (firstRoot == secondRoot) return;
+
+            final int parent = Math.min(firstRoot, secondRoot);
+            final int child = Math.max(firstRoot, secondRoot);
+
+            final Object parentState = state(parent);
+            if (parentState instanceof Merge) {
+                help((Merge) parentState);
+                continue;
+            }
+
+            final Object childState = state(child);
+            if (childState instanceof Merge) {
+                help((Merge) childState);
+                continue;
+            }
+
+            final int parentSize = sizeOf(parentState);
+            final int childSize = sizeOf(childState);
+            final Component merged = new Component(
+                    parentSize + childSize,
+                    WaterArithmetic.DEFAULT.weightedAverage(levelOf(parentState), parentSize, levelOf(childState), childSize)
+            );
+
+            final Merge merge = new Merge(parent, child, parentState, childState, merged);
+            if (casState(parent, parentState, merge) && help(merge)) {
+                if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(merged.size);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    @Override
+    public boolean isConnected(int first, int second) {
+        checkPools(first, second);
+
+        while (true) {
+            final int firstRoot = find(first);
+            final int secondRoot = find(second);
+
+            if (firstRoot == secondRoot) return true;
+            //если первый корень за это время не подвесили, то бассейны действительно не соеденены
+            if (parent(firstRoot) == firstRoot) return false;
+        }
+    }
+
+    /**
+     * Соеденить пары бассейнов {@code first[i]} и {@code second[i]} используя все ядра {@code ForkJoinPool},
+     * каналы соединяются обычным {@link #connect(int, int)}, который и так потокобезопасен
+     */
+    @Override
+    public void connectAllParallel(int[] first, int[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Длины массивов не совпадают: " + first.length + " и " + second.length);
+        }
+
+        IntStream.range(0, first.length).parallel().forEach(i -> connect(first[i], second[i]));
+    }
+
+    /**
+     * Довести слияние до конца либо откатить его, если корень-потомок успел измениться
+     * <p>
+     * Слияние принимается, только если дескриптор захватил корень-потомок, и отменяется в остальных случаях.
+     * Захват запоздавшим помощником после отмены откатывается вместе с корнем-родителем,
+     * а подвешивание и запись объедененного состояния выполняются только после принятия
+     *
+     * @return true если слияние выполнено
+     */
+    private boolean help(Merge merge) {
+        if (merge.status.get() == Merge.UNDECIDED) {
+            Object childState = state(merge.child);
+            if (childState == merge.childState) {
+                casState(merge.child, childState, merge);
+                childState = state(merge.child);
+            }
+
+            merge.status.compareAndSet(Merge.UNDECIDED, childState == merge ? Merge.COMMITTED : Merge.ABORTED);
+        }
+
+        if (merge.status.get() == Merge.ABORTED) {
+            casState(merge.parent, merge, merge.parentState);
+            casState(merge.child, merge, merge.childState);
+            return false;
+        }
+
+        casParent(merge.child, merge.child, merge.parent);
+        casState(merge.parent, merge, merge.merged);
+        return true;
+    }
+
+    /**
+     * Поиск корня компоненты с делением пути пополам
+     */
+    private int find(int pool) {
+        while (true) {
+            final int parent = parent(pool);
+            if (parent == pool) return pool;
+
+            final int grandParent = parent(parent);
+            if (parent != grandParent) casParent(pool, parent, grandParent);
+            pool = grandParent;
+        }
+    }
+
+    private void checkPools(int first, int second) {
+        final int count = poolCount.get();
+        Objects.checkIndex(first, count);
+        Objects.checkIndex(second, count);
+    }
+
+    /**
+     * Сегмент бассейна, создается первым обратившимся потоком
+     */
+    private Segment segment(int pool) {
+        final int segmentIndex = pool >>> SEGMENT_SHIFT;
+        final Segment segment = segments.get(segmentIndex);
+        if (segment != null) return segment;
+
+        final Segment newSegment = new Segment();
+        return segments.compareAndSet(segmentIndex, null, newSegment) ? newSegment : segments.get(segmentIndex);
+    }
+
+    private int parent(int pool) {
+        final AtomicIntegerArray parent = segment(pool).parent;
+        final int index = pool & SEGMENT_MASK;
+        final int link = parent.get(index);
+        if (link != 0) return link - 1;
+
+        //бассейн зарезервирован, но create еще не заполнил его
+        parent.compareAndSet(index, 0, pool + 1);
+        return parent.get(index) - 1;
+    }
+
+    private void casParent(int pool, int expected, int parent) {
+        segment(pool).parent.compareAndSet(pool & SEGMENT_MASK, expected + 1, parent + 1);
+    }
+
+    private Object state(int pool) {
+        return segment(pool).state.get(pool & SEGMENT_MASK);
+    }
+
+    private boolean casState(int pool, Object expected, Object state) {
+        return segment(pool).state.compareAndSet(pool & SEGMENT_MASK, expected, state);
+    }
+
+    /**
+     * Состояние {@code null} соответствует одиночному пустому бассейну
+     */
+    private static int sizeOf(Object state) {
+        return state == null ? 1 : ((Component) state).size;
+    }
+
+    private static long levelOf(Object state) {
+        return state == null ? 0 : ((Component) state).level;
+    }
+
+    /**
+     * Сегмент сети из {@code SEGMENT_SIZE} бассейнов
+     */
+    private static final class Segment {
+
+        /**
+         * Индекс родителя плюс один, {@code 0} если бассейн еще не заполнен
+         */
+        private final AtomicIntegerArray parent = new AtomicIntegerArray(SEGMENT_SIZE);
+
+        /**
+         * {@code null}, {@link Component} или {@link Merge}, актуально только для корня
+         */
+        private final AtomicReferenceArray<Object> state = new AtomicReferenceArray<>(SEGMENT_SIZE);
+    }
+
+    /**
+     * Неизменяемое состояние компоненты
+     */
+    private static final class Component {
+
+        private final int size;
+
+        private final long level;
+
+        private Component(int size, long level) {
+            this.size = size;
+            this.level = level;
+        }
+    }
+
+    /**
+     * Дескриптор незавершенного слияния двух корней,
+     * лежит сначала в {@code parent}, а после захвата и в {@code child}, где после принятия остается навсегда
+     */
+    private static final class Merge {
+
+        private static final int UNDECIDED = 0;
+
+        private static final int COMMITTED = 1;
+
+        private static final int ABORTED = 2;
+
+        private final int parent;
+
+        private final int child;
+
+        private final Object parentState;
+
+        private final Object childState;
+
+        private final Component merged;
+
+        /**
+         * {@code UNDECIDED}, пока не решено, принято слияние или отменено, затем не меняется
+         */
+        private final AtomicInteger status = new AtomicInteger(UNDECIDED);
+
+        private Merge(int parent, int child, Object parentState, Object childState, Component merged) {
+            this.parent = parent;
+            this.child = child;
+            this.parentState = parentState;
+            this.childState = childState;
+            this.merged = merged;
+        }
+    }
+}
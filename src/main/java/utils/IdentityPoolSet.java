@@ -0,0 +1,163 @@
+package utils;
+
+import java.util.ConcurrentModificationException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Компактное множество бассейнов со сравнением по ссылке
+ * <p>
+ * Элементы хранятся прямо в массиве с открытой адресацией и линейным пробированием, хеш берется из
+ * {@code System.identityHashCode}, поэтому в отличие от {@code HashSet} на элемент не выделяется узел
+ * и не вызываются {@code hashCode}/{@code equals} бассейнов. Удаления отдельных элементов нет,
+ * имплементации бассейнов только добавляют бассейны в звезду и отбрасывают звезду целиком
+ * <p>
+ * Имплементации создают множество только при первом соединении, поэтому одиночный бассейн его не держит,
+ * операции над таким ленивым множеством, допускающие {@code null}, собраны в статических методах
+ * {@link #sizeOf(IdentityPoolSet)}, {@link #containsIn(IdentityPoolSet, Object)} и {@link #addTo(IdentityPoolSet, Object)}
+ *
+ * @param <E> тип элементов
+ */
+public final class IdentityPoolSet<E> {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Object[] table = new Object[INITIAL_CAPACITY];
+
+    private int size = 0;
+
+    /**
+     * Счетчик изменений множества, по нему обход обнаруживает изменение множества
+     */
+    private int modificationCount = 0;
+
+    /**
+     * @return колличество элементов множества, для {@code null} 0
+     */
+    public static int sizeOf(IdentityPoolSet<?> set) {
+        return set == null ? 0 : set.size;
+    }
+
+    /**
+     * Проверить есть ли элемент в множестве, {@code null} считается пустым множеством
+     */
+    public static boolean containsIn(IdentityPoolSet<?> set, Object element) {
+        return set != null && set.contains(element);
+    }
+
+    /**
+     * Добавить элемент в множество, множество создается при первом добавлении
+     *
+     * @param set     множество или {@code null}
+     * @param element элемент, не {@code null}
+     * @return множество с добавленным элементом, которое нужно сохранить вместо {@code set}
+     */
+    public static <E> IdentityPoolSet<E> addTo(IdentityPoolSet<E> set, E element) {
+        final IdentityPoolSet<E> result = set == null ? new IdentityPoolSet<>() : set;
+        result.add(element);
+        return result;
+    }
+
+    /**
+     * Добавить элемент
+     *
+     * @param element элемент, не {@code null}
+     * @return true если элемента еще не было в множестве
+     */
+    public boolean add(E element) {
+        if (element == null) throw new NullPointerException("Элемент множества не может быть null");
+
+        final int mask = table.length - 1;
+        int index = indexOf(element, mask);
+        while (table[index] != null) {
+            if (table[index] == element) return false;
+            index = (index + 1) & mask;
+        }
+
+        table[index] = element;
+        modificationCount++;
+        if (++size > table.length >> 1) grow();
+        return true;
+    }
+
+    /**
+     * Проверить есть ли элемент в множестве
+     */
+    public boolean contains(Object element) {
+        if (element == null) return false;
+
+        final int mask = table.length - 1;
+        int index = indexOf(element, mask);
+        while (table[index] != null) {
+            if (table[index] == element) return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Выполнить действие для всех элементов, множество нельзя менять во время обхода
+     *
+     * @throws ConcurrentModificationException если {@code action} изменил множество
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        final int expectedModificationCount = modificationCount;
+        final Object[] table = this.table;
+        for (Object element : table) {
+            if (element == null) continue;
+
+            action.accept((E) element);
+            if (modificationCount != expectedModificationCount) throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * @return true если хотя бы один элемент удовлетворяет {@code predicate}
+     */
+    @SuppressWarnings("unchecked")
+    public boolean anyMatch(Predicate<? super E> predicate) {
+        final int expectedModificationCount = modificationCount;
+        final Object[] table = this.table;
+        for (Object element : table) {
+            if (element == null) continue;
+
+            final boolean isMatched = predicate.test((E) element);
+            if (modificationCount != expectedModificationCount) throw new ConcurrentModificationException();
+            if (isMatched) return true;
+        }
+        return false;
+    }
+
+    private void grow() {
+        if (table.length == MAX_CAPACITY) throw new IllegalStateException("Достигнут максимальный размер множества: " + size);
+
+        final Object[] oldTable = table;
+        table = new Object[oldTable.length << 1];
+        final int mask = table.length - 1;
+
+        for (Object element : oldTable) {
+            if (element == null) continue;
+
+            int index = indexOf(element, mask);
+            while (table[index] != null) {
+                index = (index + 1) & mask;
+            }
+            table[index] = element;
+        }
+    }
+
+    /**
+     * Перемешивание identity хеша, чтобы соседние по адресу объекты не образовывали длинных цепочек
+     */
+    private static int indexOf(Object element, int mask) {
+        final int hash = System.identityHashCode(element) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
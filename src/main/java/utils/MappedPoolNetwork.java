@@ -0,0 +1,506 @@
+package utils;
+
+import interfaces.IPoolNetwork;
+import metrics.PoolMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Сеть бассейнов на основе union-find, столбцы которой лежат в отображенных в память файлах
+ * <p>
+ * Алгоритм тот же, что и в {@link OffHeapPoolNetwork}, но сегменты это файлы каталога сети, отображенные
+ * в режиме READ_WRITE. Памятью сегментов управляет кеш страниц операционной системы: сеть может быть больше
+ * физической памяти, в памяти остаются только страницы, к которым недавно обращались, а остальные вытесняются на диск
+ * <p>
+ * Бассейн адресуется постоянным индексом, а его {@code parent}, {@code size} и {@code water} лежат в физическом слоте,
+ * номер которого хранится в столбце {@code slot}. {@link #relayout()} переставляет слоты так, чтобы каждая компонента
+ * лежала подряд, начиная с корня, поэтому поиск корня и чтение воды компоненты затрагивают одну-две соседние страницы,
+ * и рабочий набор занимает меньше страниц. Перестановку имеет смысл делать после массовых соединений
+ * <p>
+ * Файлы согласованы только после {@link #flush()} или {@link #close()}, тогда каталог можно снова открыть через
+ * {@link #open(Path)}. Сеть не потокобезопасна
+ */
+public final class MappedPoolNetwork implements Closeable, IPoolNetwork {
+
+    /**
+     * "MAPD" в ascii
+     */
+    public static final int MAGIC = 0x4D415044;
+
+    public static final int VERSION = 1;
+
+    /**
+     * По умолчанию сегмент содержит 2^20 бассейнов, что составляет 20 Мб
+     */
+    public static final int DEFAULT_SEGMENT_SHIFT = 20;
+
+    private static final int MAX_SEGMENT_SHIFT = 26;
+
+    /**
+     * Байт на один бассейн: slot (int), parent (int), size (int), water (long)
+     */
+    private static final int BYTES_PER_POOL = Integer.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final String META_FILE = "network";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final Path directory;
+
+    private final int segmentShift;
+
+    private final int segmentMask;
+
+    private final int parentOffset;
+
+    private final int sizeOffset;
+
+    private final int waterOffset;
+
+    private final ByteOrder order;
+
+    /**
+     * Поколение файлов сегментов, меняется при каждой перестановке
+     */
+    private long generation;
+
+    /**
+     * Сегменты сети, {@code null} после закрытия
+     */
+    private MappedByteBuffer[] segments = new MappedByteBuffer[8];
+
+    /**
+     * Колличество созданных бассейнов, физических слотов столько же
+     */
+    private int poolCount = 0;
+
+    private MappedPoolNetwork(Path directory, int segmentShift, ByteOrder order, long generation) {
+        if (segmentShift < 0 || segmentShift > MAX_SEGMENT_SHIFT) {
+            throw new IllegalArgumentException("segmentShift должен быть в пределах [0, " + MAX_SEGMENT_SHIFT + "]: " + segmentShift);
+        }
+
+        this.directory = directory;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+        this.parentOffset = Integer.BYTES << segmentShift;
+        this.sizeOffset = (Integer.BYTES + Integer.BYTES) << segmentShift;
+        this.waterOffset = (Integer.BYTES + Integer.BYTES + Integer.BYTES) << segmentShift;
+        this.order = order;
+        this.generation = generation;
+    }
+
+    public static MappedPoolNetwork open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * Открыть сеть в каталоге, если каталог пуст, то создается новая сеть
+     *
+     * @param directory    каталог сети
+     * @param segmentShift логарифм колличества бассейнов в одном сегменте, используется только для новой сети
+     * @throws IOException если каталог содержит поврежденную сеть или недоступен
+     */
+    public static MappedPoolNetwork open(Path directory, int segmentShift) throws IOException {
+        Files.createDirectories(directory);
+
+        final Path meta = directory.resolve(META_FILE);
+        if (!Files.exists(meta)) {
+            final MappedPoolNetwork network = new MappedPoolNetwork(directory, segmentShift, ByteOrder.nativeOrder(), 0);
+            network.writeMeta();
+            return network;
+        }
+
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(meta));
+        if (header.remaining() < Integer.BYTES * 4 + 1 + Long.BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Каталог не содержит сеть бассейнов: " + directory);
+        }
+        final int version = header.getInt();
+        if (version != VERSION) throw new IOException("Неподдерживаемая версия сети: " + version);
+
+        final ByteOrder order = NetworkSnapshot.readOrder(header.get());
+        final int storedSegmentShift = header.getInt();
+        final int poolCount = header.getInt();
+        final long generation = header.getLong();
+        if (storedSegmentShift < 0 || storedSegmentShift > MAX_SEGMENT_SHIFT || poolCount < 0) {
+            throw new IOException("Поврежденный заголовок сети: " + directory);
+        }
+
+        final MappedPoolNetwork network = new MappedPoolNetwork(directory, storedSegmentShift, order, generation);
+        try {
+            final int segmentCount = network.segmentCount(poolCount);
+            network.segments = new MappedByteBuffer[Math.max(segmentCount, network.segments.length)];
+            for (int i = 0; i < segmentCount; i++) {
+                final Path segment = network.segmentPath(generation, i);
+                if (!Files.exists(segment)) throw new IOException("Нет файла сегмента: " + segment);
+                network.segments[i] = network.mapSegment(segment);
+            }
+            network.poolCount = poolCount;
+            return network;
+        } catch (IOException | RuntimeException exception) {
+            //заголовок поврежденной сети не перезаписывается
+            releaseSegments(network.segments);
+            throw exception;
+        }
+    }
+
+    /**
+     * Создать новый бассейн
+     *
+     * @return индекс созданного бассейна
+     */
+    @Override
+    public int create() {
+        return create(1);
+    }
+
+    /**
+     * Создать {@code count} новых бассейнов с последовательными индексами
+     *
+     * @return индекс первого созданного бассейна
+     */
+    @Override
+    public int create(int count) {
+        ensureOpen();
+        if (count < 0) throw new IllegalArgumentException("Отрицательное колличество бассейнов: " + count);
+        if (count > Integer.MAX_VALUE - poolCount) {
+            throw new IllegalStateException("Достигнуто максимальное колличество бассейнов в сети: " + Integer.MAX_VALUE);
+        }
+
+        final int first = poolCount;
+        for (int pool = first; pool < first + count; pool++) {
+            final int segmentIndex = pool >>> segmentShift;
+            if (segmentIndex == segments.length) {
+                segments = Arrays.copyOf(segments, segments.length * 2);
+            }
+            if (segments[segmentIndex] == null) {
+                try {
+                    segments[segmentIndex] = mapSegment(segmentPath(generation, segmentIndex));
+                } catch (IOException exception) {
+                    poolCount = pool;
+                    throw new UncheckedIOException("Не удалось создать файл сегмента сети", exception);
+                }
+            }
+
+            //новый бассейн занимает следующий свободный физический слот, номер которого совпадает с его индексом
+            setSlot(pool, pool);
+            setParent(pool, pool);
+            setSize(pool, 1);
+            setWater(pool, 0);
+        }
+        poolCount += count;
+        return first;
+    }
+
+    /**
+     * @return колличество созданных бассейнов
+     */
+    @Override
+    public int getPoolCount() {
+        return poolCount;
+    }
+
+    /**
+     * @return объем файлов сегментов сети в байтах
+     */
+    public long getMappedBytes() {
+        if (segments == null) return 0;
+
+        return (long) segmentCount(poolCount) * ((long) BYTES_PER_POOL << segmentShift);
+    }
+
+    /**
+     * Получить колличество воды в бассейне
+     */
+    @Override
+    public long measure(int pool) {
+        return water(find(slot(pool)));
+    }
+
+    /**
+     * Добавить воды в бассейн, вода равномерно распределяется по всей компоненте
+     */
+    @Override
+    public void add(int pool, long amount) {
+        if (amount == 0) return;
+
+        final int root = find(slot(pool));
+        setWater(root, WaterArithmetic.DEFAULT.addToLevel(water(root), amount, size(root)));
+    }
+
+    /**
+     * Соеденить две сети бассейнов, меньшая компонента подвешивается к большей
+     */
+    @Override
+    public void connect(int first, int second) {
+        int firstRoot = find(slot(first));
+        int secondRoot = find(slot(second));
+
+        if (firstRoot == secondRoot) return;
+
+        if (size(firstRoot) < size(secondRoot)) {
+            final int tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+
+        final int firstSize = size(firstRoot);
+        final int secondSize = size(secondRoot);
+
+        setWater(firstRoot, WaterArithmetic.DEFAULT.weightedAverage(water(firstRoot), firstSize, water(secondRoot), secondSize));
+        setSize(firstRoot, firstSize + secondSize);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(firstSize + secondSize);
+        setParent(secondRoot, firstRoot);
+        setWater(secondRoot, 0);
+    }
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    @Override
+    public boolean isConnected(int first, int second) {
+        return find(slot(first)) == find(slot(second));
+    }
+
+    /**
+     * Переставить физические слоты так, чтобы каждая компонента лежала подряд, корень первым
+     * <p>
+     * Компоненты идут в порядке своих корней, бассейны внутри компоненты сохраняют взаимный порядок. Перестановка
+     * делается несколькими последовательными проходами по сегментам и пишет новое поколение файлов, поэтому
+     * на время перестановки нужно вдвое больше места на диске. Индексы бассейнов не меняются
+     *
+     * @throws IOException если не удалось записать файлы нового поколения
+     */
+    public void relayout() throws IOException {
+        ensureOpen();
+
+        final long nextGeneration = generation + 1;
+        final int segmentCount = segmentCount(poolCount);
+        final MappedByteBuffer[] target = new MappedByteBuffer[segments.length];
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+                target[i] = mapSegment(segmentPath(nextGeneration, i));
+            }
+        } catch (IOException exception) {
+            releaseSegments(target);
+            deleteGeneration(nextGeneration);
+            throw exception;
+        }
+
+        //старые столбцы используются как временная память, их файлы удаляются после перестановки
+
+        //каждый слот ссылается прямо на корень
+        for (int slot = 0; slot < poolCount; slot++) {
+            setParent(slot, find(slot));
+        }
+
+        //корень занимает первую позицию своей компоненты, в старом water корня остается эта позиция, а в size курсор
+        int position = 0;
+        for (int slot = 0; slot < poolCount; slot++) {
+            if (parent(slot) != slot) continue;
+
+            final int size = size(slot);
+            putInt(target, parentOffset, position, position);
+            putInt(target, sizeOffset, position, size);
+            putLong(target, position, water(slot));
+            setSize(slot, position + 1);
+            setWater(slot, position);
+            position += size;
+        }
+
+        //остальные бассейны дописываются за корнем, новая позиция сохраняется в старом parent как -(позиция + 1)
+        for (int slot = 0; slot < poolCount; slot++) {
+            final int root = parent(slot);
+            if (root == slot) continue;
+
+            final int newSlot = size(root);
+            setSize(root, newSlot + 1);
+            putInt(target, parentOffset, newSlot, (int) water(root));
+            putInt(target, sizeOffset, newSlot, 1);
+            putLong(target, newSlot, 0);
+            setParent(slot, -newSlot - 1);
+        }
+
+        for (int pool = 0; pool < poolCount; pool++) {
+            final int slot = slot(pool);
+            final int parent = parent(slot);
+            putInt(target, 0, pool, parent < 0 ? -parent - 1 : (int) water(slot));
+        }
+
+        final long previousGeneration = generation;
+        final MappedByteBuffer[] previous = segments;
+        segments = target;
+        generation = nextGeneration;
+        releaseSegments(previous);
+
+        //заголовок переключается на новое поколение только после того, как его сегменты на диске
+        flush();
+        deleteGeneration(previousGeneration);
+    }
+
+    /**
+     * Сбросить измененные страницы на диск и записать заголовок сети
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) segment.force();
+        }
+        writeMeta();
+    }
+
+    /**
+     * Сбросить сеть на диск и освободить отображения, повторный вызов ничего не делает
+     */
+    @Override
+    public void close() throws IOException {
+        if (segments == null) return;
+
+        try {
+            flush();
+        } finally {
+            final MappedByteBuffer[] released = segments;
+            segments = null;
+            poolCount = 0;
+            releaseSegments(released);
+        }
+    }
+
+    /**
+     * Поиск корня среди физических слотов со сжатием пути, реализован без рекурсии
+     */
+    private int find(int slot) {
+        int root = slot;
+        int next;
+        while ((next = parent(root)) != root) {
+            root = next;
+        }
+
+        while ((next = parent(slot)) != root) {
+            setParent(slot, root);
+            slot = next;
+        }
+
+        return root;
+    }
+
+    private int slot(int pool) {
+        ensureOpen();
+        Objects.checkIndex(pool, poolCount);
+        return segments[pool >>> segmentShift].getInt((pool & segmentMask) << 2);
+    }
+
+    private void setSlot(int pool, int slot) {
+        segments[pool >>> segmentShift].putInt((pool & segmentMask) << 2, slot);
+    }
+
+    private int parent(int slot) {
+        return segments[slot >>> segmentShift].getInt(parentOffset + ((slot & segmentMask) << 2));
+    }
+
+    private void setParent(int slot, int parent) {
+        segments[slot >>> segmentShift].putInt(parentOffset + ((slot & segmentMask) << 2), parent);
+    }
+
+    private int size(int slot) {
+        return segments[slot >>> segmentShift].getInt(sizeOffset + ((slot & segmentMask) << 2));
+    }
+
+    private void setSize(int slot, int size) {
+        segments[slot >>> segmentShift].putInt(sizeOffset + ((slot & segmentMask) << 2), size);
+    }
+
+    private long water(int slot) {
+        return segments[slot >>> segmentShift].getLong(waterOffset + ((slot & segmentMask) << 3));
+    }
+
+    private void setWater(int slot, long water) {
+        segments[slot >>> segmentShift].putLong(waterOffset + ((slot & segmentMask) << 3), water);
+    }
+
+    private void putInt(ByteBuffer[] target, int columnOffset, int index, int value) {
+        target[index >>> segmentShift].putInt(columnOffset + ((index & segmentMask) << 2), value);
+    }
+
+    private void putLong(ByteBuffer[] target, int index, long value) {
+        target[index >>> segmentShift].putLong(waterOffset + ((index & segmentMask) << 3), value);
+    }
+
+    private int segmentCount(int poolCount) {
+        return (int) (((long) poolCount + segmentMask) >>> segmentShift);
+    }
+
+    private Path segmentPath(long generation, int segment) {
+        return directory.resolve(SEGMENT_PREFIX + generation + "-" + segment);
+    }
+
+    /**
+     * Отобразить файл сегмента в память, новый файл создается нужного размера и заполнен нулями
+     */
+    private MappedByteBuffer mapSegment(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) BYTES_PER_POOL << segmentShift);
+            segment.order(order);
+            return segment;
+        }
+    }
+
+    /**
+     * Атомарно записать заголовок сети
+     */
+    private void writeMeta() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES * 4 + 1 + Long.BYTES);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .put(NetworkSnapshot.writeOrder(order))
+                .putInt(segmentShift)
+                .putInt(poolCount)
+                .putLong(generation);
+
+        final Path meta = directory.resolve(META_FILE);
+        final Path temporary = directory.resolve(META_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        )) {
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteGeneration(long generation) throws IOException {
+        final String prefix = SEGMENT_PREFIX + generation + "-";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void releaseSegments(MappedByteBuffer[] segments) {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) OffHeapPoolNetwork.freeSegment(segment);
+        }
+    }
+
+    private void ensureOpen() {
+        if (segments == null) throw new IllegalStateException("Сеть бассейнов закрыта");
+    }
+}
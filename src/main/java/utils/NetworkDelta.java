@@ -0,0 +1,137 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Инкрементальный снимок {@link OffHeapPoolNetwork}: только страницы сегментов, измененные с предыдущего снимка
+ * <p>
+ * Формат файла: заголовок размером {@link #HEADER_SIZE} с {@link #MAGIC}, {@link #VERSION}, порядком байт,
+ * {@code segmentShift}, колличеством бассейнов, размером страницы и колличеством страниц, затем номера страниц (long)
+ * и содержимое страниц подряд. Заголовок и номера страниц пишутся в порядке big-endian, страницы в порядке байт сети
+ * <p>
+ * Сеть копирует грязные страницы в момент вызова {@link OffHeapPoolNetwork#snapshotDelta(Path)}, поэтому стоимость
+ * снимка пропорциональна колличеству измененных страниц, а не размеру сети, а запись в файл идет в фоновом потоке
+ * и сеть не блокирует. Как и {@link NetworkSnapshot}, файл пишется во временный и переименовывается после завершения
+ * <p>
+ * Восстановление: открыть полный снимок через {@link OffHeapPoolNetwork#open(Path)} и применить к нему
+ * все последующие инкрементальные снимки по порядку через {@link OffHeapPoolNetwork#applyDelta(Path)}
+ */
+public final class NetworkDelta {
+
+    /**
+     * "DLTA" в ascii
+     */
+    public static final int MAGIC = 0x444C5441;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = Integer.BYTES * 6 + 1;
+
+    private final Path path;
+
+    private final Path temporaryPath;
+
+    private final long byteSize;
+
+    private final Thread writerThread;
+
+    private volatile boolean isDone = false;
+
+    private volatile IOException writeError;
+
+    /**
+     * Запустить фоновую запись уже скопированных страниц, вызывается сетью
+     *
+     * @param pageIndices номера страниц в порядке возрастания
+     * @param pages       содержимое страниц подряд, по {@code pageSize} байт на страницу
+     */
+    NetworkDelta(Path path, int segmentShift, int poolCount, int pageSize, long[] pageIndices, ByteBuffer pages, ByteOrder order) {
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.byteSize = HEADER_SIZE + (long) pageIndices.length * Long.BYTES + pages.remaining();
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + pageIndices.length * Long.BYTES);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .put(NetworkSnapshot.writeOrder(order))
+                .putInt(segmentShift)
+                .putInt(poolCount)
+                .putInt(pageSize)
+                .putInt(pageIndices.length);
+        for (long pageIndex : pageIndices) {
+            header.putLong(pageIndex);
+        }
+        header.flip();
+
+        writerThread = new Thread(() -> write(header, pages), "pool-network-delta");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return размер файла снимка в байтах
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * @return true если запись снимка завершена, успешно или с ошибкой
+     */
+    public boolean isDone() {
+        return isDone;
+    }
+
+    /**
+     * Дождаться завершения записи снимка
+     *
+     * @throws IOException если снимок не удалось записать
+     */
+    public void await() throws IOException {
+        try {
+            writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ожидание снимка прервано", exception);
+        }
+
+        if (writeError != null) throw writeError;
+    }
+
+    /**
+     * Цикл фонового потока
+     */
+    private void write(ByteBuffer header, ByteBuffer pages) {
+        try {
+            try (FileChannel channel = FileChannel.open(
+                    temporaryPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+            )) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (pages.hasRemaining()) {
+                    channel.write(pages);
+                }
+                channel.force(false);
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            writeError = exception;
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException suppressed) {
+                exception.addSuppressed(suppressed);
+            }
+        } finally {
+            isDone = true;
+        }
+    }
+}
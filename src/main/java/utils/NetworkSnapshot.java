@@ -0,0 +1,227 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Снимок {@link OffHeapPoolNetwork}, записываемый фоновым потоком, пока сеть продолжает меняться
+ * <p>
+ * Формат файла: заголовок размером {@link #HEADER_SIZE} с {@link #MAGIC}, {@link #VERSION}, порядком байт,
+ * {@code segmentShift} и колличеством бассейнов, за которым подряд идут сегменты сети байт в байт, как они лежат в памяти.
+ * Заголовок пишется в порядке big-endian, сегменты в порядке байт сети. Благодаря этому снимок открывается через
+ * {@link OffHeapPoolNetwork#open(Path)} отображением сегментов в память без разбора и копирования
+ * <p>
+ * Снимок согласован на момент вызова {@link OffHeapPoolNetwork#snapshot(Path)}: перед первой записью в сегмент,
+ * который фоновый поток еще не успел сбросить, сеть копирует его исходное содержимое (copy-on-write по сегментам).
+ * Копии, как и сами сегменты, лежат вне кучи и освобождаются фоновым потоком сразу после сброса в файл,
+ * поэтому снимок большой сети не раздувает кучу. Блокируется только запись в сегмент, который фоновый поток
+ * сбрасывает прямо сейчас
+ * <p>
+ * Файл пишется во временный файл рядом с целевым и переименовывается после завершения,
+ * поэтому по пути {@code path} никогда не лежит недописанный снимок
+ */
+public final class NetworkSnapshot {
+
+    /**
+     * "SNAP" в ascii
+     */
+    public static final int MAGIC = 0x534E4150;
+
+    public static final int VERSION = 1;
+
+    /**
+     * Заголовок занимает страницу, чтобы сегменты в файле были выровнены по страницам
+     */
+    public static final int HEADER_SIZE = 4096;
+
+    private static final byte BIG_ENDIAN = 0;
+
+    private static final byte LITTLE_ENDIAN = 1;
+
+    private final Path path;
+
+    private final Path temporaryPath;
+
+    private final FileChannel channel;
+
+    private final long segmentBytes;
+
+    /**
+     * Содержимое сегментов на момент снимка, сброшенный сегмент заменяется на {@code null}
+     */
+    private final ByteBuffer[] segments;
+
+    /**
+     * Является ли сегмент копией, принадлежащей снимку, защищено {@code locks}
+     */
+    private final boolean[] copied;
+
+    private final Object[] locks;
+
+    /**
+     * Сброшен ли сегмент в файл, защищено {@code locks}
+     */
+    private final boolean[] written;
+
+    /**
+     * Сохранил ли уже поток сети исходное содержимое сегмента, меняется только потоком сети
+     */
+    private final boolean[] preserved;
+
+    private final Thread writerThread;
+
+    private volatile boolean isDone = false;
+
+    private volatile IOException writeError;
+
+    /**
+     * Записать заголовок и запустить фоновую запись сегментов, вызывается сетью
+     */
+    NetworkSnapshot(Path path, ByteBuffer[] segments, int segmentShift, int poolCount, long segmentBytes, ByteOrder order) throws IOException {
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.segmentBytes = segmentBytes;
+        this.segments = segments;
+        this.locks = new Object[segments.length];
+        this.written = new boolean[segments.length];
+        this.copied = new boolean[segments.length];
+        this.preserved = new boolean[segments.length];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        channel = FileChannel.open(
+                temporaryPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        );
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .put(writeOrder(order))
+                    .putInt(segmentShift)
+                    .putInt(poolCount)
+                    .clear();
+            writeFully(header, 0);
+        } catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+
+        writerThread = new Thread(this::writeSegments, "pool-network-snapshot");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return true если запись снимка завершена, успешно или с ошибкой
+     */
+    public boolean isDone() {
+        return isDone;
+    }
+
+    /**
+     * Дождаться завершения записи снимка
+     *
+     * @throws IOException если снимок не удалось записать
+     */
+    public void await() throws IOException {
+        try {
+            writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ожидание снимка прервано", exception);
+        }
+
+        if (writeError != null) throw writeError;
+    }
+
+    /**
+     * Вызывается потоком сети перед изменением сегмента {@code segment}
+     */
+    void beforeWrite(int segment) {
+        if (segment >= preserved.length || preserved[segment]) return;
+
+        synchronized (locks[segment]) {
+            if (!written[segment]) {
+                final ByteBuffer source = segments[segment].duplicate().clear();
+                segments[segment] = ByteBuffer.allocateDirect(source.capacity()).put(source).order(source.order());
+                copied[segment] = true;
+            }
+        }
+        preserved[segment] = true;
+    }
+
+    /**
+     * Цикл фонового потока
+     */
+    private void writeSegments() {
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                synchronized (locks[i]) {
+                    writeFully(segments[i].duplicate().clear(), HEADER_SIZE + i * segmentBytes);
+                    release(i);
+                }
+            }
+            channel.force(false);
+            channel.close();
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            writeError = exception;
+            //несброшенные копии больше не нужны, а новые сегменты после ошибки не копируются
+            for (int i = 0; i < segments.length; i++) {
+                synchronized (locks[i]) {
+                    release(i);
+                }
+            }
+            try {
+                channel.close();
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException suppressed) {
+                exception.addSuppressed(suppressed);
+            }
+        } finally {
+            isDone = true;
+        }
+    }
+
+    /**
+     * Отметить сегмент сброшенным и освободить его копию, вызывается под {@code locks[segment]}
+     */
+    private void release(int segment) {
+        if (copied[segment]) {
+            OffHeapPoolNetwork.freeSegment(segments[segment]);
+            copied[segment] = false;
+        }
+        written[segment] = true;
+        segments[segment] = null;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Код порядка байт сегментов для заголовка снимка
+     */
+    static byte writeOrder(ByteOrder order) {
+        return order == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN;
+    }
+
+    /**
+     * Прочитать порядок байт сегментов из заголовка снимка
+     */
+    static ByteOrder readOrder(byte order) throws IOException {
+        if (order == BIG_ENDIAN) return ByteOrder.BIG_ENDIAN;
+        if (order == LITTLE_ENDIAN) return ByteOrder.LITTLE_ENDIAN;
+        throw new IOException("Неизвестный порядок байт в снимке: " + order);
+    }
+}
@@ -0,0 +1,581 @@
+package utils;
+
+import interfaces.IPoolNetwork;
+import metrics.PoolMetrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Сеть бассейнов на основе union-find, столбцы которой хранятся вне кучи
+ * <p>
+ * Алгоритм тот же, что и в {@link UnionFindPoolNetwork}, но {@code parent}, {@code size} и {@code water}
+ * лежат в direct {@code ByteBuffer}, поэтому сеть из сотен миллионов бассейнов не нагружает сборщик мусора.
+ * Память выделяется сегментами по {@code 2^segmentShift} бассейнов, каждый сегмент содержит все три столбца
+ * для своего диапазона индексов, так что суммарный объем сети может превышать 2 Гб
+ * <p>
+ * Память освобождается детерминированно при вызове {@link #close()}, после этого сеть использовать нельзя
+ * <p>
+ * Сеть можно сохранить в файл через {@link #snapshot(Path)} не останавливая работу с ней, а затем открыть через
+ * {@link #open(Path)}: сегменты снимка отображаются в память и подгружаются операционной системой по мере обращения,
+ * поэтому открытие не зависит от размера сети. Изменения открытой сети в файл не попадают, формат см. {@link NetworkSnapshot}
+ * <p>
+ * После первого снимка сеть отмечает измененные страницы сегментов, и следующий снимок можно записать инкрементально
+ * через {@link #snapshotDelta(Path)}: в файл попадают только страницы, измененные с предыдущего снимка.
+ * При восстановлении инкрементальные снимки применяются к открытому полному снимку через {@link #applyDelta(Path)}
+ */
+public final class OffHeapPoolNetwork implements Closeable, IPoolNetwork {
+
+    /**
+     * По умолчанию сегмент содержит 2^20 бассейнов, что составляет 16 Мб
+     */
+    public static final int DEFAULT_SEGMENT_SHIFT = 20;
+
+    /**
+     * Ограничение на размер сегмента, чтобы его размер в байтах помещался в int
+     */
+    private static final int MAX_SEGMENT_SHIFT = 26;
+
+    /**
+     * Байт на один бассейн: parent (int), size (int), water (long)
+     */
+    private static final int BYTES_PER_POOL = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    /**
+     * Логарифм размера страницы инкрементального снимка, меньше страницы отслеживать изменения нет смысла
+     */
+    private static final int DELTA_PAGE_SHIFT = 12;
+
+    /**
+     * Метод {@code Unsafe.invokeCleaner} для явного освобождения direct буферов, {@code null} если недоступен
+     */
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final int segmentShift;
+
+    private final int segmentMask;
+
+    /**
+     * Смещение столбца {@code size} внутри сегмента
+     */
+    private final int sizeOffset;
+
+    /**
+     * Смещение столбца {@code water} внутри сегмента
+     */
+    private final int waterOffset;
+
+    /**
+     * Порядок байт сегментов, у открытой из снимка сети совпадает с порядком байт снимка
+     */
+    private final ByteOrder order;
+
+    /**
+     * Логарифм размера страницы, для маленьких сегментов страница равна сегменту
+     */
+    private final int pageShift;
+
+    /**
+     * Логарифм колличества страниц в сегменте
+     */
+    private final int pagesPerSegmentShift;
+
+    /**
+     * Сегменты сети, {@code null} после закрытия
+     */
+    private ByteBuffer[] segments = new ByteBuffer[8];
+
+    /**
+     * Колличество созданных бассейнов
+     */
+    private int poolCount = 0;
+
+    /**
+     * Снимок, который записывается в данный момент, {@code null} если такого нет
+     */
+    private NetworkSnapshot snapshot = null;
+
+    /**
+     * Битовая маска страниц, измененных с последнего снимка, {@code null} пока у сети нет снимка
+     */
+    private long[] dirtyPages = null;
+
+    public OffHeapPoolNetwork() {
+        this(DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * @param segmentShift логарифм колличества бассейнов в одном сегменте
+     */
+    public OffHeapPoolNetwork(int segmentShift) {
+        this(segmentShift, ByteOrder.nativeOrder());
+    }
+
+    private OffHeapPoolNetwork(int segmentShift, ByteOrder order) {
+        if (segmentShift < 0 || segmentShift > MAX_SEGMENT_SHIFT) {
+            throw new IllegalArgumentException("segmentShift должен быть в пределах [0, " + MAX_SEGMENT_SHIFT + "]: " + segmentShift);
+        }
+
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+        this.sizeOffset = Integer.BYTES << segmentShift;
+        this.waterOffset = (Integer.BYTES + Integer.BYTES) << segmentShift;
+        this.order = order;
+
+        final int segmentBytesShift = segmentShift + Integer.numberOfTrailingZeros(BYTES_PER_POOL);
+        this.pageShift = Math.min(DELTA_PAGE_SHIFT, segmentBytesShift);
+        this.pagesPerSegmentShift = segmentBytesShift - pageShift;
+    }
+
+    /**
+     * Открыть сеть из снимка, сегменты отображаются в память в режиме copy-on-write и читаются лениво
+     *
+     * @param path файл снимка, записанный {@link #snapshot(Path)}
+     * @throws IOException если файл не является снимком сети или поврежден
+     */
+    public static OffHeapPoolNetwork open(Path path) throws IOException {
+        //отображение copy-on-write требует канал на запись, хотя сам файл не меняется
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(NetworkSnapshot.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) throw new IOException("Файл короче заголовка снимка: " + path);
+            }
+            header.flip();
+
+            if (header.getInt() != NetworkSnapshot.MAGIC) throw new IOException("Файл не является снимком сети: " + path);
+            final int version = header.getInt();
+            if (version != NetworkSnapshot.VERSION) throw new IOException("Неподдерживаемая версия снимка: " + version);
+
+            final ByteOrder order = NetworkSnapshot.readOrder(header.get());
+            final int segmentShift = header.getInt();
+            final int poolCount = header.getInt();
+            if (segmentShift < 0 || segmentShift > MAX_SEGMENT_SHIFT || poolCount < 0) {
+                throw new IOException("Поврежденный заголовок снимка: " + path);
+            }
+
+            final OffHeapPoolNetwork network = new OffHeapPoolNetwork(segmentShift, order);
+            final long segmentBytes = (long) BYTES_PER_POOL << segmentShift;
+            final int segmentCount = (int) (((long) poolCount + network.segmentMask) >>> segmentShift);
+            if (channel.size() < NetworkSnapshot.HEADER_SIZE + segmentCount * segmentBytes) {
+                throw new IOException("Снимок обрезан: " + path);
+            }
+
+            network.segments = new ByteBuffer[Math.max(segmentCount, network.segments.length)];
+            for (int i = 0; i < segmentCount; i++) {
+                network.segments[i] = channel
+                        .map(FileChannel.MapMode.PRIVATE, NetworkSnapshot.HEADER_SIZE + i * segmentBytes, segmentBytes)
+                        .order(order);
+            }
+            network.poolCount = poolCount;
+            network.dirtyPages = new long[network.dirtyWordCount()];
+            return network;
+        }
+    }
+
+    /**
+     * Начать запись снимка сети в файл, снимок согласован на момент вызова, а сеть можно менять сразу после возврата
+     * <p>
+     * Одновременно может записываться только один снимок, сеть по-прежнему нужно использовать из одного потока
+     *
+     * @param path файл снимка, существующий файл заменяется после завершения записи
+     * @return снимок, через который можно дождаться окончания записи
+     * @throws IOException если не удалось создать файл снимка
+     */
+    public NetworkSnapshot snapshot(Path path) throws IOException {
+        ensureOpen();
+        if (snapshot != null && !snapshot.isDone()) throw new IllegalStateException("Снимок сети уже записывается");
+
+        final int segmentCount = (int) (((long) poolCount + segmentMask) >>> segmentShift);
+        snapshot = new NetworkSnapshot(
+                path,
+                Arrays.copyOf(segments, segmentCount),
+                segmentShift,
+                poolCount,
+                (long) BYTES_PER_POOL << segmentShift,
+                order
+        );
+        dirtyPages = new long[dirtyWordCount()];
+        return snapshot;
+    }
+
+    /**
+     * Начать запись инкрементального снимка: только страниц, измененных с предыдущего полного или инкрементального снимка
+     * <p>
+     * Измененные страницы копируются в момент вызова, поэтому время вызова пропорционально их колличеству,
+     * а файл пишется в фоне, сеть можно менять сразу после возврата
+     *
+     * @param path файл снимка, существующий файл заменяется после завершения записи
+     * @return снимок, через который можно дождаться окончания записи
+     * @throws IllegalStateException если у сети еще не было полного снимка и она не открыта из снимка
+     */
+    public NetworkDelta snapshotDelta(Path path) {
+        ensureOpen();
+        if (dirtyPages == null) throw new IllegalStateException("У сети нет снимка, относительно которого можно записать изменения");
+
+        final long dirtyBytes = getDirtyBytes();
+        if (dirtyBytes > Integer.MAX_VALUE - 8) throw new IllegalStateException("Слишком много изменений для инкрементального снимка: " + dirtyBytes);
+
+        final int pageSize = 1 << pageShift;
+        final long[] pageIndices = new long[(int) (dirtyBytes >>> pageShift)];
+        final ByteBuffer pages = ByteBuffer.allocate((int) dirtyBytes);
+        int count = 0;
+        for (int word = 0; word < dirtyPages.length; word++) {
+            long bits = dirtyPages[word];
+            while (bits != 0) {
+                final long page = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                final ByteBuffer source = segments[(int) (page >>> pagesPerSegmentShift)].duplicate();
+                final int offset = (int) (page & ((1 << pagesPerSegmentShift) - 1)) << pageShift;
+                source.limit(offset + pageSize).position(offset);
+                pages.put(source);
+                pageIndices[count++] = page;
+            }
+        }
+        pages.flip();
+        Arrays.fill(dirtyPages, 0);
+
+        return new NetworkDelta(path, segmentShift, poolCount, pageSize, pageIndices, pages, order);
+    }
+
+    /**
+     * Применить инкрементальный снимок, записанный сетью после снимка, из которого открыта эта сеть
+     * <p>
+     * Применять нужно все инкрементальные снимки по порядку, изменения применения не считаются измененными страницами
+     *
+     * @param path файл, записанный {@link #snapshotDelta(Path)}
+     * @throws IOException если файл не является инкрементальным снимком этой сети или поврежден
+     */
+    public void applyDelta(Path path) throws IOException {
+        ensureOpen();
+        if (snapshot != null && !snapshot.isDone()) throw new IllegalStateException("Снимок сети еще записывается");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(NetworkDelta.HEADER_SIZE);
+            readFully(channel, header, path);
+
+            if (header.getInt() != NetworkDelta.MAGIC) throw new IOException("Файл не является инкрементальным снимком сети: " + path);
+            final int version = header.getInt();
+            if (version != NetworkDelta.VERSION) throw new IOException("Неподдерживаемая версия инкрементального снимка: " + version);
+
+            final ByteOrder deltaOrder = NetworkSnapshot.readOrder(header.get());
+            final int deltaSegmentShift = header.getInt();
+            final int deltaPoolCount = header.getInt();
+            final int pageSize = header.getInt();
+            final int pageCount = header.getInt();
+            if (deltaOrder != order || deltaSegmentShift != segmentShift || pageSize != 1 << pageShift) {
+                throw new IOException("Инкрементальный снимок записан сетью с другой разметкой: " + path);
+            }
+            if (deltaPoolCount < poolCount || pageCount < 0) throw new IOException("Поврежденный заголовок инкрементального снимка: " + path);
+
+            final ByteBuffer indices = ByteBuffer.allocate(pageCount * Long.BYTES);
+            readFully(channel, indices, path);
+
+            final int segmentCount = (int) (((long) deltaPoolCount + segmentMask) >>> segmentShift);
+            if (segmentCount > segments.length) segments = Arrays.copyOf(segments, segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                if (segments[i] == null) segments[i] = ByteBuffer.allocateDirect(BYTES_PER_POOL << segmentShift).order(order);
+            }
+            poolCount = deltaPoolCount;
+
+            for (int i = 0; i < pageCount; i++) {
+                final long page = indices.getLong();
+                if (page < 0 || page >>> pagesPerSegmentShift >= segmentCount) {
+                    throw new IOException("Инкрементальный снимок ссылается на несуществующую страницу " + page + ": " + path);
+                }
+
+                final ByteBuffer target = segments[(int) (page >>> pagesPerSegmentShift)].duplicate();
+                final int offset = (int) (page & ((1 << pagesPerSegmentShift) - 1)) << pageShift;
+                target.limit(offset + pageSize).position(offset);
+                readFully(channel, target, path);
+            }
+        }
+
+        if (dirtyWordCount() > dirtyPages.length) dirtyPages = Arrays.copyOf(dirtyPages, dirtyWordCount());
+    }
+
+    /**
+     * @return объем страниц, измененных с последнего снимка, в байтах, 0 если у сети еще нет снимка
+     */
+    public long getDirtyBytes() {
+        if (dirtyPages == null) return 0;
+
+        long count = 0;
+        for (long word : dirtyPages) {
+            count += Long.bitCount(word);
+        }
+        return count << pageShift;
+    }
+
+    /**
+     * Создать новый бассейн
+     *
+     * @return индекс созданного бассейна
+     */
+    @Override
+    public int create() {
+        return create(1);
+    }
+
+    /**
+     * Создать {@code count} новых бассейнов с последовательными индексами
+     *
+     * @return индекс первого созданного бассейна
+     */
+    @Override
+    public int create(int count) {
+        ensureOpen();
+        if (count < 0) throw new IllegalArgumentException("Отрицательное колличество бассейнов: " + count);
+        if (count > Integer.MAX_VALUE - poolCount) {
+            throw new IllegalStateException("Достигнуто максимальное колличество бассейнов в сети: " + Integer.MAX_VALUE);
+        }
+
+        final int first = poolCount;
+        for (int pool = first; pool < first + count; pool++) {
+            final int segmentIndex = pool >>> segmentShift;
+            if (segmentIndex == segments.length) {
+                segments = Arrays.copyOf(segments, segments.length * 2);
+            }
+            if (segments[segmentIndex] == null) {
+                segments[segmentIndex] = ByteBuffer
+                        .allocateDirect(BYTES_PER_POOL << segmentShift)
+                        .order(order);
+            }
+
+            setParent(pool, pool);
+            setSize(pool, 1);
+            setWater(pool, 0);
+        }
+        poolCount += count;
+        return first;
+    }
+
+    /**
+     * @return колличество созданных бассейнов
+     */
+    @Override
+    public int getPoolCount() {
+        return poolCount;
+    }
+
+    /**
+     * @return объем памяти вне кучи, занятый сетью, в байтах
+     */
+    public long getAllocatedBytes() {
+        if (segments == null) return 0;
+
+        final long segmentCount = ((long) poolCount + segmentMask) >>> segmentShift;
+        return segmentCount * ((long) BYTES_PER_POOL << segmentShift);
+    }
+
+    /**
+     * Получить колличество воды в бассейне
+     */
+    @Override
+    public long measure(int pool) {
+        return water(find(pool));
+    }
+
+    /**
+     * Добавить воды в бассейн, вода равномерно распределяется по всей компоненте
+     */
+    @Override
+    public void add(int pool, long amount) {
+        if (amount == 0) return;
+
+        final int root = find(pool);
+        setWater(root, WaterArithmetic.DEFAULT.addToLevel(water(root), amount, size(root)));
+    }
+
+    /**
+     * Соеденить две сети бассейнов, меньшая компонента подвешивается к большей
+     */
+    @Override
+    public void connect(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+
+        if (firstRoot == secondRoot) return;
+
+        if (size(firstRoot) < size(secondRoot)) {
+            final int tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+
+        final int firstSize = size(firstRoot);
+        final int secondSize = size(secondRoot);
+
+        setWater(firstRoot, WaterArithmetic.DEFAULT.weightedAverage(water(firstRoot), firstSize, water(secondRoot), secondSize));
+        setSize(firstRoot, firstSize + secondSize);
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(firstSize + secondSize);
+        setParent(secondRoot, firstRoot);
+        setWater(secondRoot, 0);
+    }
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    @Override
+    public boolean isConnected(int first, int second) {
+        return find(first) == find(second);
+    }
+
+    /**
+     * Освободить память сети, повторный вызов ничего не делает, записываемый снимок перед этим дописывается
+     */
+    @Override
+    public void close() {
+        if (segments == null) return;
+
+        if (snapshot != null) {
+            try {
+                snapshot.await();
+            } catch (IOException ignored) {
+                //ошибку записи получит тот, кто ждет снимок
+            }
+            snapshot = null;
+        }
+
+        final ByteBuffer[] released = segments;
+        segments = null;
+        poolCount = 0;
+        dirtyPages = null;
+
+        for (ByteBuffer segment : released) {
+            if (segment != null) freeSegment(segment);
+        }
+    }
+
+    /**
+     * Поиск корня компоненты со сжатием пути, реализован без рекурсии
+     */
+    private int find(int pool) {
+        ensureOpen();
+        Objects.checkIndex(pool, poolCount);
+
+        int root = pool;
+        int next;
+        while ((next = parent(root)) != root) {
+            root = next;
+        }
+
+        while ((next = parent(pool)) != root) {
+            setParent(pool, root);
+            pool = next;
+        }
+
+        return root;
+    }
+
+    private int parent(int pool) {
+        return segments[pool >>> segmentShift].getInt((pool & segmentMask) << 2);
+    }
+
+    private void setParent(int pool, int parent) {
+        final int offset = (pool & segmentMask) << 2;
+        if (snapshot != null) beforeWrite(pool);
+        if (dirtyPages != null) markDirty(pool, offset);
+        segments[pool >>> segmentShift].putInt(offset, parent);
+    }
+
+    private int size(int pool) {
+        return segments[pool >>> segmentShift].getInt(sizeOffset + ((pool & segmentMask) << 2));
+    }
+
+    private void setSize(int pool, int size) {
+        final int offset = sizeOffset + ((pool & segmentMask) << 2);
+        if (snapshot != null) beforeWrite(pool);
+        if (dirtyPages != null) markDirty(pool, offset);
+        segments[pool >>> segmentShift].putInt(offset, size);
+    }
+
+    private long water(int pool) {
+        return segments[pool >>> segmentShift].getLong(waterOffset + ((pool & segmentMask) << 3));
+    }
+
+    private void setWater(int pool, long water) {
+        final int offset = waterOffset + ((pool & segmentMask) << 3);
+        if (snapshot != null) beforeWrite(pool);
+        if (dirtyPages != null) markDirty(pool, offset);
+        segments[pool >>> segmentShift].putLong(offset, water);
+    }
+
+    /**
+     * Отметить страницу сегмента бассейна {@code pool}, содержащую байт {@code offset}, как измененную
+     */
+    private void markDirty(int pool, int offset) {
+        final long page = ((long) (pool >>> segmentShift) << pagesPerSegmentShift) | (offset >>> pageShift);
+        final int word = (int) (page >>> 6);
+        if (word >= dirtyPages.length) dirtyPages = Arrays.copyOf(dirtyPages, Math.max(word + 1, dirtyPages.length * 2));
+        dirtyPages[word] |= 1L << page;
+    }
+
+    /**
+     * @return колличество слов битовой маски, покрывающей все страницы созданных сегментов
+     */
+    private int dirtyWordCount() {
+        final long segmentCount = ((long) poolCount + segmentMask) >>> segmentShift;
+        return (int) (((segmentCount << pagesPerSegmentShift) + 63) >>> 6);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, Path path) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Инкрементальный снимок обрезан: " + path);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Сохранить исходное содержимое сегмента для записываемого снимка
+     */
+    private void beforeWrite(int pool) {
+        if (snapshot.isDone()) {
+            snapshot = null;
+        } else {
+            snapshot.beforeWrite(pool >>> segmentShift);
+        }
+    }
+
+    private void ensureOpen() {
+        if (segments == null) throw new IllegalStateException("Сеть бассейнов закрыта");
+    }
+
+    /**
+     * Явно освободить память direct буфера, если jvm не позволяет этого сделать, то память освободит сборщик мусора
+     */
+    static void freeSegment(ByteBuffer segment) {
+        if (INVOKE_CLEANER == null) return;
+
+        try {
+            INVOKE_CLEANER.invokeExact(segment);
+        } catch (Throwable ignored) {
+            //буфер освободит сборщик мусора
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            return null;
+        }
+    }
+}
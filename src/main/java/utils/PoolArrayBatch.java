@@ -0,0 +1,58 @@
+package utils;
+
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+
+/**
+ * Пакет бассейнов на основе массива
+ * <p>
+ * Операции базовой имплементации обращаются к бассейнам через интерфейс {@code IPool}, имплементации бассейнов
+ * наследуются от него с конкретным типом {@code T} и переопределяют только те циклы, которые обращаются к полям бассейнов напрямую
+ *
+ * @param <T> тип бассейнов пакета
+ */
+public class PoolArrayBatch<T extends IPool> implements IPoolBatch {
+
+    /**
+     * Бассейны пакета
+     */
+    protected final T[] pools;
+
+    public PoolArrayBatch(T[] pools) {
+        this.pools = pools;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int size() {
+        return pools.length;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IPool get(int index) {
+        return pools[index];
+    }
+
+    /**
+     * Проверка размера массива для {@code measureAll}
+     */
+    public static void checkResultLength(long[] result, int size) {
+        if (result.length < size) {
+            throw new IllegalArgumentException("Размер массива меньше размера пакета: " + result.length + " < " + size);
+        }
+    }
+
+    /**
+     * Проверка размеров параллельных массивов для {@code addAll} и {@code connectAll}
+     */
+    public static void checkSameLength(int firstLength, int secondLength) {
+        if (firstLength != secondLength) {
+            throw new IllegalArgumentException("Размеры массивов не совпадают: " + firstLength + " != " + secondLength);
+        }
+    }
+}
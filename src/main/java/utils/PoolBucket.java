@@ -1,10 +1,6 @@
 package utils;
 
-import interfaces.IPool;
-
-import java.lang.ref.WeakReference;
-import java.math.BigInteger;
-import java.util.LinkedList;
+import metrics.PoolMetrics;
 
 /**
  * Представление воды в сети бассейнов соеденненых каналами
@@ -26,39 +22,86 @@ public class PoolBucket {
      */
     private long amountOfPools = 1;
 
-    private final LinkedList<WeakReference<IPool>> poolList = new LinkedList<>();
+    /**
+     * Бассейны сети образуют интрузивную цепочку слотов реестра {@code PoolsOrchestrator}:
+     * бакет хранит только первый и последний слот, ссылки на следующий слот хранит оркестратор,
+     * поэтому две цепочки сливаются за константное время
+     */
+    private int firstPoolSlot = -1;
 
-    public LinkedList<WeakReference<IPool>> getPoolList() {
-        return poolList;
-    }
+    private int lastPoolSlot = -1;
+
+    private int poolSlotCount = 0;
 
     public PoolBucket(long water) {
         amountOfWater = water;
     }
 
-    public void addPool(IPool pool) {
-        poolList.add(new WeakReference<>(pool));
+    public int sizeOfPoolList() {
+        return poolSlotCount;
     }
 
-    public int sizeOfPoolList() {
-        return poolList.size();
+    /**
+     * @return первый слот цепочки бассейнов сети, -1 если цепочка пуста
+     */
+    public int getFirstPoolSlot() {
+        return firstPoolSlot;
+    }
+
+    /**
+     * @return последний слот цепочки бассейнов сети, -1 если цепочка пуста
+     */
+    public int getLastPoolSlot() {
+        return lastPoolSlot;
+    }
+
+    /**
+     * Дописать в конец цепочки уже связанную цепочку слотов, связь с текущим последним слотом выставляет вызывающий
+     *
+     * @param firstSlot первый слот дописываемой цепочки
+     * @param lastSlot  последний слот дописываемой цепочки
+     * @param count     колличество слотов в дописываемой цепочке
+     */
+    public void appendPools(int firstSlot, int lastSlot, int count) {
+        if (count == 0) return;
+
+        if (poolSlotCount == 0) firstPoolSlot = firstSlot;
+        lastPoolSlot = lastSlot;
+        poolSlotCount += count;
+    }
+
+    /**
+     * Очистить цепочку бассейнов сети
+     */
+    public void clearPools() {
+        firstPoolSlot = -1;
+        lastPoolSlot = -1;
+        poolSlotCount = 0;
     }
 
     /**
      * Геттер для {@code amountOfWater}
      */
     public long getAmountOfWater() {
-        if (addWaterBuffer != 0) {
-            realAddWater(addWaterBuffer);
-            addWaterBuffer = 0;
-        }
+        flushAddWaterBuffer();
         return amountOfWater;
     }
 
+    /**
+     * Колличество воды в сети с учетом буфера {@code add}, в отличие от {@code getAmountOfWater} не изменяет бакет,
+     * поэтому может вызываться при оптимистичном чтении без блокировки
+     */
+    public long measureAmountOfWater() {
+        if (addWaterBuffer == 0) return amountOfWater;
+
+        return WaterArithmetic.DEFAULT.addToLevel(amountOfWater, addWaterBuffer, amountOfPools);
+    }
+
     /**
      * Добавить в сеть бассейн для которого не создавался PoolBucket
      */
     public void addWaterWithPool(long water) {
+        flushAddWaterBuffer();
         amountOfWater = calculateNewAmount(1, water);
         amountOfPools++;
     }
@@ -76,18 +119,24 @@ public class PoolBucket {
         }
     }
 
-    private void realAddWater(long water) {
-        try {
-            amountOfWater = Math.addExact(amountOfWater, water / amountOfPools);
-        } catch (ArithmeticException exception) {
-            amountOfWater = Long.MAX_VALUE;
+    private void flushAddWaterBuffer() {
+        if (addWaterBuffer != 0) {
+            realAddWater(addWaterBuffer);
+            addWaterBuffer = 0;
         }
     }
 
+    private void realAddWater(long water) {
+        amountOfWater = WaterArithmetic.DEFAULT.addToLevel(amountOfWater, water, amountOfPools);
+    }
+
     /**
      * Присоеденить {@code bucket} к текущей сети
      */
     public void mergeBuckets(PoolBucket bucket) {
+        //буферы делятся на размер сети до слияния, поэтому применяются до пересчета
+        flushAddWaterBuffer();
+        bucket.flushAddWaterBuffer();
         amountOfWater = calculateNewAmount(bucket.amountOfPools, bucket.amountOfWater);
         amountOfPools += bucket.amountOfPools;
     }
@@ -100,34 +149,8 @@ public class PoolBucket {
      * @return объем воды в объедененной сети
      */
     private long calculateNewAmount(long newBucketSize, long newBucketAmountOfWater) {
-
-        final long meshSize = amountOfPools + newBucketSize;
-
-        try {
-
-            return Math.addExact(Math.multiplyExact(amountOfWater, amountOfPools), Math.multiplyExact(newBucketAmountOfWater, newBucketSize)) / meshSize;
-
-        } catch (ArithmeticException exception) {
-
-            //если лонги перепонились то только BigInt
-            BigInteger amountOfWaterBI = new BigInteger(String.valueOf(amountOfWater));
-            BigInteger newMeasureBI = new BigInteger(String.valueOf(newBucketAmountOfWater));
-            BigInteger oldSizeBI = new BigInteger(String.valueOf(amountOfPools));
-            BigInteger sizeDiffBI = new BigInteger(String.valueOf(newBucketSize));
-            BigInteger meshSizeBI = new BigInteger(String.valueOf(meshSize));
-
-            //тут переполнение невозможно исходя из семантики, какие 2 сети бассейнов не соеденяй переполнения получить не выйдет
-            return (
-                    (amountOfWaterBI
-                            .multiply(oldSizeBI)
-                            .divide(meshSizeBI)
-                    ).add(
-                            newMeasureBI
-                                    .multiply(sizeDiffBI)
-                                    .divide(meshSizeBI)
-                    )
-            ).longValue();
-        }
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(amountOfPools + newBucketSize);
+        return WaterArithmetic.DEFAULT.weightedAverage(amountOfWater, amountOfPools, newBucketAmountOfWater, newBucketSize);
     }
 
 }
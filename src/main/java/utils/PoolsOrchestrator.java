@@ -1,42 +1,140 @@
 package utils;
 
-import interfaces.IPool;
-
-import java.lang.ref.WeakReference;
-import java.util.LinkedList;
-import java.util.WeakHashMap;
+import java.util.Arrays;
 
 /**
  * Оркестратор сетей бассейнов, предполагается что данная сущность хранит всю информаицю о бассейнах соеденненных каналами
+ * <p>
+ * Каждый бассейн при создании получает плотный целочисленный слот через {@link #registerPool()},
+ * все остальные вызовы принимают слоты, поэтому поиск бакета это чтение из массива {@code buckets}, а не поиск в хеш-таблице.
+ * На один бассейн реестр тратит одну ссылку и один int
+ * <p>
+ * Слоты не освобождаются и не переиспользуются: бассейн занимает слот все время жизни, в том числе после слияния
+ * его сети с другой, а о том, что объект бассейна стал недостижим, оркестратор не узнает. Поэтому реестр растет
+ * вместе с колличеством созданных бассейнов и освобождается только целиком через {@link #reset()} или {@link #close()},
+ * для долгоживущих сетей с постоянным созданием бассейнов оркестратор нужно периодически сбрасывать
+ * <p>
+ * Бассейны одной сети связаны в цепочку через {@code nextSlots}, поэтому при слиянии сетей
+ * цепочки склеиваются за константное время, а обходится только цепочка меньшей сети для обновления реестра
+ * <p>
+ * Оркестратор принадлежит одной независимой сети: {@link #reset()} отбрасывает все ее бассейны разом,
+ * а {@link #close()} освобождает реестр. Бассейны запоминают поколение оркестратора при регистрации
+ * и проверяют его через {@link #ensureGeneration(int)}, поэтому бассейн сброшенной сети нельзя использовать по ошибке
  */
-public final class PoolsOrchestrator {
+public final class PoolsOrchestrator implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
     /**
-     * Мапа бассейнов к бакетам с водой
+     * Реестр слот -> бакет с водой, {@code null} если бассейн еще ни с чем не соединялся
      */
-    private final WeakHashMap<IPool, PoolBucket> poolMap = new WeakHashMap<>();
+    private PoolBucket[] buckets = new PoolBucket[DEFAULT_CAPACITY];
 
     /**
-     * Соеденить две сети бассейнов
+     * Следующий слот в цепочке бассейнов сети, для последнего слота цепочки значение не определено
+     */
+    private int[] nextSlots = new int[DEFAULT_CAPACITY];
+
+    /**
+     * Колличество выданных слотов
+     */
+    private int slotCount = 0;
+
+    /**
+     * Поколение реестра, увеличивается при каждом сбросе и закрытии
+     */
+    private int generation = 0;
+
+    /**
+     * Выдать слот новому бассейну, слот занят до {@link #reset()} или {@link #close()}
+     *
+     * @return слот бассейна
      */
-    public void mergePools(IPool poolFirst, IPool poolSecond) {
-        if (poolFirst == poolSecond) {
-            if(poolMap.get(poolFirst) != null) return;
-            addNewPool(poolFirst);
+    public int registerPool() {
+        ensureOpen();
+        if (slotCount == buckets.length) {
+            if (slotCount == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Достигнуто максимальное колличество бассейнов: " + slotCount);
+            }
+            final int capacity = (int) Math.min(Integer.MAX_VALUE - 8, slotCount + (slotCount >> 1) + 1L);
+            buckets = Arrays.copyOf(buckets, capacity);
+            nextSlots = Arrays.copyOf(nextSlots, capacity);
         }
+        return slotCount++;
+    }
 
-        final PoolBucket firstBucket = poolMap.get(poolFirst);
-        final PoolBucket secondBucket = poolMap.get(poolSecond);
+    /**
+     * @return текущее поколение реестра, бассейн запоминает его при регистрации
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Проверить что бассейн, зарегистрированный в поколении {@code generation}, еще принадлежит оркестратору
+     *
+     * @throws IllegalStateException если оркестратор закрыт или сброшен после регистрации бассейна
+     */
+    public void ensureGeneration(int generation) {
+        if (generation != this.generation) {
+            ensureOpen();
+            throw new IllegalStateException("Бассейн зарегистрирован до сброса оркестратора");
+        }
+    }
+
+    /**
+     * @return колличество выданных слотов с последнего сброса, то есть текущий размер реестра
+     */
+    public int getPoolCount() {
+        return slotCount;
+    }
+
+    /**
+     * Отбросить все бассейны и сети, после сброса оркестратор можно использовать заново,
+     * а память реестра возвращается к начальному размеру
+     */
+    public void reset() {
+        ensureOpen();
+
+        buckets = new PoolBucket[DEFAULT_CAPACITY];
+        nextSlots = new int[DEFAULT_CAPACITY];
+        slotCount = 0;
+        generation++;
+    }
+
+    /**
+     * Освободить реестр, после закрытия бассейны оркестратора использовать нельзя, повторный вызов ничего не делает
+     */
+    @Override
+    public void close() {
+        if (buckets == null) return;
+
+        buckets = null;
+        nextSlots = null;
+        slotCount = 0;
+        generation++;
+    }
+
+    /**
+     * Соеденить две сети бассейнов
+     *
+     * @param firstSlot   слот первого бассейна
+     * @param firstWater  вода первого бассейна, учитывается только если он еще не в сети
+     * @param secondSlot  слот второго бассейна
+     * @param secondWater вода второго бассейна, учитывается только если он еще не в сети
+     */
+    public void mergePools(int firstSlot, long firstWater, int secondSlot, long secondWater) {
+        if (firstSlot == secondSlot) return;
+
+        final PoolBucket firstBucket = buckets[firstSlot];
+        final PoolBucket secondBucket = buckets[secondSlot];
 
         if (firstBucket == null && secondBucket != null) {
-            addNewPoolToOld(poolFirst, secondBucket);
+            addNewPoolToOld(firstSlot, firstWater, secondBucket);
         } else if (secondBucket == null && firstBucket != null) {
-            addNewPoolToOld(poolSecond, firstBucket);
-            //хак для обноаления флага состояния во втором бассейне
-            poolSecond.connect(poolSecond);
+            addNewPoolToOld(secondSlot, secondWater, firstBucket);
         } else if (firstBucket == null) {
-            addTwoNewPools(poolFirst, poolSecond);
-            //хак для обноаления флага состояния во втором бассейне
-            poolSecond.connect(poolSecond);
+            addTwoNewPools(firstSlot, firstWater, secondSlot, secondWater);
         } else {
             if (firstBucket == secondBucket) return;
 
@@ -44,44 +142,35 @@ public final class PoolsOrchestrator {
         }
     }
 
-    private void addNewPool(IPool pool) {
-        PoolBucket poolBucket = new PoolBucket(pool.measure());
-        poolBucket.addPool(pool);
-        poolMap.put(pool, poolBucket);
-    }
-
     /**
      * Соединение 2 неизвестных бассейнов
      */
-    private void addTwoNewPools(IPool poolFirst, IPool poolSecond) {
-        PoolBucket poolBucket = new PoolBucket(poolFirst.measure());
-        poolBucket.addWaterWithPool(poolSecond.measure());
-        poolBucket.addPool(poolFirst);
-        poolBucket.addPool(poolSecond);
-        poolMap.put(poolFirst, poolBucket);
-        poolMap.put(poolSecond, poolBucket);
+    private void addTwoNewPools(int firstSlot, long firstWater, int secondSlot, long secondWater) {
+        PoolBucket poolBucket = new PoolBucket(firstWater);
+        poolBucket.addWaterWithPool(secondWater);
+        appendPool(poolBucket, firstSlot);
+        appendPool(poolBucket, secondSlot);
+        buckets[firstSlot] = poolBucket;
+        buckets[secondSlot] = poolBucket;
     }
 
     /**
      * Присоединение нового бассейна к сети
      */
-    private void addNewPoolToOld(IPool newPool, PoolBucket oldBucket) {
-        oldBucket.addPool(newPool);
-        poolMap.put(newPool, oldBucket);
-        oldBucket.addWaterWithPool(newPool.measure());
+    private void addNewPoolToOld(int newSlot, long newWater, PoolBucket oldBucket) {
+        appendPool(oldBucket, newSlot);
+        buckets[newSlot] = oldBucket;
+        oldBucket.addWaterWithPool(newWater);
     }
 
     /**
      * Соединение 2 сетей бассейнов
      */
     private void mergeOldPools(PoolBucket firstBucket, PoolBucket secondBucket) {
-        final LinkedList<WeakReference<IPool>> secondBucketArray = secondBucket.getPoolList();
-        final LinkedList<WeakReference<IPool>> firstBucketArray = firstBucket.getPoolList();
-
-        if (secondBucketArray.size() > firstBucketArray.size()) {
-            optimizedMergePool(firstBucket, secondBucket, firstBucketArray, secondBucketArray);
+        if (secondBucket.sizeOfPoolList() > firstBucket.sizeOfPoolList()) {
+            optimizedMergePool(firstBucket, secondBucket);
         } else {
-            optimizedMergePool(secondBucket, firstBucket, secondBucketArray, firstBucketArray);
+            optimizedMergePool(secondBucket, firstBucket);
         }
     }
 
@@ -90,44 +179,52 @@ public final class PoolsOrchestrator {
      *
      * @param smallerBucket бакет соответствующий меньшему числу бассейнов
      * @param biggerBucket  бакет соответствующий большему числу бассейнов
-     * @param smallerArray  список бассейнов {@code smallerBucket}
-     * @param biggerArray   список бассейнов {@code smallerBucket}
-     */
-    private void optimizedMergePool(
-            PoolBucket smallerBucket,
-            PoolBucket biggerBucket,
-            LinkedList<WeakReference<IPool>> smallerArray,
-            LinkedList<WeakReference<IPool>> biggerArray
-    ) {
+     */
+    private void optimizedMergePool(PoolBucket smallerBucket, PoolBucket biggerBucket) {
         biggerBucket.mergeBuckets(smallerBucket);
 
-        for (WeakReference<IPool> pool : smallerArray) {
-            biggerArray.add(pool);
-            IPool poolRef = pool.get();
-            if (poolRef != null) poolMap.put(poolRef, biggerBucket);
+        int slot = smallerBucket.getFirstPoolSlot();
+        for (int i = 0; i < smallerBucket.sizeOfPoolList(); i++) {
+            buckets[slot] = biggerBucket;
+            slot = nextSlots[slot];
         }
 
-        smallerArray.clear();
+        nextSlots[biggerBucket.getLastPoolSlot()] = smallerBucket.getFirstPoolSlot();
+        biggerBucket.appendPools(smallerBucket.getFirstPoolSlot(), smallerBucket.getLastPoolSlot(), smallerBucket.sizeOfPoolList());
+        smallerBucket.clearPools();
+    }
+
+    private void ensureOpen() {
+        if (buckets == null) throw new IllegalStateException("Оркестратор закрыт");
+    }
+
+    /**
+     * Дописать бассейн в конец цепочки сети
+     */
+    private void appendPool(PoolBucket bucket, int slot) {
+        if (bucket.sizeOfPoolList() != 0) nextSlots[bucket.getLastPoolSlot()] = slot;
+        bucket.appendPools(slot, slot, 1);
     }
 
     /**
-     * Получить колличество воды в бассейне
+     * Получить колличество воды в бассейне, бассейн должен быть в сети
      */
-    public long measurePool(IPool pool) {
-        return poolMap.get(pool).getAmountOfWater();
+    public long measurePool(int slot) {
+        return buckets[slot].getAmountOfWater();
     }
 
     /**
      * Проверить соеденены ли бассейны каналами
      */
-    public Boolean arePoolConnected(IPool poolFirst, IPool poolSecond) {
-        return poolMap.get(poolFirst) == poolMap.get(poolSecond);
+    public boolean arePoolConnected(int firstSlot, int secondSlot) {
+        final PoolBucket bucket = buckets[firstSlot];
+        return bucket != null && bucket == buckets[secondSlot];
     }
 
     /**
-     * Добавить воды в бассейн
+     * Добавить воды в бассейн, бассейн должен быть в сети
      */
-    public void addWaterToPool(IPool pool, long water) {
-        poolMap.get(pool).addWater(water);
+    public void addWaterToPool(int slot, long water) {
+        buckets[slot].addWater(water);
     }
 }
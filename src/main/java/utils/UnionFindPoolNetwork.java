@@ -0,0 +1,305 @@
+package utils;
+
+import interfaces.IPoolNetwork;
+import metrics.PoolMetrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Сеть бассейнов на основе системы непересекающихся множеств (union-find) поверх плоских массивов
+ * <p>
+ * Каждый бассейн представлен индексом, вся информация о сети хранится в трех массивах:
+ * {@code parent} - ссылка на родителя в дереве компоненты, {@code size} - колличество бассейнов в компоненте,
+ * {@code water} - колличество воды в каждом бассейне компоненты, {@code size} и {@code water} актуальны только для корня
+ * <p>
+ * При соединении меньшее дерево подвешивается к большему, при поиске корня путь сжимается,
+ * поэтому {@code connect}, {@code add} и {@code measure} выполняются за почти константное время,
+ * а на один бассейн приходится 16 байт без учета объекта-обертки {@code IPool}
+ * <p>
+ * Большие пакеты каналов можно соединить параллельно через {@link #connectAllParallel(int[], int[])}
+ */
+public final class UnionFindPoolNetwork implements IPoolNetwork {
+
+    /**
+     * Начальный размер массивов, если он не задан явно
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Максимальный размер массива, который гарантированно может выделить jvm
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Пакеты каналов меньше этого размера соединяются последовательно, параллелить их дороже чем соединять
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Ссылка на родителя в дереве компоненты, для корня ссылается сам на себя
+     */
+    private int[] parent;
+
+    /**
+     * Колличество бассейнов в компоненте, актуально только для корня
+     */
+    private int[] size;
+
+    /**
+     * Колличество воды в каждом бассейне компоненты, актуально только для корня
+     */
+    private long[] water;
+
+    /**
+     * Колличество созданных бассейнов
+     */
+    private int poolCount = 0;
+
+    public UnionFindPoolNetwork() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity ожидаемое колличество бассейнов, позволяет избежать перевыделения массивов
+     */
+    public UnionFindPoolNetwork(int initialCapacity) {
+        final int capacity = Math.max(initialCapacity, 1);
+        parent = new int[capacity];
+        size = new int[capacity];
+        water = new long[capacity];
+    }
+
+    /**
+     * Создать новый бассейн
+     *
+     * @return индекс созданного бассейна
+     */
+    @Override
+    public int create() {
+        if (poolCount == parent.length) grow();
+
+        final int pool = poolCount++;
+        parent[pool] = pool;
+        size[pool] = 1;
+        return pool;
+    }
+
+    /**
+     * Создать {@code count} новых бассейнов с последовательными индексами
+     *
+     * @return индекс первого созданного бассейна
+     */
+    @Override
+    public int create(int count) {
+        if (count < 0) throw new IllegalArgumentException("Отрицательное колличество бассейнов: " + count);
+        if (count > MAX_CAPACITY - poolCount) {
+            throw new IllegalStateException("Достигнуто максимальное колличество бассейнов в сети: " + MAX_CAPACITY);
+        }
+
+        while (poolCount + count > parent.length) grow();
+
+        final int first = poolCount;
+        for (int pool = first; pool < first + count; pool++) {
+            parent[pool] = pool;
+            size[pool] = 1;
+        }
+        poolCount += count;
+        return first;
+    }
+
+    /**
+     * @return колличество созданных бассейнов
+     */
+    @Override
+    public int getPoolCount() {
+        return poolCount;
+    }
+
+    /**
+     * Получить колличество воды в бассейне
+     */
+    @Override
+    public long measure(int pool) {
+        return water[find(Objects.checkIndex(pool, poolCount))];
+    }
+
+    /**
+     * Добавить воды в бассейн, вода равномерно распределяется по всей компоненте
+     */
+    @Override
+    public void add(int pool, long amount) {
+        Objects.checkIndex(pool, poolCount);
+        if (amount == 0) return;
+
+        final int root = find(pool);
+        water[root] = WaterArithmetic.DEFAULT.addToLevel(water[root], amount, size[root]);
+    }
+
+    /**
+     * Соеденить две сети бассейнов, меньшая компонента подвешивается к большей
+     */
+    @Override
+    public void connect(int first, int second) {
+        int firstRoot = find(Objects.checkIndex(first, poolCount));
+        int secondRoot = find(Objects.checkIndex(second, poolCount));
+
+        if (firstRoot == secondRoot) return;
+
+        if (size[firstRoot] < size[secondRoot]) {
+            final int tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+
+        water[firstRoot] = WaterArithmetic.DEFAULT.weightedAverage(water[firstRoot], size[firstRoot], water[secondRoot], size[secondRoot]);
+        size[firstRoot] += size[secondRoot];
+        parent[secondRoot] = firstRoot;
+        if (PoolMetrics.ENABLED) PoolMetrics.GLOBAL.recordMerge(size[firstRoot]);
+        water[secondRoot] = 0;
+    }
+
+    /**
+     * Соеденить пары бассейнов {@code first[i]} и {@code second[i]} используя все ядра {@code ForkJoinPool}
+     * <p>
+     * Соединение выполняется в три шага: параллельно отмечаются корни компонент, которые затронет пакет,
+     * затем параллельно строятся новые компоненты через CAS над {@code parent}, при этом корень с большим индексом
+     * подвешивается к корню с меньшим, и наконец старые корни в порядке возрастания индекса последовательно
+     * вливаются в новые корни той же формулой, что и в {@code connect} и {@code PoolBucket.mergeBuckets}.
+     * Результат зависит только от состояния сети и множества каналов, но не от планирования потоков
+     * <p>
+     * Сеть не потокобезопасна, во время вызова ее нельзя использовать из других потоков
+     *
+     * @param first  индексы первых бассейнов каналов
+     * @param second индексы вторых бассейнов каналов, параллельный {@code first} массив
+     */
+    @Override
+    public void connectAllParallel(int[] first, int[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Длины массивов не совпадают: " + first.length + " и " + second.length);
+        }
+
+        if (first.length < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < first.length; i++) {
+                connect(Objects.checkIndex(first[i], poolCount), Objects.checkIndex(second[i], poolCount));
+            }
+            return;
+        }
+
+        final int[] parent = this.parent;
+        final long[] oldRoots = new long[(poolCount + Long.SIZE - 1) >>> 6];
+
+        //до первого подвешивания дерево не меняется, поэтому корни ищутся без сжатия и без синхронизации
+        IntStream.range(0, first.length).parallel().forEach(i -> {
+            markRoot(oldRoots, findWithoutCompression(parent, Objects.checkIndex(first[i], poolCount)));
+            markRoot(oldRoots, findWithoutCompression(parent, Objects.checkIndex(second[i], poolCount)));
+        });
+
+        IntStream.range(0, first.length).parallel().forEach(i -> unionConcurrently(parent, first[i], second[i]));
+
+        for (int word = 0; word < oldRoots.length; word++) {
+            for (long bits = oldRoots[word]; bits != 0; bits &= bits - 1) {
+                final int oldRoot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                final int root = find(oldRoot);
+                if (root == oldRoot) continue;
+
+                //новый корень меньше старого, поэтому он уже вобрал воду всех предыдущих старых корней
+                water[root] = WaterArithmetic.DEFAULT.weightedAverage(water[root], size[root], water[oldRoot], size[oldRoot]);
+                size[root] += size[oldRoot];
+                water[oldRoot] = 0;
+            }
+        }
+    }
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    @Override
+    public boolean isConnected(int first, int second) {
+        return find(Objects.checkIndex(first, poolCount)) == find(Objects.checkIndex(second, poolCount));
+    }
+
+    private static void markRoot(long[] roots, int root) {
+        final int word = root >>> 6;
+        final long bit = 1L << root;
+        if (((long) LONG_ARRAY.getOpaque(roots, word) & bit) == 0) {
+            LONG_ARRAY.getAndBitwiseOr(roots, word, bit);
+        }
+    }
+
+    private static int findWithoutCompression(int[] parent, int pool) {
+        while (parent[pool] != pool) {
+            pool = parent[pool];
+        }
+        return pool;
+    }
+
+    /**
+     * Поиск корня с делением пути пополам, безопасный при одновременных {@link #unionConcurrently}
+     */
+    private static int findConcurrently(int[] parent, int pool) {
+        while (true) {
+            final int next = (int) INT_ARRAY.getAcquire(parent, pool);
+            if (next == pool) return pool;
+
+            final int grandParent = (int) INT_ARRAY.getAcquire(parent, next);
+            if (next != grandParent) INT_ARRAY.compareAndSet(parent, pool, next, grandParent);
+            pool = grandParent;
+        }
+    }
+
+    /**
+     * Соединение без блокировок: корень с большим индексом подвешивается к корню с меньшим, поэтому циклов не возникает
+     */
+    private static void unionConcurrently(int[] parent, int first, int second) {
+        while (true) {
+            final int firstRoot = findConcurrently(parent, first);
+            final int secondRoot = findConcurrently(parent, second);
+
+            if (firstRoot == secondRoot) return;
+
+            final int root = Math.min(firstRoot, secondRoot);
+            final int child = Math.max(firstRoot, secondRoot);
+            if (INT_ARRAY.compareAndSet(parent, child, child, root)) return;
+        }
+    }
+
+    /**
+     * Поиск корня компоненты со сжатием пути, реализован без рекурсии
+     */
+    private int find(int pool) {
+        int root = pool;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+
+        while (parent[pool] != root) {
+            final int next = parent[pool];
+            parent[pool] = root;
+            pool = next;
+        }
+
+        return root;
+    }
+
+    /**
+     * Увеличить массивы в полтора раза
+     */
+    private void grow() {
+        if (parent.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Достигнуто максимальное колличество бассейнов в сети: " + MAX_CAPACITY);
+        }
+
+        final int capacity = (int) Math.min(MAX_CAPACITY, parent.length + (parent.length >> 1) + 1L);
+        parent = Arrays.copyOf(parent, capacity);
+        size = Arrays.copyOf(size, capacity);
+        water = Arrays.copyOf(water, capacity);
+    }
+}
@@ -0,0 +1,175 @@
+package utils;
+
+/**
+ * Общая арифметика объемов воды для всех имплементаций бассейнов
+ * <p>
+ * Пересчет воды при слиянии сетей это взвешенное среднее {@code (a * n1 + b * n2) / (n1 + n2)},
+ * промежуточная сумма считается в 128 битах через {@code Math.multiplyHigh}, поэтому в отличие от
+ * прежнего отката на {@code BigInteger} расчет никогда не выделяет память. Что делать при переполнении лонга
+ * определяет {@link WaterOverflowPolicy}
+ * <p>
+ * Политика по умолчанию {@link WaterOverflowPolicy#EXACT_128}, ее можно переопределить системным свойством
+ * {@value #POLICY_PROPERTY}, значение свойства читается один раз при загрузке класса
+ */
+public final class WaterArithmetic {
+
+    /**
+     * Системное свойство с именем политики по умолчанию
+     */
+    public static final String POLICY_PROPERTY = "pools.water.overflowPolicy";
+
+    private static final WaterArithmetic[] INSTANCES = createInstances();
+
+    /**
+     * Арифметика с политикой по умолчанию, ее используют все имплементации бассейнов
+     */
+    public static final WaterArithmetic DEFAULT = of(WaterOverflowPolicy.valueOf(
+            System.getProperty(POLICY_PROPERTY, WaterOverflowPolicy.EXACT_128.name())
+    ));
+
+    private static final long DIGIT_BASE = 1L << 32;
+
+    private static final long DIGIT_MASK = DIGIT_BASE - 1;
+
+    private final WaterOverflowPolicy policy;
+
+    private WaterArithmetic(WaterOverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return арифметика с политикой {@code policy}
+     */
+    public static WaterArithmetic of(WaterOverflowPolicy policy) {
+        return INSTANCES[policy.ordinal()];
+    }
+
+    /**
+     * Геттер для {@code policy}
+     */
+    public WaterOverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Расчитывает новое значени объема воды при слиянии двух сетей
+     *
+     * @param firstAmount  объем воды в первой сети
+     * @param firstSize    размер первой сети, положительный
+     * @param secondAmount объем воды во второй сети
+     * @param secondSize   размер второй сети, положительный
+     * @return объем воды в объедененной сети, округленный к нулю
+     */
+    public long weightedAverage(long firstAmount, long firstSize, long secondAmount, long secondSize) {
+        final long meshSize = firstSize + secondSize;
+
+        final long firstLow = firstAmount * firstSize;
+        final long secondLow = secondAmount * secondSize;
+        final long low = firstLow + secondLow;
+        final long high = Math.multiplyHigh(firstAmount, firstSize)
+                + Math.multiplyHigh(secondAmount, secondSize)
+                + (Long.compareUnsigned(low, firstLow) < 0 ? 1 : 0);
+
+        //сумма влезает в лонг
+        if (high == (low >> 63)) return low / meshSize;
+
+        switch (policy) {
+            case SATURATE:
+                //среднее не выходит за пределы исходных объемов, поэтому обрезаем до ближайшей из границ
+                return high < 0 ? Math.min(firstAmount, secondAmount) : Math.max(firstAmount, secondAmount);
+            case THROW:
+                throw new ArithmeticException("Переполнение лонга при пересчете объема воды");
+            default:
+                return divide(high, low, meshSize);
+        }
+    }
+
+    /**
+     * Добавить воду, равномерно распределенную по сети
+     *
+     * @param level  объем воды в каждом бассейне сети
+     * @param amount добавляемый объем воды
+     * @param size   размер сети, положительный
+     * @return новый объем воды в каждом бассейне сети
+     */
+    public long addToLevel(long level, long amount, long size) {
+        return add(level, amount / size);
+    }
+
+    /**
+     * Сложить два объема воды
+     */
+    public long add(long first, long second) {
+        final long sum = first + second;
+        if (((first ^ sum) & (second ^ sum)) >= 0) return sum;
+
+        if (policy == WaterOverflowPolicy.THROW) {
+            throw new ArithmeticException("Переполнение лонга при добавлении воды");
+        }
+        return second < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    /**
+     * Деление знакового 128 битного числа {@code high:low} на положительный делитель с округлением к нулю,
+     * частное обязано помещаться в лонг, что для взвешенного среднего всегда верно
+     */
+    private static long divide(long high, long low, long divisor) {
+        final boolean isNegative = high < 0;
+        if (isNegative) {
+            low = -low;
+            high = ~high + (low == 0 ? 1 : 0);
+        }
+
+        final long quotient = divideUnsigned(high, low, divisor);
+        return isNegative ? -quotient : quotient;
+    }
+
+    /**
+     * Беззнаковое деление 128 битного числа на 64 битное по двум 32 битным цифрам (алгоритм D Кнута),
+     * требует чтобы {@code high} был меньше {@code divisor} как беззнаковые числа
+     */
+    private static long divideUnsigned(long high, long low, long divisor) {
+        //нормализуем делитель так, чтобы старший бит был выставлен
+        final int shift = Long.numberOfLeadingZeros(divisor);
+        divisor <<= shift;
+        final long dividendHigh = shift == 0 ? high : (high << shift) | (low >>> (Long.SIZE - shift));
+        final long dividendLow = low << shift;
+
+        final long divisorHigh = divisor >>> 32;
+        final long divisorLow = divisor & DIGIT_MASK;
+        final long dividendLowHigh = dividendLow >>> 32;
+        final long dividendLowLow = dividendLow & DIGIT_MASK;
+
+        final long quotientHigh = quotientDigit(dividendHigh, dividendLowHigh, divisorHigh, divisorLow);
+        final long remainder = (dividendHigh << 32) + dividendLowHigh - quotientHigh * divisor;
+        final long quotientLow = quotientDigit(remainder, dividendLowLow, divisorHigh, divisorLow);
+
+        return (quotientHigh << 32) | quotientLow;
+    }
+
+    /**
+     * Очередная 32 битная цифра частного от деления {@code dividend * 2^32 + nextDigit} на нормализованный делитель
+     */
+    private static long quotientDigit(long dividend, long nextDigit, long divisorHigh, long divisorLow) {
+        long digit = Long.divideUnsigned(dividend, divisorHigh);
+        long remainder = dividend - digit * divisorHigh;
+
+        while (Long.compareUnsigned(digit, DIGIT_BASE) >= 0
+                || Long.compareUnsigned(digit * divisorLow, (remainder << 32) + nextDigit) > 0) {
+            digit--;
+            remainder += divisorHigh;
+            if (Long.compareUnsigned(remainder, DIGIT_BASE) >= 0) break;
+        }
+
+        return digit;
+    }
+
+    private static WaterArithmetic[] createInstances() {
+        final WaterOverflowPolicy[] policies = WaterOverflowPolicy.values();
+        final WaterArithmetic[] instances = new WaterArithmetic[policies.length];
+        for (WaterOverflowPolicy policy : policies) {
+            instances[policy.ordinal()] = new WaterArithmetic(policy);
+        }
+        return instances;
+    }
+}
@@ -0,0 +1,26 @@
+package utils;
+
+/**
+ * Политика обработки переполнения лонга при расчетах объема воды, см. {@link WaterArithmetic}
+ */
+public enum WaterOverflowPolicy {
+
+    /**
+     * Результат {@code add}, не влезающий в лонг, обрезается до {@code Long.MIN_VALUE}/{@code Long.MAX_VALUE}.
+     * Если при слиянии сетей не влезает в лонг промежуточная сумма, то результатом становится больший из объемов
+     * при положительном переполнении и меньший при отрицательном, пересчет воды при слиянии огромных сетей
+     * становится приближенным, зато обходится без 128 битного деления
+     */
+    SATURATE,
+
+    /**
+     * Пересчет воды при слиянии сетей выполняется точно через 128 битные промежуточные значения,
+     * результат {@code add}, не влезающий в лонг, обрезается до {@code Long.MIN_VALUE}/{@code Long.MAX_VALUE}
+     */
+    EXACT_128,
+
+    /**
+     * Любое переполнение приводит к {@code ArithmeticException}
+     */
+    THROW
+}
@@ -0,0 +1,430 @@
+package wal;
+
+import interfaces.IPoolNetwork;
+import trace.TraceFormat;
+import utils.NetworkDelta;
+import utils.NetworkSnapshot;
+import utils.OffHeapPoolNetwork;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Сеть бассейнов, переживающая падение процесса: {@link OffHeapPoolNetwork} в памяти
+ * плюс снимки и журнал упреждающей записи в каталоге
+ * <p>
+ * Каталог содержит поколения файлов {@code snapshot-N} и {@code wal-N}. Снимок поколения N согласован
+ * с концом журналов поколений меньше N, поэтому восстановление открывает последний полный снимок
+ * через отображение в память и проигрывает журналы начиная с его поколения. Если снимков еще нет,
+ * журналы проигрываются с пустой сети
+ * <p>
+ * {@link #checkpoint()} закрывает текущий журнал, открывает журнал следующего поколения и запускает снимок
+ * в фоне, файлы старых поколений удаляются только после того, как новый снимок полностью записан.
+ * Операции становятся надежными в пределах окна журнала, см. {@link WriteAheadLog}
+ * <p>
+ * Контрольная точка обычно пишет инкрементальный снимок {@code delta-N} только с измененными страницами сети,
+ * так что ее стоимость зависит от колличества изменений, а не от размера сети. Восстановление применяет к последнему
+ * полному снимку все инкрементальные снимки после него, поэтому когда их суммарный объем вместе с новыми изменениями
+ * достигает размера сети, вместо инкрементального пишется полный снимок, и старые файлы удаляются
+ * <p>
+ * Если снимок не удалось записать, файлы старых поколений остаются на месте и восстановление проигрывает их журналы.
+ * Инкрементальный снимок пишется только следующим поколением сразу за последним записанным снимком, поэтому после
+ * неудавшегося снимка, в том числе уже после перезапуска, следующая контрольная точка пишет полный снимок
+ * <p>
+ * Сеть не потокобезопасна, как и {@link OffHeapPoolNetwork}
+ */
+public final class DurablePoolNetwork implements Closeable, IPoolNetwork {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String DELTA_PREFIX = "delta-";
+
+    private static final String WAL_PREFIX = "wal-";
+
+    private static final int REPLAY_BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    private final Duration durabilityWindow;
+
+    private final OffHeapPoolNetwork network;
+
+    private WriteAheadLog log;
+
+    /**
+     * Поколение текущего журнала
+     */
+    private long generation;
+
+    /**
+     * Поколение последнего полного снимка, 0 если снимков еще нет
+     */
+    private long snapshotGeneration;
+
+    /**
+     * Суммарный объем инкрементальных снимков после последнего полного в байтах
+     */
+    private long deltaBytes;
+
+    /**
+     * Поколение начатой контрольной точки
+     */
+    private long pendingGeneration;
+
+    /**
+     * Поколение последнего записанного снимка, полного или инкрементального, 0 если снимков еще нет
+     */
+    private long checkpointGeneration;
+
+    /**
+     * Полный снимок последней контрольной точки, {@code null} если он уже записан и файлы старых поколений удалены
+     */
+    private NetworkSnapshot pendingSnapshot = null;
+
+    /**
+     * Инкрементальный снимок последней контрольной точки, {@code null} если он уже записан и старые журналы удалены
+     */
+    private NetworkDelta pendingDelta = null;
+
+    private DurablePoolNetwork(
+            Path directory,
+            Duration durabilityWindow,
+            OffHeapPoolNetwork network,
+            long generation,
+            long snapshotGeneration,
+            long checkpointGeneration,
+            long deltaBytes
+    ) throws IOException {
+        this.directory = directory;
+        this.durabilityWindow = durabilityWindow;
+        this.network = network;
+        this.generation = generation;
+        this.snapshotGeneration = snapshotGeneration;
+        this.checkpointGeneration = checkpointGeneration;
+        this.deltaBytes = deltaBytes;
+        this.log = openLog(generation);
+    }
+
+    public static DurablePoolNetwork open(Path directory) throws IOException {
+        return open(directory, WriteAheadLog.DEFAULT_DURABILITY_WINDOW);
+    }
+
+    /**
+     * Открыть сеть из каталога, восстановив ее из последнего полного снимка, инкрементальных снимков после него и хвоста журнала
+     *
+     * @param directory        каталог сети, создается если его нет
+     * @param durabilityWindow окно групповой фиксации журнала
+     * @throws IOException если файлы сети повреждены или недоступны
+     */
+    public static DurablePoolNetwork open(Path directory, Duration durabilityWindow) throws IOException {
+        Files.createDirectories(directory);
+
+        long snapshotGeneration = 0;
+        final List<Long> deltaGenerations = new ArrayList<>();
+        final List<Long> logGenerations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    //недописанный снимок
+                    Files.delete(file);
+                } else if (name.startsWith(SNAPSHOT_PREFIX)) {
+                    snapshotGeneration = Math.max(snapshotGeneration, parseGeneration(name, SNAPSHOT_PREFIX));
+                } else if (name.startsWith(DELTA_PREFIX)) {
+                    deltaGenerations.add(parseGeneration(name, DELTA_PREFIX));
+                } else if (name.startsWith(WAL_PREFIX)) {
+                    logGenerations.add(parseGeneration(name, WAL_PREFIX));
+                }
+            }
+        }
+        deltaGenerations.sort(null);
+        logGenerations.sort(null);
+
+        final OffHeapPoolNetwork network = snapshotGeneration == 0
+                ? new OffHeapPoolNetwork()
+                : OffHeapPoolNetwork.open(directory.resolve(SNAPSHOT_PREFIX + snapshotGeneration));
+
+        long generation = snapshotGeneration;
+        long deltaBytes = 0;
+        try {
+            for (long deltaGeneration : deltaGenerations) {
+                if (deltaGeneration <= snapshotGeneration) continue;
+                if (deltaGeneration != generation + 1) throw new IOException("Пропущен инкрементальный снимок поколения " + (generation + 1));
+
+                final Path delta = directory.resolve(DELTA_PREFIX + deltaGeneration);
+                network.applyDelta(delta);
+                deltaBytes += Files.size(delta);
+                generation = deltaGeneration;
+            }
+
+            final long baseGeneration = generation;
+            for (long logGeneration : logGenerations) {
+                if (logGeneration < baseGeneration) continue;
+
+                replay(network, directory.resolve(WAL_PREFIX + logGeneration));
+                generation = logGeneration;
+            }
+
+            final DurablePoolNetwork durableNetwork = new DurablePoolNetwork(
+                    directory, durabilityWindow, network, generation, snapshotGeneration, baseGeneration, deltaBytes
+            );
+            durableNetwork.deleteObsolete(baseGeneration);
+            return durableNetwork;
+        } catch (IOException | RuntimeException exception) {
+            network.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Создать новый бассейн
+     *
+     * @return индекс созданного бассейна
+     */
+    @Override
+    public int create() {
+        return create(1);
+    }
+
+    /**
+     * Создать {@code count} новых бассейнов с последовательными индексами
+     *
+     * @return индекс первого созданного бассейна
+     */
+    @Override
+    public int create(int count) {
+        final int first = network.create(count);
+        for (int i = 0; i < count; i++) {
+            log.create(first + i);
+        }
+        return first;
+    }
+
+    /**
+     * @return колличество созданных бассейнов
+     */
+    @Override
+    public int getPoolCount() {
+        return network.getPoolCount();
+    }
+
+    /**
+     * Получить колличество воды в бассейне
+     */
+    @Override
+    public long measure(int pool) {
+        return network.measure(pool);
+    }
+
+    /**
+     * Добавить воды в бассейн, операция записывается в журнал
+     */
+    @Override
+    public void add(int pool, long amount) {
+        //несуществующий бассейн не должен попасть в журнал, иначе каталог не восстановится
+        Objects.checkIndex(pool, network.getPoolCount());
+        if (amount == 0) return;
+
+        log.add(pool, amount);
+        network.add(pool, amount);
+    }
+
+    /**
+     * Соеденить две сети бассейнов, операция записывается в журнал
+     */
+    @Override
+    public void connect(int first, int second) {
+        if (network.isConnected(first, second)) return;
+
+        log.connect(first, second);
+        network.connect(first, second);
+    }
+
+    /**
+     * Проверить соеденены ли бассейны каналами
+     */
+    @Override
+    public boolean isConnected(int first, int second) {
+        return network.isConnected(first, second);
+    }
+
+    /**
+     * Дождаться фиксации на диске всех выполненных операций
+     */
+    public void sync() throws IOException {
+        log.sync();
+    }
+
+    /**
+     * Начать контрольную точку: журнал переключается на новое поколение, а снимок сети пишется в фоне.
+     * Если предыдущая контрольная точка еще не закончилась, то метод сначала дожидается ее
+     *
+     * @throws IOException если не удалось записать снимок предыдущей контрольной точки или начать новый,
+     *                     файлы для восстановления при этом не удаляются
+     */
+    public void checkpoint() throws IOException {
+        completeCheckpoint();
+
+        log.close();
+        generation++;
+        log = openLog(generation);
+
+        //пропущенное поколение значит, что снимок не записался и изменения его страниц потеряны
+        final long dirtyBytes = network.getDirtyBytes();
+        if (snapshotGeneration == 0 || generation != checkpointGeneration + 1
+                || deltaBytes + dirtyBytes >= network.getAllocatedBytes()) {
+            pendingSnapshot = network.snapshot(directory.resolve(SNAPSHOT_PREFIX + generation));
+        } else {
+            pendingDelta = network.snapshotDelta(directory.resolve(DELTA_PREFIX + generation));
+        }
+        pendingGeneration = generation;
+    }
+
+    /**
+     * Дождаться окончания последней контрольной точки и удалить файлы, которые больше не нужны для восстановления
+     *
+     * @throws IOException если снимок не удалось записать, тогда старые файлы остаются,
+     *                     а следующая контрольная точка пишет полный снимок
+     */
+    public void completeCheckpoint() throws IOException {
+        if (pendingSnapshot != null) {
+            final NetworkSnapshot snapshot = pendingSnapshot;
+            pendingSnapshot = null;
+            snapshot.await();
+            snapshotGeneration = pendingGeneration;
+            checkpointGeneration = pendingGeneration;
+            deltaBytes = 0;
+            deleteObsolete(pendingGeneration);
+        }
+        if (pendingDelta != null) {
+            final NetworkDelta delta = pendingDelta;
+            pendingDelta = null;
+            delta.await();
+            checkpointGeneration = pendingGeneration;
+            deltaBytes += delta.getByteSize();
+            deleteObsolete(pendingGeneration);
+        }
+    }
+
+    /**
+     * Зафиксировать журнал, дописать начатый снимок и освободить память сети
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            log.close();
+            completeCheckpoint();
+        } finally {
+            network.close();
+        }
+    }
+
+    private WriteAheadLog openLog(long generation) throws IOException {
+        return new WriteAheadLog(directory.resolve(WAL_PREFIX + generation), durabilityWindow, WriteAheadLog.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Удалить снимки до последнего полного и журналы до поколения {@code baseGeneration}, с которого начинается проигрывание
+     */
+    private void deleteObsolete(long baseGeneration) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && parseGeneration(name, SNAPSHOT_PREFIX) < snapshotGeneration
+                        || name.startsWith(DELTA_PREFIX) && parseGeneration(name, DELTA_PREFIX) <= snapshotGeneration
+                        || name.startsWith(WAL_PREFIX) && parseGeneration(name, WAL_PREFIX) < baseGeneration) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проиграть журнал на сети, недописанная последняя запись после падения отрезается от файла
+     */
+    private static void replay(OffHeapPoolNetwork network, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(REPLAY_BUFFER_SIZE).order(TraceFormat.BYTE_ORDER);
+            long position = 0;
+
+            readAtLeast(channel, buffer, TraceFormat.HEADER_SIZE);
+            if (buffer.remaining() < TraceFormat.HEADER_SIZE) {
+                //журнал упал до записи заголовка, в нем нет операций
+                channel.truncate(0);
+                return;
+            }
+            if (buffer.getInt() != TraceFormat.MAGIC || buffer.getInt() != TraceFormat.VERSION) {
+                throw new IOException("Файл не является журналом сети: " + path);
+            }
+            position += TraceFormat.HEADER_SIZE;
+
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    if (channel.read(buffer) <= 0) break;
+                    buffer.flip();
+                }
+
+                final byte operation = buffer.get(buffer.position());
+                final int recordSize = TraceFormat.recordSize(operation);
+                if (recordSize < 0) throw new IOException("Неизвестная операция " + operation + " в журнале " + path + " на позиции " + position);
+
+                if (buffer.remaining() < recordSize) {
+                    buffer.compact();
+                    channel.read(buffer);
+                    buffer.flip();
+                    if (buffer.remaining() < recordSize) break;
+                }
+
+                buffer.get();
+                switch (operation) {
+                    case TraceFormat.CREATE:
+                        final int pool = buffer.getInt();
+                        if (network.create() != pool) throw new IOException("Журнал " + path + " не соответствует снимку");
+                        break;
+                    case TraceFormat.CONNECT:
+                        network.connect(checkPool(network, buffer.getInt(), path), checkPool(network, buffer.getInt(), path));
+                        break;
+                    case TraceFormat.ADD:
+                        network.add(checkPool(network, buffer.getInt(), path), buffer.getLong());
+                        break;
+                    default:
+                        buffer.getInt();
+                }
+                position += recordSize;
+            }
+
+            channel.truncate(position);
+        }
+    }
+
+    private static void readAtLeast(FileChannel channel, ByteBuffer buffer, int count) throws IOException {
+        while (buffer.position() < count && channel.read(buffer) > 0) {
+            //читаем пока не наберется нужное колличество байт
+        }
+        buffer.flip();
+    }
+
+    private static int checkPool(OffHeapPoolNetwork network, int pool, Path path) throws IOException {
+        if (pool < 0 || pool >= network.getPoolCount()) throw new IOException("Журнал " + path + " ссылается на несуществующий бассейн " + pool);
+        return pool;
+    }
+
+    private static long parseGeneration(String name, String prefix) throws IOException {
+        try {
+            return Long.parseLong(name.substring(prefix.length()));
+        } catch (NumberFormatException exception) {
+            throw new IOException("Неизвестный файл в каталоге сети: " + name, exception);
+        }
+    }
+}
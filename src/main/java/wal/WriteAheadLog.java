@@ -0,0 +1,284 @@
+package wal;
+
+import trace.TraceFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Журнал упреждающей записи операций над сетью бассейнов с групповой фиксацией
+ * <p>
+ * Записи имеют формат {@link TraceFormat}, поэтому журнал можно проиграть и через {@code TraceReplayer}.
+ * Поток сети только дописывает запись в буфер в памяти, а фоновый поток не реже чем раз в {@code durabilityWindow}
+ * меняет буферы местами, пишет накопленное одним вызовом и делает один {@code fsync} на всю группу.
+ * Таким образом при падении теряются операции не старше окна, а стоимость {@code fsync} делится на все операции группы.
+ * Если нужна гарантия для конкретной операции, то после нее вызывается {@link #sync()}
+ * <p>
+ * Если оба буфера заполнены, поток сети ждет окончания записи, так что журнал не может отстать неограниченно
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    /**
+     * По умолчанию операции становятся надежными не позже чем через 10 мс
+     */
+    public static final Duration DEFAULT_DURABILITY_WINDOW = Duration.ofMillis(10);
+
+    /**
+     * По умолчанию буфер 1 Мб
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private final long windowNanos;
+
+    private final Object lock = new Object();
+
+    /**
+     * Буфер, в который дописываются записи
+     */
+    private ByteBuffer active;
+
+    /**
+     * Свободный буфер, {@code null} пока второй буфер пишется фоновым потоком
+     */
+    private ByteBuffer spare;
+
+    /**
+     * Колличество байт, дописанных в журнал
+     */
+    private long appendedBytes;
+
+    /**
+     * Колличество байт, записанных в файл и зафиксированных {@code fsync}
+     */
+    private long durableBytes;
+
+    private boolean isSyncRequested = false;
+
+    private boolean isClosed = false;
+
+    private IOException writeError;
+
+    private final Thread syncThread;
+
+    public WriteAheadLog(Path path) throws IOException {
+        this(path, DEFAULT_DURABILITY_WINDOW, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Открыть журнал для дописывания, новый файл начинается с заголовка {@link TraceFormat}
+     *
+     * @param path             файл журнала, существующий файл дописывается с конца
+     * @param durabilityWindow максимальное время от записи операции до ее фиксации на диске
+     * @param bufferSize       размер каждого из двух буферов в байтах
+     */
+    public WriteAheadLog(Path path, Duration durabilityWindow, int bufferSize) throws IOException {
+        if (durabilityWindow.isNegative() || durabilityWindow.isZero()) {
+            throw new IllegalArgumentException("Окно надежности должно быть положительным: " + durabilityWindow);
+        }
+        if (bufferSize < TraceFormat.HEADER_SIZE + TraceFormat.MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Слишком маленький буфер: " + bufferSize);
+        }
+
+        this.windowNanos = durabilityWindow.toNanos();
+        this.active = ByteBuffer.allocateDirect(bufferSize).order(TraceFormat.BYTE_ORDER);
+        this.spare = ByteBuffer.allocateDirect(bufferSize).order(TraceFormat.BYTE_ORDER);
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            final long size = channel.size();
+            channel.position(size);
+            if (size == 0) active.putInt(TraceFormat.MAGIC).putInt(TraceFormat.VERSION);
+            appendedBytes = size + active.position();
+            durableBytes = size;
+        } catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+
+        syncThread = new Thread(this::syncLoop, "pool-wal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    public void create(int pool) {
+        synchronized (lock) {
+            reserve(TraceFormat.recordSize(TraceFormat.CREATE)).put(TraceFormat.CREATE).putInt(pool);
+        }
+    }
+
+    public void connect(int first, int second) {
+        synchronized (lock) {
+            reserve(TraceFormat.recordSize(TraceFormat.CONNECT)).put(TraceFormat.CONNECT).putInt(first).putInt(second);
+        }
+    }
+
+    public void add(int pool, long water) {
+        synchronized (lock) {
+            reserve(TraceFormat.recordSize(TraceFormat.ADD)).put(TraceFormat.ADD).putInt(pool).putLong(water);
+        }
+    }
+
+    /**
+     * Дождаться фиксации на диске всех записей, дописанных до вызова
+     *
+     * @throws IOException если журнал не удалось записать
+     */
+    public void sync() throws IOException {
+        synchronized (lock) {
+            final long target = appendedBytes;
+            while (durableBytes < target) {
+                checkWriteError();
+                if (isClosed) throw new IOException("Журнал закрыт");
+
+                isSyncRequested = true;
+                lock.notifyAll();
+                try {
+                    lock.wait();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Ожидание журнала прервано", exception);
+                }
+            }
+            checkWriteError();
+        }
+    }
+
+    /**
+     * Зафиксировать все записи и закрыть журнал
+     *
+     * @throws IOException если журнал не удалось записать
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (isClosed) return;
+            isClosed = true;
+            lock.notifyAll();
+        }
+
+        try {
+            syncThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Закрытие журнала прервано", exception);
+        } finally {
+            channel.close();
+        }
+
+        synchronized (lock) {
+            checkWriteError();
+        }
+    }
+
+    /**
+     * Место под запись размера {@code recordSize} в активном буфере, вызывается под {@code lock}
+     */
+    private ByteBuffer reserve(int recordSize) {
+        if (writeError != null) throw new UncheckedIOException("Журнал не удалось записать", writeError);
+        if (isClosed) throw new IllegalStateException("Журнал закрыт");
+
+        boolean isInterrupted = false;
+        while (active.remaining() < recordSize) {
+            //активный буфер заполнен, ждем пока фоновый поток заберет его
+            isSyncRequested = true;
+            lock.notifyAll();
+            try {
+                lock.wait();
+            } catch (InterruptedException exception) {
+                isInterrupted = true;
+            }
+            if (writeError != null) throw new UncheckedIOException("Журнал не удалось записать", writeError);
+        }
+        if (isInterrupted) Thread.currentThread().interrupt();
+
+        appendedBytes += recordSize;
+        return active;
+    }
+
+    /**
+     * Цикл фонового потока: раз в окно, по запросу или при заполнении буфера пишет накопленные записи и делает fsync
+     * <p>
+     * Прерывание запоминается и восстанавливается при выходе из цикла, иначе каждое следующее ожидание
+     * сразу бросало бы {@code InterruptedException}, а запись в прерванный канал закрыла бы его
+     */
+    private void syncLoop() {
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                final ByteBuffer group;
+                final long groupEnd;
+
+                synchronized (lock) {
+                    final long deadline = System.nanoTime() + windowNanos;
+                    long remaining = windowNanos;
+                    while (!isClosed && !isSyncRequested && remaining > 0) {
+                        if (waitNanos(remaining)) isInterrupted = true;
+                        remaining = deadline - System.nanoTime();
+                    }
+                    isSyncRequested = false;
+
+                    if (active.position() == 0) {
+                        if (isClosed) return;
+                        continue;
+                    }
+
+                    group = active.flip();
+                    groupEnd = appendedBytes;
+                    active = spare;
+                    spare = null;
+                    lock.notifyAll();
+                }
+
+                //прерывание во время записи закрыло бы канал
+                if (Thread.interrupted()) isInterrupted = true;
+                IOException error = null;
+                try {
+                    while (group.hasRemaining()) {
+                        channel.write(group);
+                    }
+                    channel.force(false);
+                } catch (IOException exception) {
+                    error = exception;
+                }
+
+                synchronized (lock) {
+                    spare = group.clear();
+                    if (error != null) {
+                        writeError = error;
+                    } else {
+                        durableBytes = groupEnd;
+                    }
+                    lock.notifyAll();
+                    if (error != null) return;
+                }
+            }
+        } finally {
+            if (isInterrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkWriteError() throws IOException {
+        if (writeError != null) throw new IOException("Журнал не удалось записать", writeError);
+    }
+
+    /**
+     * Подождать на {@code lock} не дольше {@code nanos}
+     *
+     * @return true если ожидание прервано
+     */
+    private boolean waitNanos(long nanos) {
+        try {
+            lock.wait(nanos / 1_000_000, (int) (nanos % 1_000_000));
+            return false;
+        } catch (InterruptedException exception) {
+            return true;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package factory;
 
 import interfaces.IPool;
+import interfaces.IPoolBatch;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import poolsImpl.ConnectAndAddHighPerfomancePoolImpl;
@@ -20,5 +21,18 @@ public class PoolFactoryImplTest {
         Assertions.assertEquals (IS_INSTANCE_OF,actual instanceof ConnectAndAddHighPerfomancePoolImpl);
     }
 
+    @Test
+    public void verifyCreateBatch() {
+        PoolFactoryImpl factory = new PoolFactoryImpl();
+
+        IPoolBatch actual = factory.createBatch(BATCH_SIZE);
+
+        Assertions.assertEquals(BATCH_SIZE, actual.size());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Assertions.assertEquals(IS_INSTANCE_OF, actual.get(i) instanceof ConnectAndAddHighPerfomancePoolImpl);
+        }
+    }
+
     private static final boolean IS_INSTANCE_OF = true;
+    private static final int BATCH_SIZE = 3;
 }
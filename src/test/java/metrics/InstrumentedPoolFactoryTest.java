@@ -0,0 +1,72 @@
+package metrics;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.UnionFindPoolNetwork;
+
+/**
+ * Тест для {@code InstrumentedPoolFactory} и {@code Log2Histogram}
+ */
+public class InstrumentedPoolFactoryTest {
+
+    @Test
+    public void verifyOperationsAreCounted() {
+        final PoolMetrics metrics = new PoolMetrics();
+        metrics.setSlowThresholdNanos(Long.MAX_VALUE);
+        final InstrumentedPoolFactory factory = new InstrumentedPoolFactory(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()), metrics);
+
+        final IPool first = factory.create();
+        final IPool second = factory.create();
+        first.add(EXTRA_WATER);
+        first.connect(second);
+
+        Assertions.assertEquals(EXTRA_WATER / 2, second.measure());
+        Assertions.assertTrue(first.isConnected(second));
+
+        Assertions.assertEquals(1, metrics.getCallCount(Operation.CONNECT));
+        Assertions.assertEquals(1, metrics.getCallCount(Operation.ADD));
+        Assertions.assertEquals(1, metrics.getCallCount(Operation.MEASURE));
+        Assertions.assertEquals(1, metrics.getCallCount(Operation.IS_CONNECTED));
+        Assertions.assertEquals(1, metrics.getLatencies(Operation.CONNECT).getCount());
+        Assertions.assertEquals(0, metrics.getSlowOperationCount());
+
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getCallCount(Operation.CONNECT));
+        Assertions.assertEquals(0, metrics.getLatencies(Operation.CONNECT).getCount());
+    }
+
+    @Test
+    public void verifySlowOperationsAreCounted() {
+        final PoolMetrics metrics = new PoolMetrics();
+        metrics.setSlowThresholdNanos(0);
+        final InstrumentedPoolFactory factory = new InstrumentedPoolFactory(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()), metrics);
+
+        final IPool pool = factory.create();
+        pool.add(EXTRA_WATER);
+        pool.measure();
+
+        Assertions.assertEquals(2, metrics.getSlowOperationCount());
+    }
+
+    @Test
+    public void verifyHistogramPercentiles() {
+        final Log2Histogram histogram = new Log2Histogram();
+        Assertions.assertEquals(0, histogram.getPercentile(99));
+
+        for (long value = 1; value <= HISTOGRAM_VALUES; value++) {
+            histogram.record(value);
+        }
+
+        Assertions.assertEquals(HISTOGRAM_VALUES, histogram.getCount());
+        Assertions.assertEquals(HISTOGRAM_VALUES, histogram.getMax());
+        Assertions.assertEquals((HISTOGRAM_VALUES + 1) / 2.0, histogram.getMean());
+        Assertions.assertEquals(511, histogram.getPercentile(50));
+        Assertions.assertEquals(HISTOGRAM_VALUES, histogram.getPercentile(100));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+    }
+
+    private static final long EXTRA_WATER = 10;
+    private static final long HISTOGRAM_VALUES = 1000;
+}
@@ -0,0 +1,159 @@
+package pipeline;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import interfaces.IPoolFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.OffHeapPoolNetwork;
+import utils.UnionFindPoolNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Тест для {@code PoolCommandPipeline}
+ */
+public class PoolCommandPipelineTest {
+
+    @Test
+    public void verifyCommandsFromManyProducers() throws InterruptedException {
+        final IPoolFactory factory = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork());
+        final IPool[] pools = new IPool[PRODUCER_COUNT];
+        for (int i = 0; i < PRODUCER_COUNT; i++) {
+            pools[i] = factory.create();
+        }
+
+        final long[] measured = new long[PRODUCER_COUNT];
+        try (PoolCommandPipeline pipeline = new PoolCommandPipeline(CAPACITY)) {
+            final List<Thread> producers = new ArrayList<>();
+            for (int i = 0; i < PRODUCER_COUNT; i++) {
+                final int producer = i;
+                producers.add(new Thread(() -> {
+                    for (int k = 0; k < COMMAND_COUNT; k++) {
+                        pipeline.add(pools[producer], EXTRA_WATER);
+                    }
+                    //команды одного производителя применяются по порядку
+                    measured[producer] = pipeline.measure(pools[producer]).join();
+                }));
+            }
+            producers.forEach(Thread::start);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            for (int i = 0; i < PRODUCER_COUNT; i++) {
+                Assertions.assertEquals(EXTRA_WATER * COMMAND_COUNT, measured[i]);
+            }
+
+            for (int i = 1; i < PRODUCER_COUNT; i++) {
+                pipeline.connect(pools[0], pools[i]);
+            }
+            final CompletableFuture<Long> connected = pipeline.measure(pools[PRODUCER_COUNT - 1]);
+            pipeline.flush().join();
+
+            Assertions.assertEquals(EXTRA_WATER * COMMAND_COUNT, connected.join());
+            Assertions.assertTrue(pools[0].isConnected(pools[PRODUCER_COUNT - 1]));
+        }
+    }
+
+    @Test
+    public void verifyFailuresAreReported() {
+        final OffHeapPoolNetwork network = new OffHeapPoolNetwork();
+        final IPool pool = new NetworkPoolFactoryImpl<>(network).create();
+        network.close();
+
+        try (PoolCommandPipeline pipeline = new PoolCommandPipeline(CAPACITY)) {
+            pipeline.add(pool, EXTRA_WATER);
+            final CompletableFuture<Long> measured = pipeline.measure(pool);
+
+            final CompletionException flushError = Assertions.assertThrows(CompletionException.class, () -> pipeline.flush().join());
+            Assertions.assertTrue(flushError.getCause() instanceof IllegalStateException);
+            final CompletionException measureError = Assertions.assertThrows(CompletionException.class, measured::join);
+            Assertions.assertTrue(measureError.getCause() instanceof IllegalStateException);
+
+            //ошибка отдается только одному flush
+            pipeline.flush().join();
+        }
+    }
+
+    @Test
+    public void verifyErrorStopsWriter() throws InterruptedException {
+        final IPool pool = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()).create();
+        final Error error = new StackOverflowError();
+        final CountDownLatch isMeasureStarted = new CountDownLatch(1);
+        final CountDownLatch isErrorAllowed = new CountDownLatch(1);
+        final IPool brokenPool = new IPool() {
+            @Override
+            public long measure() {
+                isMeasureStarted.countDown();
+                try {
+                    isErrorAllowed.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                throw error;
+            }
+
+            @Override
+            public void connect(IPool pool) {
+            }
+
+            @Override
+            public void add(long water) {
+            }
+
+            @Override
+            public Boolean isConnected(IPool pool) {
+                return false;
+            }
+        };
+
+        try (PoolCommandPipeline pipeline = new PoolCommandPipeline(CAPACITY)) {
+            final CompletableFuture<Long> broken = pipeline.measure(brokenPool);
+            isMeasureStarted.await();
+            //команда опубликована, пока писатель еще работает
+            final CompletableFuture<Long> pending = pipeline.measure(pool);
+            isErrorAllowed.countDown();
+
+            final CompletionException brokenError = Assertions.assertThrows(CompletionException.class, broken::join);
+            Assertions.assertSame(error, brokenError.getCause());
+            final CompletionException pendingError = Assertions.assertThrows(CompletionException.class, pending::join);
+            Assertions.assertSame(error, pendingError.getCause());
+
+            //писатель больше не освобождает ячейки, производители получают ошибку вместо ожидания
+            final IllegalStateException claimError = Assertions.assertThrows(IllegalStateException.class, () -> {
+                for (int k = 0; k <= CAPACITY; k++) {
+                    pipeline.add(pool, EXTRA_WATER);
+                }
+            });
+            Assertions.assertSame(error, claimError.getCause());
+        }
+        Assertions.assertEquals(0, pool.measure());
+    }
+
+    @Test
+    public void verifyCloseDrainsCommands() {
+        final IPool pool = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()).create();
+        final PoolCommandPipeline pipeline = new PoolCommandPipeline(CAPACITY);
+        for (int k = 0; k < COMMAND_COUNT; k++) {
+            pipeline.add(pool, EXTRA_WATER);
+        }
+        final CompletableFuture<Long> measured = pipeline.measure(pool);
+
+        pipeline.close();
+
+        Assertions.assertEquals(EXTRA_WATER * COMMAND_COUNT, measured.join());
+        Assertions.assertThrows(IllegalStateException.class, () -> pipeline.add(pool, EXTRA_WATER));
+        Assertions.assertThrows(IllegalStateException.class, () -> pipeline.measure(pool));
+        pipeline.close();
+    }
+
+    private static final int CAPACITY = 64;
+    private static final int PRODUCER_COUNT = 8;
+    private static final int COMMAND_COUNT = 10_000;
+    private static final long EXTRA_WATER = 10;
+}
@@ -0,0 +1,451 @@
+package pooolsImpl;
+
+import factory.ConcurrentGlobalStatePoolFactoryImpl;
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тест для {@code ConcurrentGlobalStatePoolImpl}
+ */
+public class ConcurrentGlobalStatePoolImplTest {
+
+    private final ConcurrentGlobalStatePoolFactoryImpl factory = new ConcurrentGlobalStatePoolFactoryImpl();
+
+    @AfterEach
+    public void closeFactory() {
+        factory.close();
+    }
+
+    @Test
+    public void verifyAddEmptyMesh() {
+        IPool pool = factory.create();
+
+        Assertions.assertEquals(EMPTY, pool.measure());
+
+        pool.add(EXTRA_WATER);
+
+        Assertions.assertEquals(EMPTY + EXTRA_WATER, pool.measure());
+    }
+
+    @Test
+    public void verifyConnectThisToThis() {
+        IPool pool = factory.create();
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
+
+        pool.connect(pool);
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
+        Assertions.assertEquals(EMPTY, pool.measure());
+    }
+
+    @Test
+    public void verifyConnectTwoEmptyPools() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+    }
+
+    @Test
+    public void verifyConnectTwoPoolsEqualsWater() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(EXTRA_WATER, poolFirst.measure());
+        Assertions.assertEquals(EXTRA_WATER, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyAddToMesh() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        poolFirst.add(EXTRA_WATER_DOUBLED);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER + EXTRA_WATER) / 2;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyConnectTwoPools() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+
+
+        final long expected = (EXTRA_WATER_DOUBLED + EXTRA_WATER) / 2;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolToPoolMesh() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER_PLUS);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFirst);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER_PLUS) / 3;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPool() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER_PLUS);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+        poolFirst.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER_PLUS) / 3;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshMasterToMaster() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolSecond.connect(poolFourth);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshMasterToSlave() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolSecond.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshSlaveToMaster() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolFirst.connect(poolFourth);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshSlaveToSlave() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolFirst.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConcurrentConnectAndAdd() throws InterruptedException {
+        final IPool[] pools = new IPool[THREADS * POOLS_PER_THREAD];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = factory.create();
+            pools[i].add(EXTRA_WATER);
+        }
+
+        runConcurrently((int thread) -> {
+            for (int i = thread * POOLS_PER_THREAD; i < (thread + 1) * POOLS_PER_THREAD; i++) {
+                pools[i].connect(pools[(i + 1) % pools.length]);
+            }
+        });
+
+        for (int i = 1; i < pools.length; i++) {
+            Assertions.assertEquals(CONNECTED, pools[0].isConnected(pools[i]));
+            Assertions.assertEquals(EXTRA_WATER, pools[i].measure());
+        }
+
+        runConcurrently((int thread) -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                pools[(thread * ADDS_PER_THREAD + i) % pools.length].add(EXTRA_WATER * pools.length);
+            }
+        });
+
+        final long expected = EXTRA_WATER + EXTRA_WATER * THREADS * ADDS_PER_THREAD;
+        for (IPool pool : pools) {
+            Assertions.assertEquals(expected, pool.measure());
+        }
+    }
+
+    private static void runConcurrently(ThreadTask task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                task.run(thread);
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread);
+    }
+
+    @Test
+    public void verifyBatch() {
+        IPoolBatch batch = factory.createBatch(BATCH_SIZE);
+
+        batch.addAll(new int[]{0, 1, 2, 3}, new long[]{EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER, EXTRA_WATER_DOUBLED});
+        batch.connectAll(new int[]{0, 2}, new int[]{1, 3});
+
+        final long[] actual = new long[batch.size()];
+        batch.measureAll(actual);
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2;
+        Assertions.assertArrayEquals(new long[]{expected, expected, expected, expected}, actual);
+        Assertions.assertEquals(CONNECTED, batch.get(0).isConnected(batch.get(1)));
+        Assertions.assertEquals(NOT_CONNECTED, batch.get(0).isConnected(batch.get(2)));
+    }
+
+    @Test
+    public void verifyFactoriesAreIndependent() {
+        try (ConcurrentGlobalStatePoolFactoryImpl other = new ConcurrentGlobalStatePoolFactoryImpl()) {
+            IPool poolFirst = factory.create();
+            IPool poolSecond = other.create();
+            IPool poolThird = factory.create();
+
+            poolFirst.add(EXTRA_WATER);
+            poolSecond.add(EXTRA_WATER_PLUS);
+            poolFirst.connect(poolSecond);
+            poolSecond.connect(poolFirst);
+            poolFirst.connect(poolThird);
+
+            Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+            Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+            Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+            Assertions.assertEquals(EXTRA_WATER / 2, poolThird.measure());
+            Assertions.assertEquals(EXTRA_WATER_PLUS, poolSecond.measure());
+        }
+    }
+
+    @Test
+    public void verifyClosedFactory() {
+        IPool pool = factory.create();
+        pool.add(EXTRA_WATER);
+
+        factory.close();
+        factory.close();
+
+        Assertions.assertThrows(IllegalStateException.class, factory::create);
+        Assertions.assertThrows(IllegalStateException.class, pool::measure);
+        Assertions.assertThrows(IllegalStateException.class, () -> pool.add(EXTRA_WATER));
+    }
+
+    private static final long EMPTY = 0;
+    private static final boolean NOT_CONNECTED = false;
+    private static final boolean CONNECTED = true;
+    private static final long EXTRA_WATER = 10;
+    private static final long EXTRA_WATER_PLUS = 12;
+    private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final int BATCH_SIZE = 4;
+    private static final int THREADS = 8;
+    private static final int POOLS_PER_THREAD = 5_000;
+    private static final int ADDS_PER_THREAD = 10_000;
+
+}
+
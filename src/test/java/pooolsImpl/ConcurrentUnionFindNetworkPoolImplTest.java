@@ -0,0 +1,118 @@
+package pooolsImpl;
+
+import interfaces.IPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.ConcurrentUnionFindPoolNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Тест для {@code NetworkPoolImpl} поверх {@code ConcurrentUnionFindPoolNetwork}
+ */
+public class ConcurrentUnionFindNetworkPoolImplTest extends NetworkPoolImplTest<ConcurrentUnionFindPoolNetwork> {
+
+    @Override
+    protected ConcurrentUnionFindPoolNetwork createNetwork() {
+        return new ConcurrentUnionFindPoolNetwork();
+    }
+
+    @Test
+    public void verifyConcurrentConnectAndAdd() throws InterruptedException {
+        final IPool[] pools = new IPool[THREADS * POOLS_PER_THREAD];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = factory.create();
+            pools[i].add(EXTRA_WATER);
+        }
+
+        runConcurrently((int thread) -> {
+            for (int i = thread * POOLS_PER_THREAD; i < (thread + 1) * POOLS_PER_THREAD; i++) {
+                pools[i].connect(pools[(i + 1) % pools.length]);
+            }
+        });
+
+        for (int i = 1; i < pools.length; i++) {
+            Assertions.assertEquals(CONNECTED, pools[0].isConnected(pools[i]));
+            Assertions.assertEquals(EXTRA_WATER, pools[i].measure());
+        }
+
+        runConcurrently((int thread) -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                pools[(thread * ADDS_PER_THREAD + i) % pools.length].add(EXTRA_WATER * pools.length);
+            }
+        });
+
+        final long expected = EXTRA_WATER + EXTRA_WATER * THREADS * ADDS_PER_THREAD;
+        for (IPool pool : pools) {
+            Assertions.assertEquals(expected, pool.measure());
+        }
+    }
+
+    private static void runConcurrently(ThreadTask task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                task.run(thread);
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread);
+    }
+
+    @Test
+    public void verifyOverflowKeepsPoolCount() {
+        ConcurrentUnionFindPoolNetwork network = factory.getNetwork();
+        IPool pool = factory.create();
+        pool.add(EXTRA_WATER);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> network.create(Integer.MAX_VALUE));
+
+        Assertions.assertEquals(1, network.getPoolCount());
+        Assertions.assertEquals(EXTRA_WATER, pool.measure());
+        Assertions.assertEquals(1, network.create());
+    }
+
+    @Test
+    public void verifyCountedPoolsAreUsableDuringCreate() throws InterruptedException {
+        final ConcurrentUnionFindPoolNetwork network = factory.getNetwork();
+        network.create();
+
+        //бассейны, учтенные в getPoolCount, можно использовать, даже если их создатель еще не вернулся из create
+        runConcurrently((int thread) -> {
+            for (int i = 0; i < POOLS_PER_THREAD; i++) {
+                network.create(thread + 1);
+                final int last = network.getPoolCount() - 1;
+                Assertions.assertEquals(0, network.measure(last));
+                Assertions.assertFalse(last != 0 && network.isConnected(0, last));
+            }
+        });
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> network.measure(network.getPoolCount()));
+        for (int pool = 1; pool < network.getPoolCount(); pool++) {
+            Assertions.assertFalse(network.isConnected(0, pool));
+        }
+    }
+
+    private static final int THREADS = 8;
+    private static final int POOLS_PER_THREAD = 20_000;
+    private static final int ADDS_PER_THREAD = 10_000;
+
+}
@@ -1,5 +1,6 @@
 package pooolsImpl;
 
+import interfaces.IPoolBatch;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import poolsImpl.ConnectAndAddHighPerfomancePoolImpl;
@@ -207,11 +208,28 @@ public class ConnectAndAddHighPerfomancePoolImplTest {
         Assertions.assertEquals(expected, poolFourth.measure());
     }
 
+    @Test
+    public void verifyBatch() {
+        IPoolBatch batch = ConnectAndAddHighPerfomancePoolImpl.createBatch(BATCH_SIZE);
+
+        batch.addAll(new int[]{0, 1, 2, 3}, new long[]{EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER, EXTRA_WATER_DOUBLED});
+        batch.connectAll(new int[]{0, 2}, new int[]{1, 3});
+
+        final long[] actual = new long[batch.size()];
+        batch.measureAll(actual);
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2;
+        Assertions.assertArrayEquals(new long[]{expected, expected, expected, expected}, actual);
+        Assertions.assertEquals(CONNECTED, batch.get(0).isConnected(batch.get(1)));
+        Assertions.assertEquals(NOT_CONNECTED, batch.get(0).isConnected(batch.get(2)));
+    }
+
     private static final long EMPTY = 0;
     private static final boolean NOT_CONNECTED = false;
     private static final boolean CONNECTED = true;
     private static final long EXTRA_WATER = 10;
     private static final long EXTRA_WATER_PLUS = 12;
     private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final int BATCH_SIZE = 4;
 
 }
@@ -0,0 +1,65 @@
+package pooolsImpl;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import wal.DurablePoolNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Тест для {@code NetworkPoolImpl} поверх {@code DurablePoolNetwork}
+ */
+public class DurableNetworkPoolImplTest extends NetworkPoolImplTest<DurablePoolNetwork> {
+
+    /**
+     * Каталог сети, заполняется в {@link #createNetwork()} из конструктора базового теста, поэтому без инициализатора
+     */
+    private Path directory;
+
+    @Override
+    protected DurablePoolNetwork createNetwork() {
+        try {
+            directory = Files.createTempDirectory("pools");
+            return DurablePoolNetwork.open(directory);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @AfterEach
+    public void deleteNetwork() throws IOException {
+        //сеть закрывается до удаления файлов, повторное закрытие в базовом тесте ничего не делает
+        factory.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void verifyPoolsRecoveredAfterClose() throws IOException {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        poolFirst.add(EXTRA_WATER_DOUBLED);
+        factory.getNetwork().checkpoint();
+        poolFirst.connect(poolSecond);
+
+        factory.close();
+
+        try (DurablePoolNetwork reopened = DurablePoolNetwork.open(directory)) {
+            final NetworkPoolFactoryImpl<DurablePoolNetwork> recovered = new NetworkPoolFactoryImpl<>(reopened);
+            Assertions.assertEquals(CONNECTED, recovered.getPool(0).isConnected(recovered.getPool(1)));
+            Assertions.assertEquals(EXTRA_WATER, recovered.getPool(1).measure());
+        }
+    }
+
+}
@@ -1,14 +1,25 @@
 package pooolsImpl;
 
+import factory.GlobalStatePoolFactoryImpl;
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import poolsImpl.GlobalStatePoolImpl;
 import poolsImpl.InversedMasterPoolImpl;
 
 public class GlobalStatePoolImplTest {
+
+    private final GlobalStatePoolFactoryImpl factory = new GlobalStatePoolFactoryImpl();
+
+    @AfterEach
+    public void closeFactory() {
+        factory.close();
+    }
+
     @Test
     public void verifyAddEmptyMesh() {
-        GlobalStatePoolImpl pool = new GlobalStatePoolImpl();
+        IPool pool = factory.create();
 
         Assertions.assertEquals(EMPTY, pool.measure());
 
@@ -19,7 +30,7 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectThisToThis() {
-        GlobalStatePoolImpl pool = new GlobalStatePoolImpl();
+        IPool pool = factory.create();
 
         Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
 
@@ -31,8 +42,8 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectTwoEmptyPools() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
 
         Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
 
@@ -43,8 +54,8 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectTwoPoolsEqualsWater() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER);
@@ -60,8 +71,8 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyAddToMesh() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER);
@@ -82,8 +93,8 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectTwoPools() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -104,9 +115,9 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectPoolToPoolMesh() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolThird = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -137,9 +148,9 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectPoolMeshToPool() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolThird = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -170,10 +181,10 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectPoolMeshToPoolMeshMasterToMaster() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolThird = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolFourth = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -206,10 +217,10 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectPoolMeshToPoolMeshMasterToSlave() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolThird = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolFourth = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -242,10 +253,10 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectPoolMeshToPoolMeshSlaveToMaster() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolThird = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolFourth = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -278,10 +289,10 @@ public class GlobalStatePoolImplTest {
 
     @Test
     public void verifyConnectPoolMeshToPoolMeshSlaveToSlave() {
-        GlobalStatePoolImpl poolFirst = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolSecond = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolThird = new GlobalStatePoolImpl();
-        GlobalStatePoolImpl poolFourth = new GlobalStatePoolImpl();
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
 
         poolFirst.add(EXTRA_WATER);
         poolSecond.add(EXTRA_WATER_DOUBLED);
@@ -312,12 +323,126 @@ public class GlobalStatePoolImplTest {
         Assertions.assertEquals(expected, poolFourth.measure());
     }
 
+    @Test
+    public void verifyBatch() {
+        IPoolBatch batch = factory.createBatch(BATCH_SIZE);
+
+        batch.addAll(new int[]{0, 1, 2, 3}, new long[]{EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER, EXTRA_WATER_DOUBLED});
+        batch.connectAll(new int[]{0, 2}, new int[]{1, 3});
+
+        final long[] actual = new long[batch.size()];
+        batch.measureAll(actual);
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2;
+        Assertions.assertArrayEquals(new long[]{expected, expected, expected, expected}, actual);
+        Assertions.assertEquals(CONNECTED, batch.get(0).isConnected(batch.get(1)));
+        Assertions.assertEquals(NOT_CONNECTED, batch.get(0).isConnected(batch.get(2)));
+    }
+
+    @Test
+    public void verifyConnectPoolOfOtherImplementation() {
+        IPool pool = factory.create();
+        InversedMasterPoolImpl otherPool = new InversedMasterPoolImpl();
+
+        pool.add(EXTRA_WATER);
+        otherPool.add(EXTRA_WATER_DOUBLED);
+
+        pool.connect(otherPool);
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(otherPool));
+        Assertions.assertEquals(EXTRA_WATER, pool.measure());
+    }
+
+    @Test
+    public void verifyMergeManyMeshes() {
+        IPool[] pools = new IPool[MESH_COUNT];
+        for (int i = 0; i < MESH_COUNT; i++) {
+            pools[i] = factory.create();
+            pools[i].add(EXTRA_WATER);
+        }
+
+        //сливаем сети попарно, затем пары пар и так далее, каждый раз соединяя не первые бассейны сетей
+        for (int step = 1; step < MESH_COUNT; step *= 2) {
+            for (int i = 0; i + step < MESH_COUNT; i += 2 * step) {
+                pools[i + step - 1].connect(pools[i + 2 * step - 1]);
+            }
+        }
+
+        for (int i = 1; i < MESH_COUNT; i++) {
+            Assertions.assertEquals(CONNECTED, pools[i].isConnected(pools[0]));
+            Assertions.assertEquals(EXTRA_WATER, pools[i].measure());
+        }
+    }
+
+    @Test
+    public void verifyFactoriesAreIndependent() {
+        try (GlobalStatePoolFactoryImpl first = new GlobalStatePoolFactoryImpl();
+             GlobalStatePoolFactoryImpl second = new GlobalStatePoolFactoryImpl()) {
+            IPool poolFirst = first.create();
+            IPool poolSecond = second.create();
+            IPool poolThird = first.create();
+
+            poolFirst.add(EXTRA_WATER);
+            poolSecond.add(EXTRA_WATER_PLUS);
+            poolFirst.connect(poolSecond);
+            poolFirst.connect(poolThird);
+
+            Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+            Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+            Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+            Assertions.assertEquals(EXTRA_WATER / 2, poolThird.measure());
+            Assertions.assertEquals(EXTRA_WATER_PLUS, poolSecond.measure());
+            Assertions.assertEquals(2, first.getOrchestrator().getPoolCount());
+            Assertions.assertEquals(1, second.getOrchestrator().getPoolCount());
+        }
+    }
+
+    @Test
+    public void verifyResetDropsPools() {
+        try (GlobalStatePoolFactoryImpl factory = new GlobalStatePoolFactoryImpl()) {
+            IPool stale = factory.create();
+            stale.connect(factory.create());
+            stale.add(EXTRA_WATER);
+
+            factory.reset();
+
+            Assertions.assertEquals(0, factory.getOrchestrator().getPoolCount());
+            Assertions.assertThrows(IllegalStateException.class, stale::measure);
+            Assertions.assertThrows(IllegalStateException.class, () -> stale.add(EXTRA_WATER));
+
+            IPool poolFirst = factory.create();
+            IPool poolSecond = factory.create();
+            poolFirst.add(EXTRA_WATER);
+            poolFirst.connect(poolSecond);
+
+            Assertions.assertThrows(IllegalStateException.class, () -> poolFirst.connect(stale));
+            Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+            Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(stale));
+            Assertions.assertEquals(EXTRA_WATER / 2, poolSecond.measure());
+        }
+    }
+
+    @Test
+    public void verifyClosedFactory() {
+        GlobalStatePoolFactoryImpl factory = new GlobalStatePoolFactoryImpl();
+        IPool pool = factory.create();
+
+        factory.close();
+        factory.close();
+
+        Assertions.assertThrows(IllegalStateException.class, factory::create);
+        Assertions.assertThrows(IllegalStateException.class, pool::measure);
+        Assertions.assertThrows(IllegalStateException.class, factory::reset);
+    }
+
     private static final long EMPTY = 0;
     private static final boolean NOT_CONNECTED = false;
     private static final boolean CONNECTED = true;
     private static final long EXTRA_WATER = 10;
     private static final long EXTRA_WATER_PLUS = 12;
     private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final int BATCH_SIZE = 4;
+    private static final int MESH_COUNT = 64;
 
 }
 
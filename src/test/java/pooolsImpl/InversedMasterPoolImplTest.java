@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import poolsImpl.ConnectAndAddHighPerfomancePoolImpl;
 import poolsImpl.InversedMasterPoolImpl;
 
+import java.time.Duration;
+
 public class InversedMasterPoolImplTest {
     @Test
     public void verifyAddEmptyMesh() {
@@ -312,11 +314,56 @@ public class InversedMasterPoolImplTest {
         Assertions.assertEquals(expected, poolFourth.measure());
     }
 
+    @Test
+    public void verifyMeasureLongChain() {
+        final InversedMasterPoolImpl[] pools = new InversedMasterPoolImpl[CHAIN_LENGTH];
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            pools[i] = new InversedMasterPoolImpl();
+            pools[i].add(EXTRA_WATER);
+            if (i > 0) pools[i].connect(pools[i - 1]);
+        }
+
+        pools[CHAIN_LENGTH - 1].add(EXTRA_WATER * CHAIN_LENGTH);
+
+        Assertions.assertEquals(CONNECTED, pools[0].isConnected(pools[CHAIN_LENGTH - 1]));
+        for (InversedMasterPoolImpl pool : pools) {
+            Assertions.assertEquals(EXTRA_WATER_DOUBLED, pool.measure());
+        }
+    }
+
+    @Test
+    public void verifyMeasureDeepChain() {
+        final InversedMasterPoolImpl[] pools = new InversedMasterPoolImpl[DEEP_CHAIN_LENGTH];
+        for (int i = 0; i < DEEP_CHAIN_LENGTH; i++) {
+            pools[i] = new InversedMasterPoolImpl();
+            pools[i].add(EXTRA_WATER);
+            //master бассейн сети каждый раз передает сеть новому бассейну, поэтому первый бассейн оказывается в конце цепочки
+            if (i > 0) pools[i - 1].connect(pools[i]);
+        }
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(DEEP_CHAIN_TIMEOUT_SECONDS), () -> {
+            Assertions.assertEquals(CONNECTED, pools[0].isConnected(pools[DEEP_CHAIN_LENGTH - 1]));
+
+            pools[0].add(EXTRA_WATER * DEEP_CHAIN_LENGTH);
+
+            //без сжатия цепочки каждый обход стоил бы O(n), а весь цикл O(n^2)
+            for (InversedMasterPoolImpl pool : pools) {
+                Assertions.assertEquals(EXTRA_WATER_DOUBLED, pool.measure());
+            }
+            for (int i = 1; i < DEEP_CHAIN_LENGTH; i++) {
+                Assertions.assertEquals(CONNECTED, pools[i].isConnected(pools[i - 1]));
+            }
+        });
+    }
+
     private static final long EMPTY = 0;
     private static final boolean NOT_CONNECTED = false;
     private static final boolean CONNECTED = true;
     private static final long EXTRA_WATER = 10;
     private static final long EXTRA_WATER_PLUS = 12;
     private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final int CHAIN_LENGTH = 20_000;
+    private static final int DEEP_CHAIN_LENGTH = 1_000_000;
+    private static final long DEEP_CHAIN_TIMEOUT_SECONDS = 30;
 
 }
@@ -0,0 +1,267 @@
+package pooolsImpl;
+
+import interfaces.IPoolBatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import poolsImpl.FullGraphPoolImpl;
+import poolsImpl.IterativeConnectAndAddPoolImpl;
+
+/**
+ * Тест для {@code IterativeConnectAndAddPoolImpl}
+ */
+public class IterativeConnectAndAddPoolImplTest {
+
+    @Test
+    public void verifyAddEmptyMesh() {
+        IterativeConnectAndAddPoolImpl pool = new IterativeConnectAndAddPoolImpl();
+
+        Assertions.assertEquals(EMPTY, pool.measure());
+
+        pool.add(EXTRA_WATER);
+
+        Assertions.assertEquals(EMPTY + EXTRA_WATER, pool.measure());
+    }
+
+    @Test
+    public void verifyConnectThisToThis() {
+        IterativeConnectAndAddPoolImpl pool = new IterativeConnectAndAddPoolImpl();
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
+
+        pool.connect(pool);
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
+        Assertions.assertEquals(EMPTY, pool.measure());
+    }
+
+    @Test
+    public void verifyConnectTwoEmptyPools() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+    }
+
+    @Test
+    public void verifyConnectTwoPoolsEqualsWater() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(EXTRA_WATER, poolFirst.measure());
+        Assertions.assertEquals(EXTRA_WATER, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyAddToMesh() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        poolFirst.add(EXTRA_WATER_DOUBLED);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER + EXTRA_WATER) / 2;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyConnectTwoPools() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+
+
+        final long expected = (EXTRA_WATER_DOUBLED + EXTRA_WATER) / 2;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolToPoolMesh() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolThird = new IterativeConnectAndAddPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER_PLUS);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFirst);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER_PLUS) / 3;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPool() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolThird = new IterativeConnectAndAddPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER_PLUS);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+        poolFirst.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER_PLUS) / 3;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMesh() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolSecond = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolThird = new IterativeConnectAndAddPoolImpl();
+        IterativeConnectAndAddPoolImpl poolFourth = new IterativeConnectAndAddPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolFirst.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions. assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyBatch() {
+        IPoolBatch batch = IterativeConnectAndAddPoolImpl.createBatch(BATCH_SIZE);
+
+        batch.addAll(new int[]{0, 1, 2, 3}, new long[]{EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER, EXTRA_WATER_DOUBLED});
+        batch.connectAll(new int[]{0, 2}, new int[]{1, 3});
+
+        final long[] actual = new long[batch.size()];
+        batch.measureAll(actual);
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2;
+        Assertions.assertArrayEquals(new long[]{expected, expected, expected, expected}, actual);
+        Assertions.assertEquals(CONNECTED, batch.get(0).isConnected(batch.get(1)));
+        Assertions.assertEquals(NOT_CONNECTED, batch.get(0).isConnected(batch.get(2)));
+    }
+
+    @Test
+    public void verifyConnectLongChain() {
+        final IterativeConnectAndAddPoolImpl[] pools = new IterativeConnectAndAddPoolImpl[CHAIN_LENGTH];
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            pools[i] = new IterativeConnectAndAddPoolImpl();
+            pools[i].add(EXTRA_WATER);
+        }
+
+        //цепочка, которую рекурсивная имплементация не проходит из-за переполнения стека
+        for (int i = 1; i < CHAIN_LENGTH; i++) {
+            pools[i].connect(pools[i - 1]);
+        }
+
+        Assertions.assertEquals(CONNECTED, pools[0].isConnected(pools[CHAIN_LENGTH - 1]));
+        Assertions.assertEquals(EXTRA_WATER, pools[0].measure());
+        Assertions.assertEquals(EXTRA_WATER, pools[CHAIN_LENGTH - 1].measure());
+    }
+
+    @Test
+    public void verifyConnectPoolOfOtherImplementation() {
+        IterativeConnectAndAddPoolImpl poolFirst = new IterativeConnectAndAddPoolImpl();
+        FullGraphPoolImpl poolSecond = new FullGraphPoolImpl();
+
+        poolFirst.add(EXTRA_WATER);
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(EXTRA_WATER, poolFirst.measure());
+    }
+
+    private static final long EMPTY = 0;
+    private static final boolean NOT_CONNECTED = false;
+    private static final boolean CONNECTED = true;
+    private static final long EXTRA_WATER = 10;
+    private static final long EXTRA_WATER_PLUS = 12;
+    private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final int BATCH_SIZE = 4;
+    private static final int CHAIN_LENGTH = 1_000_000;
+
+}
@@ -0,0 +1,94 @@
+package pooolsImpl;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.MappedPoolNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Тест для {@code NetworkPoolImpl} поверх {@code MappedPoolNetwork}, маленькие сегменты заставляют
+ * цепочку пересекать границы сегментов
+ */
+public class MappedNetworkPoolImplTest extends NetworkPoolImplTest<MappedPoolNetwork> {
+
+    /**
+     * Каталог сети, заполняется в {@link #createNetwork()} из конструктора базового теста, поэтому без инициализатора
+     */
+    private Path directory;
+
+    @Override
+    protected MappedPoolNetwork createNetwork() {
+        try {
+            directory = Files.createTempDirectory("pools");
+            return MappedPoolNetwork.open(directory, SEGMENT_SHIFT);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Каждый бассейн цепочки лежит в отдельном файле сегмента, поэтому цепочка короче
+     */
+    @Override
+    protected int chainLength() {
+        return MAPPED_CHAIN_LENGTH;
+    }
+
+    @AfterEach
+    public void deleteNetwork() throws IOException {
+        //сеть закрывается до удаления файлов, повторное закрытие в базовом тесте ничего не делает
+        factory.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void verifyClose() throws IOException {
+        IPool pool = factory.create();
+        pool.add(EXTRA_WATER);
+
+        factory.close();
+
+        Assertions.assertEquals(0, factory.getNetwork().getMappedBytes());
+        Assertions.assertThrows(IllegalStateException.class, pool::measure);
+        Assertions.assertThrows(IllegalStateException.class, factory::create);
+
+        try (MappedPoolNetwork reopened = MappedPoolNetwork.open(directory)) {
+            Assertions.assertEquals(EXTRA_WATER, new NetworkPoolFactoryImpl<>(reopened).getPool(0).measure());
+        }
+    }
+
+    @Test
+    public void verifyRelayoutKeepsPools() throws IOException {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolThird.add(EXTRA_WATER_DOUBLED);
+        poolThird.connect(poolFirst);
+
+        factory.getNetwork().relayout();
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals((EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2, poolFirst.measure());
+        Assertions.assertEquals(EMPTY, poolSecond.measure());
+    }
+
+    private static final int SEGMENT_SHIFT = 4;
+    private static final int MAPPED_CHAIN_LENGTH = 1000;
+
+}
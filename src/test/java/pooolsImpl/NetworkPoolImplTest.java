@@ -0,0 +1,441 @@
+package pooolsImpl;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import interfaces.IPoolBatch;
+import interfaces.IPoolNetwork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.UnionFindPoolNetwork;
+
+import java.io.IOException;
+
+/**
+ * Общий тест для {@code NetworkPoolImpl} и {@code NetworkPoolFactoryImpl}, проверяется поверх каждой сети {@code IPoolNetwork}
+ * <p>
+ * Для каждой сети есть наследник, который создает сеть и добавляет проверки, специфичные для нее
+ *
+ * @param <N> тип сети
+ */
+public abstract class NetworkPoolImplTest<N extends IPoolNetwork> {
+
+    protected final NetworkPoolFactoryImpl<N> factory = new NetworkPoolFactoryImpl<>(createNetwork());
+
+    /**
+     * Создать сеть, вызывается один раз из конструктора теста
+     */
+    protected abstract N createNetwork();
+
+    /**
+     * Длина цепочки в {@link #verifyLongChain()}
+     */
+    protected int chainLength() {
+        return CHAIN_LENGTH;
+    }
+
+    @AfterEach
+    public void closeFactory() throws IOException {
+        factory.close();
+    }
+
+    @Test
+    public void verifyAddEmptyMesh() {
+        IPool pool = factory.create();
+
+        Assertions.assertEquals(EMPTY, pool.measure());
+
+        pool.add(EXTRA_WATER);
+
+        Assertions.assertEquals(EMPTY + EXTRA_WATER, pool.measure());
+    }
+
+    @Test
+    public void verifyConnectThisToThis() {
+        IPool pool = factory.create();
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
+
+        pool.connect(pool);
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(pool));
+        Assertions.assertEquals(EMPTY, pool.measure());
+    }
+
+    @Test
+    public void verifyConnectTwoEmptyPools() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+    }
+
+    @Test
+    public void verifyConnectTwoPoolsEqualsWater() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(EXTRA_WATER, poolFirst.measure());
+        Assertions.assertEquals(EXTRA_WATER, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyAddToMesh() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+
+        poolFirst.add(EXTRA_WATER_DOUBLED);
+        poolSecond.add(EXTRA_WATER);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER + EXTRA_WATER) / 2;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyConnectTwoPools() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+
+        poolFirst.connect(poolSecond);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+
+
+        final long expected = (EXTRA_WATER_DOUBLED + EXTRA_WATER) / 2;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolToPoolMesh() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER_PLUS);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFirst);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER_PLUS) / 3;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPool() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER_PLUS);
+
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(NOT_CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(NOT_CONNECTED, poolThird.isConnected(poolSecond));
+
+        poolFirst.connect(poolSecond);
+        poolFirst.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER_PLUS) / 3;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshMasterToMaster() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolSecond.connect(poolFourth);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshMasterToSlave() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolSecond.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshSlaveToMaster() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolFirst.connect(poolFourth);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyConnectPoolMeshToPoolMeshSlaveToSlave() {
+        IPool poolFirst = factory.create();
+        IPool poolSecond = factory.create();
+        IPool poolThird = factory.create();
+        IPool poolFourth = factory.create();
+
+        poolFirst.add(EXTRA_WATER);
+        poolSecond.add(EXTRA_WATER_DOUBLED);
+        poolThird.add(EXTRA_WATER);
+        poolFourth.add(EXTRA_WATER_DOUBLED);
+
+        poolFirst.connect(poolSecond);
+        poolThird.connect(poolFourth);
+        poolFirst.connect(poolThird);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolThird));
+        Assertions.assertEquals(CONNECTED, poolSecond.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolThird.isConnected(poolFourth));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolFirst));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolSecond));
+        Assertions.assertEquals(CONNECTED, poolFourth.isConnected(poolThird));
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED + EXTRA_WATER + EXTRA_WATER_DOUBLED) / 4;
+        Assertions.assertEquals(expected, poolFirst.measure());
+        Assertions.assertEquals(expected, poolSecond.measure());
+        Assertions.assertEquals(expected, poolThird.measure());
+        Assertions.assertEquals(expected, poolFourth.measure());
+    }
+
+    @Test
+    public void verifyLongChain() {
+        final int chainLength = chainLength();
+        IPool first = factory.create();
+
+        IPool previous = first;
+        for (int i = 1; i < chainLength; i++) {
+            IPool next = factory.create();
+            previous.connect(next);
+            previous = next;
+        }
+
+        previous.add(EXTRA_WATER * chainLength);
+
+        Assertions.assertEquals(CONNECTED, first.isConnected(previous));
+        Assertions.assertEquals(EXTRA_WATER, first.measure());
+        Assertions.assertEquals(EXTRA_WATER, previous.measure());
+    }
+
+    @Test
+    public void verifyPoolsShareNetworkIndices() {
+        IPool poolFirst = factory.create();
+        final int second = factory.getNetwork().create();
+
+        poolFirst.add(EXTRA_WATER);
+        factory.getNetwork().connect(second, 0);
+
+        Assertions.assertEquals(CONNECTED, poolFirst.isConnected(factory.getPool(second)));
+        Assertions.assertEquals(EXTRA_WATER / 2, factory.getPool(second).measure());
+        Assertions.assertEquals(EXTRA_WATER / 2, factory.getNetwork().measure(0));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> factory.getPool(second + 1));
+    }
+
+    @Test
+    public void verifyPoolsOfOtherNetworkIgnored() {
+        final NetworkPoolFactoryImpl<UnionFindPoolNetwork> otherFactory = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork());
+        IPool pool = factory.create();
+        IPool otherPool = otherFactory.create();
+
+        pool.add(EXTRA_WATER);
+        pool.connect(otherPool);
+        otherPool.connect(pool);
+
+        Assertions.assertEquals(NOT_CONNECTED, pool.isConnected(otherPool));
+        Assertions.assertEquals(NOT_CONNECTED, otherPool.isConnected(pool));
+        Assertions.assertEquals(EXTRA_WATER, pool.measure());
+        Assertions.assertEquals(EMPTY, otherPool.measure());
+    }
+
+    @Test
+    public void verifyBatch() {
+        IPoolBatch batch = factory.createBatch(BATCH_SIZE);
+
+        batch.addAll(new int[]{0, 1, 2, 3}, new long[]{EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER, EXTRA_WATER_DOUBLED});
+        batch.connectAll(new int[]{0, 2}, new int[]{1, 3});
+
+        final long[] actual = new long[batch.size()];
+        batch.measureAll(actual);
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2;
+        Assertions.assertArrayEquals(new long[]{expected, expected, expected, expected}, actual);
+        Assertions.assertEquals(CONNECTED, batch.get(0).isConnected(batch.get(1)));
+        Assertions.assertEquals(NOT_CONNECTED, batch.get(0).isConnected(batch.get(2)));
+    }
+
+    @Test
+    public void verifyUncreatedPoolIndex() {
+        final N network = factory.getNetwork();
+        final IPool pool = factory.create();
+        pool.add(EXTRA_WATER);
+
+        //индекс за последним созданным бассейном не должен попадать в бассейн 0
+        final int uncreated = network.getPoolCount();
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> network.measure(uncreated));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> network.add(uncreated, EXTRA_WATER));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> network.connect(0, uncreated));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> network.isConnected(uncreated, 0));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> network.measure(-1));
+
+        Assertions.assertEquals(EXTRA_WATER, pool.measure());
+        Assertions.assertEquals(1, network.getPoolCount());
+    }
+
+    protected static final long EMPTY = 0;
+    protected static final boolean NOT_CONNECTED = false;
+    protected static final boolean CONNECTED = true;
+    protected static final long EXTRA_WATER = 10;
+    protected static final long EXTRA_WATER_PLUS = 12;
+    protected static final long EXTRA_WATER_DOUBLED = 20;
+    protected static final int BATCH_SIZE = 4;
+    protected static final int CHAIN_LENGTH = 100_000;
+
+}
+
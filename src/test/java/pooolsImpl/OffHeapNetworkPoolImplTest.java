@@ -0,0 +1,35 @@
+package pooolsImpl;
+
+import interfaces.IPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.OffHeapPoolNetwork;
+
+import java.io.IOException;
+
+/**
+ * Тест для {@code NetworkPoolImpl} поверх {@code OffHeapPoolNetwork}, маленькие сегменты заставляют
+ * длинную цепочку пересекать границы сегментов
+ */
+public class OffHeapNetworkPoolImplTest extends NetworkPoolImplTest<OffHeapPoolNetwork> {
+
+    @Override
+    protected OffHeapPoolNetwork createNetwork() {
+        return new OffHeapPoolNetwork(SEGMENT_SHIFT);
+    }
+
+    @Test
+    public void verifyClose() throws IOException {
+        IPool pool = factory.create();
+        pool.add(EXTRA_WATER);
+
+        factory.close();
+
+        Assertions.assertEquals(0, factory.getNetwork().getAllocatedBytes());
+        Assertions.assertThrows(IllegalStateException.class, pool::measure);
+        Assertions.assertThrows(IllegalStateException.class, factory::create);
+    }
+
+    private static final int SEGMENT_SHIFT = 4;
+
+}
@@ -1,5 +1,6 @@
 package pooolsImpl;
 
+import interfaces.IPoolBatch;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import poolsImpl.TypeCastWayPoolImpl;
@@ -311,12 +312,51 @@ public class TypeCastWayPoolImplTest {
         Assertions.assertEquals(expected, poolFourth.measure());
     }
 
+    @Test
+    public void verifyConnectPoolMeshToNewPool() {
+        final TypeCastWayPoolImpl[] pools = new TypeCastWayPoolImpl[MESH_SIZE];
+        for (int i = 0; i < MESH_SIZE; i++) {
+            pools[i] = new TypeCastWayPoolImpl();
+            pools[i].add(EXTRA_WATER);
+            if (i > 0) pools[0].connect(pools[i]);
+        }
+
+        //большая сеть присоединяется к новому бассейну, master бассейн должен остаться у большой сети
+        final TypeCastWayPoolImpl newPool = new TypeCastWayPoolImpl();
+        newPool.add(EXTRA_WATER_DOUBLED + MESH_SIZE * EXTRA_WATER);
+        newPool.connect(pools[MESH_SIZE - 1]);
+
+        Assertions.assertEquals(CONNECTED, newPool.isConnected(pools[0]));
+        Assertions.assertEquals(CONNECTED, pools[0].isConnected(newPool));
+        Assertions.assertEquals(CONNECTED, pools[1].isConnected(pools[MESH_SIZE - 1]));
+        Assertions.assertEquals(2 * EXTRA_WATER, newPool.measure());
+        Assertions.assertEquals(2 * EXTRA_WATER, pools[1].measure());
+    }
+
+    @Test
+    public void verifyBatch() {
+        IPoolBatch batch = TypeCastWayPoolImpl.createBatch(BATCH_SIZE);
+
+        batch.addAll(new int[]{0, 1, 2, 3}, new long[]{EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER, EXTRA_WATER_DOUBLED});
+        batch.connectAll(new int[]{0, 2}, new int[]{1, 3});
+
+        final long[] actual = new long[batch.size()];
+        batch.measureAll(actual);
+
+        final long expected = (EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2;
+        Assertions.assertArrayEquals(new long[]{expected, expected, expected, expected}, actual);
+        Assertions.assertEquals(CONNECTED, batch.get(0).isConnected(batch.get(1)));
+        Assertions.assertEquals(NOT_CONNECTED, batch.get(0).isConnected(batch.get(2)));
+    }
+
     private static final long EMPTY = 0;
     private static final boolean NOT_CONNECTED = false;
     private static final boolean CONNECTED = true;
     private static final long EXTRA_WATER = 10;
     private static final long EXTRA_WATER_PLUS = 12;
     private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final int BATCH_SIZE = 4;
+    private static final int MESH_SIZE = 100;
 
 }
 
@@ -0,0 +1,101 @@
+package pooolsImpl;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPoolBatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.UnionFindPoolNetwork;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Тест для {@code NetworkPoolImpl} поверх {@code UnionFindPoolNetwork}
+ */
+public class UnionFindNetworkPoolImplTest extends NetworkPoolImplTest<UnionFindPoolNetwork> {
+
+    @Override
+    protected UnionFindPoolNetwork createNetwork() {
+        return new UnionFindPoolNetwork();
+    }
+
+    @Test
+    public void verifyConnectAllParallel() {
+        final IPoolBatch parallel = factory.createBatch(PARALLEL_BATCH_SIZE);
+        final IPoolBatch sequential = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()).createBatch(PARALLEL_BATCH_SIZE);
+
+        final Random random = new Random(PARALLEL_BATCH_SIZE);
+        final int[] first = new int[PARALLEL_EDGES];
+        final int[] second = new int[PARALLEL_EDGES];
+        for (int i = 0; i < PARALLEL_EDGES; i++) {
+            first[i] = random.nextInt(PARALLEL_BATCH_SIZE);
+            second[i] = random.nextInt(PARALLEL_BATCH_SIZE);
+        }
+
+        final int[] all = IntStream.range(0, PARALLEL_BATCH_SIZE).toArray();
+        final long[] water = new long[PARALLEL_BATCH_SIZE];
+        for (int i = 0; i < PARALLEL_BATCH_SIZE; i++) {
+            water[i] = random.nextLong() & MAX_PARALLEL_WATER;
+        }
+        parallel.addAll(all, water);
+        sequential.addAll(all, water);
+
+        //часть каналов соединяется заранее, чтобы параллельно сливались сети разного размера и уровня
+        final int[] firstPrepared = Arrays.copyOf(first, PREPARED_EDGES);
+        final int[] secondPrepared = Arrays.copyOf(second, PREPARED_EDGES);
+        parallel.connectAll(firstPrepared, secondPrepared);
+        sequential.connectAll(firstPrepared, secondPrepared);
+
+        parallel.connectAllParallel(first, second);
+        sequential.connectAll(first, second);
+
+        for (int i = 0; i < PARALLEL_EDGES; i++) {
+            Assertions.assertEquals(CONNECTED, parallel.get(first[i]).isConnected(parallel.get(second[i])) || first[i] == second[i]);
+
+            final int pool = random.nextInt(PARALLEL_BATCH_SIZE);
+            final int other = random.nextInt(PARALLEL_BATCH_SIZE);
+            Assertions.assertEquals(
+                    sequential.get(pool).isConnected(sequential.get(other)),
+                    parallel.get(pool).isConnected(parallel.get(other))
+            );
+        }
+
+        //точное среднее каждой компоненты, при пересчете по шагам каждое слияние теряет меньше единицы на округлении
+        final int[] component = IntStream.range(0, PARALLEL_BATCH_SIZE).toArray();
+        for (int i = 0; i < PARALLEL_EDGES; i++) {
+            component[root(component, first[i])] = root(component, second[i]);
+        }
+        final long[] componentWater = new long[PARALLEL_BATCH_SIZE];
+        final long[] componentSize = new long[PARALLEL_BATCH_SIZE];
+        for (int i = 0; i < PARALLEL_BATCH_SIZE; i++) {
+            componentWater[root(component, i)] += water[i];
+            componentSize[root(component, i)]++;
+        }
+
+        final long[] actual = new long[PARALLEL_BATCH_SIZE];
+        final long[] expected = new long[PARALLEL_BATCH_SIZE];
+        parallel.measureAll(actual);
+        sequential.measureAll(expected);
+        for (int i = 0; i < PARALLEL_BATCH_SIZE; i++) {
+            final int root = root(component, i);
+            final long mean = componentWater[root] / componentSize[root];
+
+            Assertions.assertTrue(actual[i] <= mean && actual[i] > mean - componentSize[root], "pool " + i + ": " + actual[i] + " vs " + mean);
+            Assertions.assertTrue(Math.abs(actual[i] - expected[i]) < componentSize[root], "pool " + i + ": " + actual[i] + " vs " + expected[i]);
+        }
+    }
+
+    private static int root(int[] component, int pool) {
+        while (component[pool] != pool) {
+            pool = component[pool];
+        }
+        return pool;
+    }
+
+    private static final int PARALLEL_BATCH_SIZE = 50_000;
+    private static final int PARALLEL_EDGES = 40_000;
+    private static final int PREPARED_EDGES = 10_000;
+    private static final long MAX_PARALLEL_WATER = (1L << 40) - 1;
+
+}
@@ -0,0 +1,194 @@
+package trace;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import utils.ConcurrentUnionFindPoolNetwork;
+import utils.UnionFindPoolNetwork;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тест для {@code RecordingPoolFactory}
+ */
+public class RecordingPoolFactoryTest {
+
+    @Test
+    public void verifyRecordAndReplay() throws IOException {
+        final Path path = Files.createTempFile("pools", ".trace");
+        try {
+            long expectedChecksum = 0;
+            try (RecordingPoolFactory factory = new RecordingPoolFactory(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()), path, CHUNK_SIZE)) {
+                final IPool[] pools = new IPool[POOL_COUNT];
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    pools[i] = factory.create();
+                    pools[i].add(EXTRA_WATER * i);
+                }
+                for (int i = 1; i < POOL_COUNT; i++) {
+                    if (i % 3 != 0) pools[i].connect(pools[i - 1]);
+                }
+
+                Assertions.assertEquals(CONNECTED, pools[1].isConnected(pools[0]));
+                Assertions.assertEquals(NOT_CONNECTED, pools[3].isConnected(pools[2]));
+
+                for (IPool pool : pools) {
+                    expectedChecksum = 31 * expectedChecksum + pool.measure();
+                }
+            }
+
+            final TraceReplayReport report = new TraceReplayer(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork())).replay(path);
+
+            Assertions.assertEquals(POOL_COUNT, report.getCreateCount());
+            Assertions.assertEquals(POOL_COUNT - 1 - (POOL_COUNT - 1) / 3, report.getConnectCount());
+            Assertions.assertEquals(POOL_COUNT, report.getAddCount());
+            Assertions.assertEquals(POOL_COUNT, report.getMeasureCount());
+            Assertions.assertEquals(expectedChecksum, report.getChecksum());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void verifyConcurrentRecording() throws IOException, InterruptedException {
+        final Path path = Files.createTempFile("pools", ".trace");
+        try {
+            try (RecordingPoolFactory factory = new RecordingPoolFactory(new NetworkPoolFactoryImpl<>(new ConcurrentUnionFindPoolNetwork()), path, CHUNK_SIZE)) {
+                final IPool shared = factory.create();
+
+                final List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    threads.add(new Thread(() -> {
+                        for (int k = 0; k < POOL_COUNT; k++) {
+                            final IPool pool = factory.create();
+                            pool.add(EXTRA_WATER);
+                            pool.connect(shared);
+                        }
+                    }));
+                }
+                threads.forEach(Thread::start);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            }
+
+            final TraceReplayReport report = new TraceReplayer(new NetworkPoolFactoryImpl<>(new ConcurrentUnionFindPoolNetwork())).replay(path);
+
+            Assertions.assertEquals(THREADS * POOL_COUNT + 1, report.getCreateCount());
+            Assertions.assertEquals(THREADS * POOL_COUNT, report.getConnectCount());
+            Assertions.assertEquals(THREADS * POOL_COUNT, report.getAddCount());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void verifyBoundedQueueKeepsAllRecords() throws IOException, InterruptedException {
+        final Path path = Files.createTempFile("pools", ".trace");
+        try {
+            try (RecordingPoolFactory factory = new RecordingPoolFactory(
+                    new NetworkPoolFactoryImpl<>(new ConcurrentUnionFindPoolNetwork()), path, CHUNK_SIZE, 1, FLUSH_INTERVAL)) {
+                final IPool shared = factory.create();
+
+                final List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    threads.add(new Thread(() -> {
+                        for (int k = 0; k < POOL_COUNT; k++) {
+                            final IPool pool = factory.create();
+                            pool.add(EXTRA_WATER);
+                            pool.connect(shared);
+                        }
+                    }));
+                }
+                threads.forEach(Thread::start);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            }
+
+            final TraceReplayReport report = new TraceReplayer(new NetworkPoolFactoryImpl<>(new ConcurrentUnionFindPoolNetwork())).replay(path);
+
+            Assertions.assertEquals(THREADS * POOL_COUNT + 1, report.getCreateCount());
+            Assertions.assertEquals(THREADS * POOL_COUNT, report.getConnectCount());
+            Assertions.assertEquals(THREADS * POOL_COUNT, report.getAddCount());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void verifyIdleChunksAreFlushed() throws IOException, InterruptedException {
+        final Path path = Files.createTempFile("pools", ".trace");
+        try {
+            try (RecordingPoolFactory factory = new RecordingPoolFactory(
+                    new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()), path, RecordingPoolFactory.DEFAULT_CHUNK_SIZE,
+                    RecordingPoolFactory.DEFAULT_MAX_QUEUED_CHUNKS, FLUSH_INTERVAL)) {
+                final IPool idle = factory.create();
+                idle.add(EXTRA_WATER);
+
+                //поток записывает пару операций и завершается, его буфер тоже должен попасть в файл
+                final Thread finished = new Thread(() -> factory.create().connect(idle));
+                finished.start();
+                finished.join();
+
+                final long deadline = System.nanoTime() + WAIT_TIMEOUT.toNanos();
+                final long expectedSize = TraceFormat.HEADER_SIZE + 2 * TraceFormat.recordSize(TraceFormat.CREATE)
+                        + TraceFormat.recordSize(TraceFormat.ADD) + TraceFormat.recordSize(TraceFormat.CONNECT);
+                while (Files.size(path) < expectedSize && System.nanoTime() < deadline) {
+                    Thread.sleep(FLUSH_INTERVAL.toMillis());
+                }
+
+                Assertions.assertEquals(expectedSize, Files.size(path));
+            }
+
+            final TraceReplayReport report = new TraceReplayer(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork())).replay(path);
+
+            Assertions.assertEquals(2, report.getCreateCount());
+            Assertions.assertEquals(1, report.getConnectCount());
+            Assertions.assertEquals(1, report.getAddCount());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void verifyWriteErrorStopsRecording() throws IOException, InterruptedException {
+        final Path path = Path.of("/dev/full");
+        Assumptions.assumeTrue(Files.isWritable(path));
+
+        final RecordingPoolFactory factory = new RecordingPoolFactory(
+                new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork()), path, CHUNK_SIZE, 1, FLUSH_INTERVAL);
+        final IPool first = factory.create();
+        final IPool second = factory.create();
+
+        final long deadline = System.nanoTime() + WAIT_TIMEOUT.toNanos();
+        while (factory.getWriteError() == null && System.nanoTime() < deadline) {
+            first.add(EXTRA_WATER);
+            Thread.sleep(1);
+        }
+        Assertions.assertNotNull(factory.getWriteError());
+
+        //бассейны продолжают работать без записи
+        second.add(EXTRA_WATER);
+        first.connect(second);
+        Assertions.assertEquals(CONNECTED, first.isConnected(second));
+
+        final IOException closeError = Assertions.assertThrows(IOException.class, factory::close);
+        Assertions.assertSame(factory.getWriteError(), closeError);
+    }
+
+    private static final boolean NOT_CONNECTED = false;
+    private static final boolean CONNECTED = true;
+    private static final long EXTRA_WATER = 10;
+    private static final int POOL_COUNT = 10_000;
+    private static final int CHUNK_SIZE = 256;
+    private static final int THREADS = 4;
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(10);
+    private static final Duration WAIT_TIMEOUT = Duration.ofSeconds(10);
+}
@@ -0,0 +1,80 @@
+package trace;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.UnionFindPoolNetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Тест для {@code TraceWriter} и {@code TraceReplayer}
+ */
+public class TraceReplayerTest {
+
+    @Test
+    public void verifyReplay() throws IOException {
+        final Path path = Files.createTempFile("pools", ".trace");
+        try {
+            try (TraceWriter writer = new TraceWriter(path, BUFFER_SIZE)) {
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    writer.create(i);
+                    writer.add(i, EXTRA_WATER * i);
+                }
+                for (int i = 1; i < POOL_COUNT; i += 2) {
+                    writer.connect(i - 1, i);
+                }
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    writer.measure(i);
+                }
+            }
+
+            final IPool[] pools = new IPool[POOL_COUNT];
+            final NetworkPoolFactoryImpl<UnionFindPoolNetwork> factory = new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork());
+            long expectedChecksum = 0;
+            for (int i = 0; i < POOL_COUNT; i++) {
+                pools[i] = factory.create();
+                pools[i].add(EXTRA_WATER * i);
+            }
+            for (int i = 1; i < POOL_COUNT; i += 2) {
+                pools[i - 1].connect(pools[i]);
+            }
+            for (IPool pool : pools) {
+                expectedChecksum = 31 * expectedChecksum + pool.measure();
+            }
+
+            final TraceReplayReport report = new TraceReplayer(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork())).replay(path);
+
+            Assertions.assertEquals(POOL_COUNT, report.getCreateCount());
+            Assertions.assertEquals(POOL_COUNT / 2, report.getConnectCount());
+            Assertions.assertEquals(POOL_COUNT, report.getAddCount());
+            Assertions.assertEquals(POOL_COUNT, report.getMeasureCount());
+            Assertions.assertEquals(expectedChecksum, report.getChecksum());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void verifyReplayOfCorruptedTrace() throws IOException {
+        final Path path = Files.createTempFile("pools", ".trace");
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(TraceFormat.HEADER_SIZE + 2).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(TraceFormat.MAGIC).putInt(TraceFormat.VERSION).put(TraceFormat.CREATE).put((byte) 0);
+            Files.write(path, header.array());
+
+            Assertions.assertThrows(IOException.class, () -> new TraceReplayer(new NetworkPoolFactoryImpl<>(new UnionFindPoolNetwork())).replay(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static final long EXTRA_WATER = 10;
+    private static final int POOL_COUNT = 10_000;
+    private static final int BUFFER_SIZE = 64;
+}
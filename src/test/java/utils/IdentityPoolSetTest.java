@@ -0,0 +1,90 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * Тест для {@code IdentityPoolSet}
+ */
+public class IdentityPoolSetTest {
+
+    @Test
+    public void verifyAddAndContains() {
+        final IdentityPoolSet<Object> set = new IdentityPoolSet<>();
+        final List<Object> elements = new ArrayList<>();
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            final Object element = new Object();
+            elements.add(element);
+            Assertions.assertTrue(set.add(element));
+        }
+
+        Assertions.assertEquals(ELEMENT_COUNT, set.size());
+        for (Object element : elements) {
+            Assertions.assertTrue(set.contains(element));
+            Assertions.assertFalse(set.add(element));
+        }
+        Assertions.assertEquals(ELEMENT_COUNT, set.size());
+        Assertions.assertFalse(set.contains(new Object()));
+        Assertions.assertFalse(set.contains(null));
+    }
+
+    @Test
+    public void verifyComparesByIdentity() {
+        final IdentityPoolSet<String> set = new IdentityPoolSet<>();
+        final String element = new String("pool");
+
+        set.add(element);
+
+        Assertions.assertTrue(set.contains(element));
+        Assertions.assertFalse(set.contains(new String("pool")));
+    }
+
+    @Test
+    public void verifyTraversal() {
+        final IdentityPoolSet<Integer> set = new IdentityPoolSet<>();
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            set.add(i);
+        }
+
+        final long[] sum = new long[1];
+        set.forEach((Integer element) -> sum[0] += element);
+
+        Assertions.assertEquals((long) ELEMENT_COUNT * (ELEMENT_COUNT - 1) / 2, sum[0]);
+        Assertions.assertTrue(set.anyMatch((Integer element) -> element == ELEMENT_COUNT - 1));
+        Assertions.assertFalse(set.anyMatch((Integer element) -> element < 0));
+        Assertions.assertThrows(NullPointerException.class, () -> set.add(null));
+    }
+
+    @Test
+    public void verifyNullTolerantHelpers() {
+        IdentityPoolSet<Object> set = null;
+        final Object element = new Object();
+
+        Assertions.assertEquals(0, IdentityPoolSet.sizeOf(set));
+        Assertions.assertFalse(IdentityPoolSet.containsIn(set, element));
+
+        set = IdentityPoolSet.addTo(set, element);
+
+        Assertions.assertSame(set, IdentityPoolSet.addTo(set, element));
+        Assertions.assertEquals(1, IdentityPoolSet.sizeOf(set));
+        Assertions.assertTrue(IdentityPoolSet.containsIn(set, element));
+    }
+
+    @Test
+    public void verifyModificationDuringTraversal() {
+        final IdentityPoolSet<Object> set = new IdentityPoolSet<>();
+        set.add(new Object());
+
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> set.forEach((Object element) -> set.add(new Object())));
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> set.anyMatch((Object element) -> !set.add(new Object())));
+
+        //повторное добавление существующего элемента множество не меняет
+        set.forEach(set::add);
+    }
+
+    private static final int ELEMENT_COUNT = 100;
+}
@@ -0,0 +1,98 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Тест для {@code MappedPoolNetwork}
+ */
+public class MappedPoolNetworkTest {
+
+    @Test
+    public void verifyRelayoutMatchesReference() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final UnionFindPoolNetwork reference = new UnionFindPoolNetwork();
+            try (MappedPoolNetwork network = MappedPoolNetwork.open(directory, SEGMENT_SHIFT)) {
+                network.create(POOL_COUNT);
+                reference.create(POOL_COUNT);
+
+                final Random random = new Random(SEED);
+                for (int i = 0; i < OPERATION_COUNT; i++) {
+                    final int first = random.nextInt(POOL_COUNT);
+                    final int second = random.nextInt(POOL_COUNT);
+                    if (random.nextBoolean()) {
+                        network.connect(first, second);
+                        reference.connect(first, second);
+                    } else {
+                        network.add(first, second);
+                        reference.add(first, second);
+                    }
+                }
+
+                network.relayout();
+                assertSameNetwork(reference, network);
+
+                //сеть после перестановки продолжает работать как обычно
+                network.connect(0, POOL_COUNT - 1);
+                reference.connect(0, POOL_COUNT - 1);
+                network.add(POOL_COUNT - 1, EXTRA_WATER);
+                reference.add(POOL_COUNT - 1, EXTRA_WATER);
+                network.relayout();
+                assertSameNetwork(reference, network);
+            }
+
+            try (MappedPoolNetwork reopened = MappedPoolNetwork.open(directory)) {
+                assertSameNetwork(reference, reopened);
+            }
+
+            try (Stream<Path> files = Files.list(directory)) {
+                //заголовок и сегменты только последнего поколения
+                Assertions.assertEquals(1 + POOL_COUNT / (1 << SEGMENT_SHIFT), files.count());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void verifyOpenRejectsMalformedDirectory() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        final Path meta = directory.resolve("network");
+        try {
+            Files.write(meta, new byte[Long.BYTES * 4]);
+
+            Assertions.assertThrows(IOException.class, () -> MappedPoolNetwork.open(directory));
+            Assertions.assertEquals(Long.BYTES * 4, Files.size(meta));
+        } finally {
+            Files.deleteIfExists(meta);
+            Files.delete(directory);
+        }
+    }
+
+    private static void assertSameNetwork(UnionFindPoolNetwork expected, MappedPoolNetwork actual) {
+        Assertions.assertEquals(expected.getPoolCount(), actual.getPoolCount());
+        for (int pool = 0; pool < expected.getPoolCount(); pool++) {
+            Assertions.assertEquals(expected.measure(pool), actual.measure(pool));
+            Assertions.assertEquals(expected.isConnected(pool, 0), actual.isConnected(pool, 0));
+            Assertions.assertEquals(expected.isConnected(pool, pool / 2), actual.isConnected(pool, pool / 2));
+        }
+    }
+
+    private static final int SEGMENT_SHIFT = 8;
+    private static final int POOL_COUNT = 4096;
+    private static final int OPERATION_COUNT = 6000;
+    private static final long SEED = 42;
+    private static final long EXTRA_WATER = 10;
+}
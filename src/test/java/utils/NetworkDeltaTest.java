@@ -0,0 +1,106 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Тест для {@code NetworkDelta}, {@code OffHeapPoolNetwork.snapshotDelta} и {@code OffHeapPoolNetwork.applyDelta}
+ */
+public class NetworkDeltaTest {
+
+    @Test
+    public void verifyDeltasRestoreNetwork() throws IOException {
+        final Path base = Files.createTempFile("pools", ".snapshot");
+        final Path firstDelta = Files.createTempFile("pools", ".delta");
+        final Path secondDelta = Files.createTempFile("pools", ".delta");
+        try (OffHeapPoolNetwork network = new OffHeapPoolNetwork(SEGMENT_SHIFT)) {
+            network.create(POOL_COUNT);
+            for (int i = 0; i < POOL_COUNT; i++) {
+                network.add(i, EXTRA_WATER);
+            }
+            network.snapshot(base).await();
+            Assertions.assertEquals(0, network.getDirtyBytes());
+
+            //изменения в одном сегменте задевают по странице каждого столбца
+            network.connect(0, 1);
+            network.add(1, 2 * EXTRA_WATER);
+            Assertions.assertEquals(3 * PAGE_SIZE, network.getDirtyBytes());
+            final NetworkDelta delta = network.snapshotDelta(firstDelta);
+            Assertions.assertEquals(0, network.getDirtyBytes());
+            delta.await();
+            Assertions.assertTrue(delta.getByteSize() < network.getAllocatedBytes());
+
+            network.connect(POOL_COUNT - 1, 0);
+            final int created = network.create(POOL_COUNT);
+            network.connect(created, 1);
+            network.add(created + POOL_COUNT - 1, EXTRA_WATER);
+            network.snapshotDelta(secondDelta).await();
+
+            try (OffHeapPoolNetwork restored = OffHeapPoolNetwork.open(base)) {
+                restored.applyDelta(firstDelta);
+                Assertions.assertEquals(POOL_COUNT, restored.getPoolCount());
+                Assertions.assertEquals(2 * EXTRA_WATER, restored.measure(0));
+                Assertions.assertFalse(restored.isConnected(0, POOL_COUNT - 1));
+
+                restored.applyDelta(secondDelta);
+                Assertions.assertEquals(network.getPoolCount(), restored.getPoolCount());
+                for (int i = 0; i < network.getPoolCount(); i++) {
+                    Assertions.assertEquals(network.measure(i), restored.measure(i));
+                    Assertions.assertEquals(network.isConnected(i, 0), restored.isConnected(i, 0));
+                }
+
+                //примененные изменения не считаются новыми
+                Assertions.assertEquals(0, restored.getDirtyBytes());
+            }
+        } finally {
+            Files.deleteIfExists(base);
+            Files.deleteIfExists(firstDelta);
+            Files.deleteIfExists(secondDelta);
+        }
+    }
+
+    @Test
+    public void verifyDeltaRequiresSnapshot() throws IOException {
+        final Path path = Files.createTempFile("pools", ".delta");
+        try (OffHeapPoolNetwork network = new OffHeapPoolNetwork(SEGMENT_SHIFT)) {
+            network.create(POOL_COUNT);
+
+            Assertions.assertThrows(IllegalStateException.class, () -> network.snapshotDelta(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void verifyApplyRejectsOtherLayout() throws IOException {
+        final Path base = Files.createTempFile("pools", ".snapshot");
+        final Path delta = Files.createTempFile("pools", ".delta");
+        try (OffHeapPoolNetwork network = new OffHeapPoolNetwork(SEGMENT_SHIFT);
+             OffHeapPoolNetwork other = new OffHeapPoolNetwork(SEGMENT_SHIFT + 1)) {
+            network.create(POOL_COUNT);
+            network.snapshot(base).await();
+
+            other.create(POOL_COUNT);
+            other.snapshot(delta).await();
+            other.add(0, EXTRA_WATER);
+            other.snapshotDelta(delta).await();
+
+            try (OffHeapPoolNetwork restored = OffHeapPoolNetwork.open(base)) {
+                Assertions.assertThrows(IOException.class, () -> restored.applyDelta(delta));
+                Assertions.assertThrows(IOException.class, () -> restored.applyDelta(base));
+            }
+        } finally {
+            Files.deleteIfExists(base);
+            Files.deleteIfExists(delta);
+        }
+    }
+
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int PAGE_SIZE = 4096;
+    private static final int POOL_COUNT = 4 << SEGMENT_SHIFT;
+    private static final long EXTRA_WATER = 10;
+}
@@ -0,0 +1,116 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Тест для {@code NetworkSnapshot} и {@code OffHeapPoolNetwork.open}
+ */
+public class NetworkSnapshotTest {
+
+    @Test
+    public void verifySnapshotIsConsistentWhileNetworkChanges() throws IOException {
+        final Path path = Files.createTempFile("pools", ".snapshot");
+        try (OffHeapPoolNetwork network = new OffHeapPoolNetwork(SEGMENT_SHIFT)) {
+            final int first = network.create(POOL_COUNT);
+            for (int i = 0; i < POOL_COUNT; i++) {
+                network.add(first + i, EXTRA_WATER * (i % 2 + 1));
+            }
+            for (int i = 1; i < POOL_COUNT; i += 2) {
+                network.connect(first + i - 1, first + i);
+            }
+
+            final NetworkSnapshot snapshot = network.snapshot(path);
+
+            //изменения после начала снимка в него не попадают
+            for (int i = 0; i < POOL_COUNT; i++) {
+                network.add(first + i, EXTRA_WATER);
+            }
+            network.connect(first, first + POOL_COUNT - 1);
+            network.create(POOL_COUNT);
+            snapshot.await();
+
+            try (OffHeapPoolNetwork restored = OffHeapPoolNetwork.open(path)) {
+                Assertions.assertEquals(POOL_COUNT, restored.getPoolCount());
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    Assertions.assertEquals((EXTRA_WATER + 2 * EXTRA_WATER) / 2, restored.measure(first + i));
+                }
+                Assertions.assertTrue(restored.isConnected(first, first + 1));
+                Assertions.assertFalse(restored.isConnected(first, first + POOL_COUNT - 1));
+
+                //открытая сеть работает как обычная, а файл снимка не меняется
+                restored.connect(first, first + 2);
+                restored.add(first, 4 * EXTRA_WATER);
+                final int created = restored.create();
+                Assertions.assertEquals(POOL_COUNT, created);
+                Assertions.assertEquals((EXTRA_WATER + 2 * EXTRA_WATER) / 2 + EXTRA_WATER, restored.measure(first + 3));
+            }
+
+            try (OffHeapPoolNetwork reopened = OffHeapPoolNetwork.open(path)) {
+                Assertions.assertFalse(reopened.isConnected(first, first + 2));
+            }
+
+            Assertions.assertTrue(network.isConnected(first, first + POOL_COUNT - 1));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void verifyOpenRejectsMalformedFile() throws IOException {
+        final Path path = Files.createTempFile("pools", ".snapshot");
+        try {
+            Files.write(path, new byte[NetworkSnapshot.HEADER_SIZE]);
+
+            Assertions.assertThrows(IOException.class, () -> OffHeapPoolNetwork.open(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void verifySegmentCopiesAreReleased() throws IOException {
+        final Path path = Files.createTempFile("pools", ".snapshot");
+        try (OffHeapPoolNetwork network = new OffHeapPoolNetwork(LARGE_SEGMENT_SHIFT)) {
+            final int first = network.create(LARGE_POOL_COUNT);
+            final long segmentBytes = network.getAllocatedBytes() / (LARGE_POOL_COUNT >>> LARGE_SEGMENT_SHIFT);
+            final long directBytes = directMemoryUsed();
+
+            final NetworkSnapshot snapshot = network.snapshot(path);
+            //каждый сегмент меняется сразу после начала снимка, поэтому почти все сегменты копируются
+            for (int i = 0; i < LARGE_POOL_COUNT; i += 1 << LARGE_SEGMENT_SHIFT) {
+                network.add(first + i, EXTRA_WATER);
+            }
+            snapshot.await();
+
+            Assertions.assertTrue(directMemoryUsed() - directBytes < segmentBytes, "копии сегментов не освобождены");
+
+            try (OffHeapPoolNetwork restored = OffHeapPoolNetwork.open(path)) {
+                for (int i = 0; i < LARGE_POOL_COUNT; i += 1 << LARGE_SEGMENT_SHIFT) {
+                    Assertions.assertEquals(0, restored.measure(first + i));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        throw new IllegalStateException("Нет пула direct буферов");
+    }
+
+    private static final int SEGMENT_SHIFT = 4;
+    private static final int LARGE_SEGMENT_SHIFT = 16;
+    private static final int LARGE_POOL_COUNT = 8 << LARGE_SEGMENT_SHIFT;
+    private static final int POOL_COUNT = 100;
+    private static final long EXTRA_WATER = 10;
+}
@@ -0,0 +1,81 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Тест для {@code WaterArithmetic}
+ */
+public class WaterArithmeticTest {
+
+    private final WaterArithmetic exact = WaterArithmetic.of(WaterOverflowPolicy.EXACT_128);
+
+    private final WaterArithmetic saturate = WaterArithmetic.of(WaterOverflowPolicy.SATURATE);
+
+    private final WaterArithmetic strict = WaterArithmetic.of(WaterOverflowPolicy.THROW);
+
+    @Test
+    public void verifyWeightedAverageWithoutOverflow() {
+        Assertions.assertEquals((EXTRA_WATER + EXTRA_WATER_DOUBLED) / 2, exact.weightedAverage(EXTRA_WATER, 1, EXTRA_WATER_DOUBLED, 1));
+        Assertions.assertEquals(EXTRA_WATER_PLUS, saturate.weightedAverage(EXTRA_WATER_PLUS, 3, EXTRA_WATER_PLUS, 5));
+        Assertions.assertEquals(-EXTRA_WATER / 3, strict.weightedAverage(-EXTRA_WATER, 1, 0, 2));
+    }
+
+    @Test
+    public void verifyWeightedAverageOfHugeAmounts() {
+        Assertions.assertEquals(Long.MAX_VALUE, exact.weightedAverage(Long.MAX_VALUE, BIG_SIZE, Long.MAX_VALUE, BIG_SIZE));
+        Assertions.assertEquals(Long.MIN_VALUE, exact.weightedAverage(Long.MIN_VALUE, BIG_SIZE, Long.MIN_VALUE, 1));
+        Assertions.assertEquals(expected(Long.MAX_VALUE, BIG_SIZE, Long.MIN_VALUE, 1), exact.weightedAverage(Long.MAX_VALUE, BIG_SIZE, Long.MIN_VALUE, 1));
+    }
+
+    @Test
+    public void verifyWeightedAverageMatchesBigInteger() {
+        final Random random = new Random(ITERATIONS);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long firstAmount = random.nextLong();
+            final long secondAmount = random.nextLong();
+            final long firstSize = 1 + random.nextInt(Integer.MAX_VALUE);
+            final long secondSize = 1 + random.nextInt(Integer.MAX_VALUE);
+
+            Assertions.assertEquals(
+                    expected(firstAmount, firstSize, secondAmount, secondSize),
+                    exact.weightedAverage(firstAmount, firstSize, secondAmount, secondSize)
+            );
+        }
+    }
+
+    @Test
+    public void verifyOverflowPolicies() {
+        Assertions.assertEquals(Long.MAX_VALUE, saturate.weightedAverage(Long.MAX_VALUE, BIG_SIZE, Long.MAX_VALUE, BIG_SIZE));
+        Assertions.assertEquals(Long.MIN_VALUE, saturate.weightedAverage(Long.MIN_VALUE, BIG_SIZE, Long.MIN_VALUE, 1));
+        Assertions.assertEquals(Long.MAX_VALUE, saturate.weightedAverage(EXTRA_WATER, 1, Long.MAX_VALUE, BIG_SIZE));
+        Assertions.assertThrows(ArithmeticException.class, () -> strict.weightedAverage(Long.MAX_VALUE, BIG_SIZE, Long.MAX_VALUE, BIG_SIZE));
+
+        Assertions.assertEquals(Long.MAX_VALUE, exact.add(Long.MAX_VALUE, EXTRA_WATER));
+        Assertions.assertEquals(Long.MIN_VALUE, saturate.add(Long.MIN_VALUE, -EXTRA_WATER));
+        Assertions.assertThrows(ArithmeticException.class, () -> strict.add(Long.MAX_VALUE, EXTRA_WATER));
+    }
+
+    @Test
+    public void verifyAddToLevel() {
+        Assertions.assertEquals(EXTRA_WATER_PLUS, exact.addToLevel(EXTRA_WATER, EXTRA_WATER_DOUBLED, EXTRA_WATER));
+        Assertions.assertEquals(Long.MAX_VALUE, exact.addToLevel(Long.MAX_VALUE - 1, EXTRA_WATER_DOUBLED, EXTRA_WATER));
+    }
+
+    private static long expected(long firstAmount, long firstSize, long secondAmount, long secondSize) {
+        return BigInteger.valueOf(firstAmount).multiply(BigInteger.valueOf(firstSize))
+                .add(BigInteger.valueOf(secondAmount).multiply(BigInteger.valueOf(secondSize)))
+                .divide(BigInteger.valueOf(firstSize + secondSize))
+                .longValueExact();
+    }
+
+    private static final long EXTRA_WATER = 10;
+    private static final long EXTRA_WATER_PLUS = 12;
+    private static final long EXTRA_WATER_DOUBLED = 20;
+    private static final long BIG_SIZE = 1_000_000;
+    private static final int ITERATIONS = 100_000;
+}
@@ -0,0 +1,313 @@
+package wal;
+
+import factory.NetworkPoolFactoryImpl;
+import interfaces.IPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import trace.TraceFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Тест для {@code DurablePoolNetwork} и {@code WriteAheadLog}
+ */
+public class DurablePoolNetworkTest {
+
+    @Test
+    public void verifyRecoveryFromLogOnly() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final DurablePoolNetwork crashed = DurablePoolNetwork.open(directory);
+            final int first = crashed.create(POOL_COUNT);
+            for (int i = 0; i < POOL_COUNT; i++) {
+                crashed.add(first + i, EXTRA_WATER * (i % 2 + 1));
+            }
+            for (int i = 1; i < POOL_COUNT; i += 2) {
+                crashed.connect(first + i - 1, first + i);
+            }
+            crashed.sync();
+
+            //сеть не закрывается, как при падении процесса
+            try (DurablePoolNetwork recovered = DurablePoolNetwork.open(directory)) {
+                Assertions.assertEquals(POOL_COUNT, recovered.getPoolCount());
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    Assertions.assertEquals((EXTRA_WATER + 2 * EXTRA_WATER) / 2, recovered.measure(first + i));
+                }
+                Assertions.assertTrue(recovered.isConnected(first, first + 1));
+                Assertions.assertFalse(recovered.isConnected(first, first + 2));
+            }
+            crashed.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void verifyRecoveryFromSnapshotAndLogTail() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final IPool first;
+            final IPool second;
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                final NetworkPoolFactoryImpl<DurablePoolNetwork> factory = new NetworkPoolFactoryImpl<>(network);
+                first = factory.create();
+                second = factory.create();
+                first.add(EXTRA_WATER);
+
+                network.checkpoint();
+
+                //эти операции попадают только в журнал нового поколения
+                first.connect(second);
+                second.add(2 * EXTRA_WATER);
+                factory.create().add(EXTRA_WATER);
+            }
+
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(2, files.count());
+            }
+
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                final NetworkPoolFactoryImpl<DurablePoolNetwork> factory = new NetworkPoolFactoryImpl<>(network);
+                Assertions.assertEquals(3, network.getPoolCount());
+
+                final IPool recoveredFirst = factory.getPool(0);
+                final IPool recoveredSecond = factory.getPool(1);
+                Assertions.assertTrue(recoveredFirst.isConnected(recoveredSecond));
+                Assertions.assertEquals(EXTRA_WATER / 2 + EXTRA_WATER, recoveredFirst.measure());
+                Assertions.assertEquals(EXTRA_WATER, factory.getPool(2).measure());
+                Assertions.assertFalse(recoveredFirst.isConnected(factory.getPool(2)));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void verifyRecoveryFromIncrementalCheckpoints() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final DurablePoolNetwork crashed = DurablePoolNetwork.open(directory);
+            final int first = crashed.create(POOL_COUNT);
+            for (int i = 0; i < POOL_COUNT; i++) {
+                crashed.add(first + i, EXTRA_WATER);
+            }
+            crashed.checkpoint();
+
+            crashed.connect(first, first + 1);
+            crashed.add(first, 2 * EXTRA_WATER);
+            crashed.checkpoint();
+
+            crashed.connect(first + 2, first + 1);
+            crashed.checkpoint();
+            crashed.completeCheckpoint();
+
+            crashed.add(first + POOL_COUNT - 1, EXTRA_WATER);
+            crashed.sync();
+
+            try (Stream<Path> files = Files.list(directory)) {
+                //полный снимок, два инкрементальных и текущий журнал
+                Assertions.assertEquals(4, files.count());
+            }
+            Assertions.assertTrue(Files.size(directory.resolve("delta-2")) < Files.size(directory.resolve("snapshot-1")));
+
+            try (DurablePoolNetwork recovered = DurablePoolNetwork.open(directory)) {
+                Assertions.assertEquals(POOL_COUNT, recovered.getPoolCount());
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    Assertions.assertEquals(crashed.measure(first + i), recovered.measure(first + i));
+                    Assertions.assertEquals(crashed.isConnected(first, first + i), recovered.isConnected(first, first + i));
+                }
+            }
+            crashed.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void verifyFailedCheckpointKeepsRecoveryFiles() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final DurablePoolNetwork crashed = DurablePoolNetwork.open(directory);
+            final int first = crashed.create(POOL_COUNT);
+            for (int i = 0; i < POOL_COUNT; i++) {
+                crashed.add(first + i, EXTRA_WATER);
+            }
+            crashed.checkpoint();
+            crashed.completeCheckpoint();
+
+            //каталог на месте временного файла не дает записать инкрементальный снимок
+            final Path blockedDelta = Files.createDirectories(directory.resolve("delta-2.tmp").resolve("blocker"));
+            crashed.connect(first, first + 1);
+            crashed.checkpoint();
+            Assertions.assertThrows(IOException.class, crashed::completeCheckpoint);
+            deleteDirectory(blockedDelta.getParent());
+
+            //после ошибки контрольная точка пишет полный снимок, его запись тоже не удается
+            final Path blockedSnapshot = Files.createDirectories(directory.resolve("snapshot-3.tmp").resolve("blocker"));
+            crashed.add(first + 2, EXTRA_WATER);
+            Assertions.assertThrows(IOException.class, crashed::checkpoint);
+            deleteDirectory(blockedSnapshot.getParent());
+
+            crashed.connect(first + 2, first + 3);
+            crashed.sync();
+            for (String name : new String[]{"snapshot-1", "wal-1", "wal-2", "wal-3"}) {
+                Assertions.assertTrue(Files.exists(directory.resolve(name)), name);
+            }
+            Assertions.assertFalse(Files.exists(directory.resolve("delta-2")));
+            Assertions.assertFalse(Files.exists(directory.resolve("snapshot-3")));
+            verifyRecovered(directory, crashed);
+
+            crashed.checkpoint();
+            crashed.completeCheckpoint();
+            crashed.add(first + POOL_COUNT - 1, EXTRA_WATER);
+            crashed.sync();
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(
+                        new HashSet<>(Arrays.asList("snapshot-4", "wal-4")),
+                        files.map(file -> file.getFileName().toString()).collect(Collectors.toSet())
+                );
+            }
+            verifyRecovered(directory, crashed);
+            crashed.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void verifyFailedCheckpointBeforeRestart() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final long[] expected = new long[POOL_COUNT];
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                final int first = network.create(POOL_COUNT);
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    network.add(first + i, EXTRA_WATER);
+                }
+                network.checkpoint();
+                network.completeCheckpoint();
+
+                final Path blockedDelta = Files.createDirectories(directory.resolve("delta-2.tmp").resolve("blocker"));
+                network.connect(first, first + 1);
+                network.checkpoint();
+                Assertions.assertThrows(IOException.class, network::completeCheckpoint);
+                deleteDirectory(blockedDelta.getParent());
+
+                network.add(first + 2, EXTRA_WATER);
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    expected[i] = network.measure(first + i);
+                }
+            }
+
+            //после перезапуска журналы идут дальше последнего снимка, поэтому пишется полный снимок
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                network.checkpoint();
+                network.completeCheckpoint();
+                Assertions.assertTrue(Files.exists(directory.resolve("snapshot-3")));
+                Assertions.assertFalse(Files.exists(directory.resolve("delta-3")));
+            }
+
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                Assertions.assertEquals(POOL_COUNT, network.getPoolCount());
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    Assertions.assertEquals(expected[i], network.measure(i));
+                }
+                Assertions.assertTrue(network.isConnected(0, 1));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void verifyTornTailIsTruncated() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                final int pool = network.create();
+                network.add(pool, EXTRA_WATER);
+            }
+
+            //запись прервалась посередине операции ADD
+            final Path log = directory.resolve("wal-0");
+            final long validSize = Files.size(log);
+            Files.write(log, new byte[]{TraceFormat.ADD, 0, 0}, StandardOpenOption.APPEND);
+
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                Assertions.assertEquals(validSize, Files.size(log));
+                Assertions.assertEquals(1, network.getPoolCount());
+                Assertions.assertEquals(EXTRA_WATER, network.measure(0));
+
+                network.add(0, EXTRA_WATER);
+            }
+
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                Assertions.assertEquals(2 * EXTRA_WATER, network.measure(0));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void verifyInterruptedSyncThreadKeepsWriting() throws IOException {
+        final Path directory = Files.createTempDirectory("pools");
+        try {
+            final Set<Thread> otherThreads = new HashSet<>(Thread.getAllStackTraces().keySet());
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory, Duration.ofMillis(1))) {
+                final int pool = network.create();
+                network.sync();
+
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.getName().equals("pool-wal-sync") && !otherThreads.contains(thread)) thread.interrupt();
+                }
+
+                for (int i = 0; i < POOL_COUNT; i++) {
+                    network.add(pool, EXTRA_WATER);
+                    network.sync();
+                }
+            }
+
+            try (DurablePoolNetwork network = DurablePoolNetwork.open(directory)) {
+                Assertions.assertEquals(EXTRA_WATER * POOL_COUNT, network.measure(0));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Открыть сеть из каталога рядом с незакрытой сетью {@code crashed} и сравнить их
+     */
+    private static void verifyRecovered(Path directory, DurablePoolNetwork crashed) throws IOException {
+        try (DurablePoolNetwork recovered = DurablePoolNetwork.open(directory)) {
+            Assertions.assertEquals(crashed.getPoolCount(), recovered.getPoolCount());
+            for (int i = 0; i < crashed.getPoolCount(); i++) {
+                Assertions.assertEquals(crashed.measure(i), recovered.measure(i));
+                Assertions.assertEquals(crashed.isConnected(0, i), recovered.isConnected(0, i));
+                Assertions.assertEquals(crashed.isConnected(2, i), recovered.isConnected(2, i));
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static final int POOL_COUNT = 100;
+    private static final long EXTRA_WATER = 10;
+}